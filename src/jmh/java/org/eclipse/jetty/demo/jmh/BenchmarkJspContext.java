@@ -0,0 +1,124 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo.jmh;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import javax.el.ELContext;
+import javax.servlet.jsp.JspContext;
+import javax.servlet.jsp.JspWriter;
+import javax.servlet.jsp.PageContext;
+import javax.servlet.jsp.el.ExpressionEvaluator;
+import javax.servlet.jsp.el.VariableResolver;
+
+/**
+ * A page scoped only JspContext, for driving tag handlers outside of a container.
+ */
+public class BenchmarkJspContext extends JspContext
+{
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final JspWriter out;
+
+    public BenchmarkJspContext(JspWriter out)
+    {
+        this.out = out;
+    }
+
+    @Override
+    public void setAttribute(String name, Object value)
+    {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value, int scope)
+    {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public Object getAttribute(String name)
+    {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Object getAttribute(String name, int scope)
+    {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Object findAttribute(String name)
+    {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void removeAttribute(String name)
+    {
+        attributes.remove(name);
+    }
+
+    @Override
+    public void removeAttribute(String name, int scope)
+    {
+        attributes.remove(name);
+    }
+
+    @Override
+    public int getAttributesScope(String name)
+    {
+        return attributes.containsKey(name) ? PageContext.PAGE_SCOPE : 0;
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNamesInScope(int scope)
+    {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public JspWriter getOut()
+    {
+        return out;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public ExpressionEvaluator getExpressionEvaluator()
+    {
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public VariableResolver getVariableResolver()
+    {
+        return null;
+    }
+
+    @Override
+    public ELContext getELContext()
+    {
+        return null;
+    }
+}
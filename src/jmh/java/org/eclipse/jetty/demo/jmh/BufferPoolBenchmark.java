@@ -0,0 +1,95 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo.jmh;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.demo.Main;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Allocation per request (see {@code gc.alloc.rate.norm}) of pages with buffered tags and
+ * nested tag files, with their page contexts, and so their {@code JspWriter} and
+ * {@code BodyContent} buffers:
+ * <ul>
+ * <li>{@code none}: allocated for each request, as with a new (eg: virtual) thread per request</li>
+ * <li>{@code thread}: reused from Jasper's per thread pool</li>
+ * <li>{@code shared}: leased from a {@code PageContextPool}</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BufferPoolBenchmark
+{
+    @Param({"/test/tagfile.jsp", "/test/tag.jsp"})
+    public String page;
+
+    @Param({"none", "thread", "shared"})
+    public String pool;
+
+    private Main main;
+    private LocalConnector connector;
+    private String request;
+
+    @Setup
+    public void start() throws Exception
+    {
+        // Read once, when Jasper's factory is first loaded, which is in this fork
+        System.setProperty("org.apache.jasper.runtime.JspFactoryImpl.USE_POOL", Boolean.toString(!"none".equals(pool)));
+
+        main = new Main(0, true);
+        main.setJspBufferPool("shared".equals(pool) ? 64 : 0);
+        main.start();
+        connector = new LocalConnector(main.getServer());
+        main.getServer().addConnector(connector);
+        connector.start();
+
+        request = "GET " + page + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        HttpTester.Response response = HttpTester.parseResponse(connector.getResponse(request));
+        if (response.getStatus() != 200)
+            throw new IllegalStateException(response.toString());
+    }
+
+    @TearDown
+    public void stop() throws Exception
+    {
+        main.stop();
+    }
+
+    @Benchmark
+    public String render() throws Exception
+    {
+        return connector.getResponse(request);
+    }
+}
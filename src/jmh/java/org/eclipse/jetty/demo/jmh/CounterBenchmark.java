@@ -0,0 +1,90 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import com.acme.Counter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Contended access to a single session's {@link Counter}, against the original
+ * unsynchronized version (which loses updates) and a synchronized version.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class CounterBenchmark
+{
+    private final Counter counter = new Counter();
+    private final UnsynchronizedCounter unsynchronizedCounter = new UnsynchronizedCounter();
+    private final SynchronizedCounter synchronizedCounter = new SynchronizedCounter();
+
+    @Benchmark
+    public int counter()
+    {
+        return counter.getCount();
+    }
+
+    @Benchmark
+    public int unsynchronizedCounter()
+    {
+        return unsynchronizedCounter.getCount();
+    }
+
+    @Benchmark
+    public int synchronizedCounter()
+    {
+        return synchronizedCounter.getCount();
+    }
+
+    private static class UnsynchronizedCounter
+    {
+        int counter = 0;
+
+        public int getCount()
+        {
+            counter++;
+            return counter;
+        }
+    }
+
+    private static class SynchronizedCounter
+    {
+        int counter = 0;
+
+        public synchronized int getCount()
+        {
+            counter++;
+            return counter;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo.jmh;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.StringTokenizer;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.jsp.JspContext;
+import javax.servlet.jsp.tagext.JspFragment;
+
+import com.acme.Date2Tag;
+import com.acme.DateTag;
+import org.apache.jasper.runtime.BodyContentImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single DateTag / Date2Tag call, against the SimpleDateFormat
+ * based implementations they replaced.
+ * <p>
+ * The allocation rate per call is reported by the {@code gc} profiler:
+ * </p>
+ * <pre>
+ * mvn -Pjmh verify -DskipTests -Djmh.args="DateTagBenchmark"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateTagBenchmark
+{
+    @Param({"GMT", "EST"})
+    public String tz;
+
+    @Param({"long", "short"})
+    public String format;
+
+    private final String pattern = "EEE, dd/MMM/yyyy HH:mm:ss ZZZ";
+    private BodyContentImpl out;
+    private BodyContentImpl body;
+    private DateTag dateTag;
+    private Date2Tag date2Tag;
+    private JspContext jspContext;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        out = new BodyContentImpl(null);
+        body = new BodyContentImpl(out);
+        body.write(pattern);
+
+        dateTag = new DateTag();
+        dateTag.setTz(tz);
+        dateTag.setBodyContent(body);
+
+        jspContext = new BenchmarkJspContext(out);
+        date2Tag = new Date2Tag();
+        date2Tag.setJspContext(jspContext);
+        date2Tag.setFormat(format);
+        date2Tag.setJspBody(new JspFragment()
+        {
+            @Override
+            public void invoke(Writer writer)
+            {
+            }
+
+            @Override
+            public JspContext getJspContext()
+            {
+                return jspContext;
+            }
+        });
+    }
+
+    @Benchmark
+    public int dateTag() throws Exception
+    {
+        out.clearBody();
+        dateTag.doStartTag();
+        return dateTag.doAfterBody();
+    }
+
+    @Benchmark
+    public int legacyDateTag() throws Exception
+    {
+        out.clearBody();
+        SimpleDateFormat format = new SimpleDateFormat(body.getString());
+        format.setTimeZone(TimeZone.getTimeZone(tz));
+        body.getEnclosingWriter().write(format.format(new Date()));
+        return 0;
+    }
+
+    @Benchmark
+    public Object date2Tag() throws Exception
+    {
+        date2Tag.doTag();
+        return jspContext.getAttribute("year");
+    }
+
+    @Benchmark
+    public Object legacyDate2Tag() throws Exception
+    {
+        String formatted =
+            new SimpleDateFormat("long".equals(format) ? "EEE 'the' d:MMM:yyyy" : "d:MM:yy")
+                .format(new Date());
+        StringTokenizer tok = new StringTokenizer(formatted, ":");
+        jspContext.setAttribute("day", tok.nextToken());
+        jspContext.setAttribute("month", tok.nextToken());
+        jspContext.setAttribute("year", tok.nextToken());
+        return jspContext.getAttribute("year");
+    }
+}
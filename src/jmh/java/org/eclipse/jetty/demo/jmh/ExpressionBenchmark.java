@@ -0,0 +1,159 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo.jmh;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.GenericServlet;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.jsp.JspFactory;
+import javax.servlet.jsp.PageContext;
+
+import org.apache.jasper.runtime.PageContextImpl;
+import org.eclipse.jetty.demo.Main;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of evaluating a single EL expression the way a compiled JSP does, with and
+ * without the {@link org.eclipse.jetty.demo.CompiledExpressionFactory}.
+ * <p>
+ * The expressions are those of {@code expr.jsp} and {@code tag2.jsp}, evaluated
+ * against a real {@link PageContext} of a request for {@code /test/expr.jsp?A=21}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark
+{
+    @Param({"${param[\"A\"]}", "${header[\"host\"]}", "${1+1}", "${param[\"A\"] * 2}", "${day}"})
+    private String expression;
+
+    @Param({"false", "true"})
+    private boolean compiled;
+
+    private Main main;
+    private PageContext pageContext;
+
+    @Setup
+    public void start() throws Exception
+    {
+        main = new Main(0);
+        main.setJspCompiledEl(compiled);
+        main.start();
+        ServletContextHandler context = main.getServer().getChildHandlerByClass(ServletContextHandler.class);
+        ServletContext servletContext = context.getServletContext();
+
+        GenericServlet servlet = new GenericServlet()
+        {
+            @Override
+            public void service(ServletRequest req, ServletResponse res)
+            {
+            }
+        };
+        servlet.init(new ServletConfig()
+        {
+            @Override
+            public String getServletName()
+            {
+                return "expr";
+            }
+
+            @Override
+            public ServletContext getServletContext()
+            {
+                return servletContext;
+            }
+
+            @Override
+            public String getInitParameter(String name)
+            {
+                return null;
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames()
+            {
+                return Collections.emptyEnumeration();
+            }
+        });
+
+        HttpServletRequest request = stub(HttpServletRequest.class, Map.of("getParameter", "21", "getHeader", "localhost:8080"));
+        HttpServletResponse response = stub(HttpServletResponse.class, Map.of("getWriter", new PrintWriter(Writer.nullWriter())));
+        pageContext = JspFactory.getDefaultFactory().getPageContext(servlet, request, response, null, false, 8192, true);
+        // As set by the acme:date2 tag of tag2.jsp
+        pageContext.setAttribute("day", "Sun the 18");
+    }
+
+    /**
+     * A request or response that answers the named methods with a value, and every other call with a default value.
+     */
+    private static <T> T stub(Class<T> type, Map<String, Object> answers)
+    {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+        {
+            Class<?> returnType = method.getReturnType();
+            if (answers.containsKey(method.getName()))
+                return answers.get(method.getName());
+            if (returnType == boolean.class)
+                return false;
+            if (returnType == int.class)
+                return 0;
+            if (returnType == long.class)
+                return 0L;
+            return null;
+        }));
+    }
+
+    @TearDown
+    public void stop() throws Exception
+    {
+        main.stop();
+    }
+
+    @Benchmark
+    public Object evaluate() throws Exception
+    {
+        return PageContextImpl.proprietaryEvaluate(expression, String.class, pageContext, null);
+    }
+}
@@ -0,0 +1,88 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.demo.Main;
+import org.eclipse.jetty.server.LocalConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Requests per second for JSPs served in development vs production mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class JspModeBenchmark
+{
+    @Param({"false", "true"})
+    public boolean production;
+
+    @Param({"/test/tag.jsp", "/test/jstl.jsp", "/test/tagfile.jsp"})
+    public String page;
+
+    private Main main;
+    private LocalConnector connector;
+    private String request;
+
+    @Setup
+    public void start() throws Exception
+    {
+        main = new Main(0, production);
+        main.start();
+        connector = new LocalConnector(main.getServer());
+        main.getServer().addConnector(connector);
+        connector.start();
+
+        request = "GET " + page + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        // Compile the JSP outside of the measurement
+        String response = connector.getResponse(request);
+        if (!response.startsWith("HTTP/1.1 200 "))
+            throw new IllegalStateException(response);
+    }
+
+    @TearDown
+    public void stop() throws Exception
+    {
+        main.stop();
+    }
+
+    @Benchmark
+    public String render() throws Exception
+    {
+        return connector.getResponse(request);
+    }
+}
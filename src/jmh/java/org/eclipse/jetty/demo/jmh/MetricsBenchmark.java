@@ -0,0 +1,106 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.demo.Main;
+import org.eclipse.jetty.demo.RequestMetrics;
+import org.eclipse.jetty.server.LocalConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The overhead of {@link RequestMetrics}: the cost of recording a request
+ * (which should not allocate), and the time to render a JSP with and without metrics.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class Recording
+    {
+        private final RequestMetrics metrics = new RequestMetrics();
+        private final String path = "/test/tag.jsp";
+
+        @Setup
+        public void setup()
+        {
+            metrics.record(path, 0, 0);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Rendering
+    {
+        @Param({"false", "true"})
+        public boolean metrics;
+
+        private Main main;
+        private LocalConnector connector;
+        private final String request = "GET /test/tag.jsp HTTP/1.1\r\nHost: localhost\r\n\r\n";
+
+        @Setup
+        public void start() throws Exception
+        {
+            main = new Main(0, true);
+            main.setMetrics(metrics);
+            main.start();
+            connector = new LocalConnector(main.getServer());
+            main.getServer().addConnector(connector);
+            connector.start();
+            connector.getResponse(request);
+        }
+
+        @TearDown
+        public void stop() throws Exception
+        {
+            main.stop();
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public RequestMetrics record(Recording recording)
+    {
+        recording.metrics.record(recording.path, 123_456, 2048);
+        return recording.metrics;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String render(Rendering rendering) throws Exception
+    {
+        return rendering.connector.getResponse(rendering.request);
+    }
+}
@@ -0,0 +1,156 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo.jmh;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.demo.Main;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to start Main with extra JSP contexts, with and without sharing the JSP runtime between them.
+ * <p>
+ * The heap and non-heap (eg: metaspace) memory used per extra context, once each has served a JSP,
+ * is printed at the end of each trial, against Main without extra contexts.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class MultiContextBenchmark
+{
+    @Param({"1", "20"})
+    public int contexts;
+
+    @Param({"false", "true"})
+    public boolean shared;
+
+    private Path webRoots;
+    private long baselineHeap;
+    private long baselineNonHeap;
+    private long heap;
+    private long nonHeap;
+    private int samples;
+    private Main main;
+
+    @Setup(Level.Trial)
+    public void prepare() throws Exception
+    {
+        webRoots = Files.createTempDirectory("contexts");
+        for (int i = 0; i < contexts; i++)
+        {
+            Path webRoot = Files.createDirectories(webRoots.resolve("app" + i));
+            Files.writeString(webRoot.resolve("index.jsp"),
+                "<%@ page session=\"false\" %>\n" +
+                "<%@ taglib prefix=\"c\" uri=\"http://java.sun.com/jsp/jstl/core\" %>\n" +
+                "<%@ taglib prefix=\"fmt\" uri=\"http://java.sun.com/jsp/jstl/fmt\" %>\n" +
+                "<p>Hello from <c:out value=\"app" + i + "\"/>, <fmt:formatNumber value=\"" + i + "\"/></p>\n");
+        }
+
+        Main baseline = newMain(0);
+        baseline.start();
+        System.gc();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        baselineHeap = memory.getHeapMemoryUsage().getUsed();
+        baselineNonHeap = memory.getNonHeapMemoryUsage().getUsed();
+        baseline.stop();
+    }
+
+    private Main newMain(int contexts)
+    {
+        Main main = new Main(0, true);
+        main.setSharedJspRuntime(shared);
+        for (int i = 0; i < contexts; i++)
+        {
+            main.addContext("/app" + i, webRoots.resolve("app" + i));
+        }
+        return main;
+    }
+
+    @Setup(Level.Iteration)
+    public void create()
+    {
+        main = newMain(contexts);
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() throws Exception
+    {
+        LocalConnector connector = new LocalConnector(main.getServer());
+        main.getServer().addConnector(connector);
+        connector.start();
+        for (int i = 0; i < contexts; i++)
+        {
+            HttpTester.Response response = HttpTester.parseResponse(
+                connector.getResponse("GET /app" + i + "/index.jsp HTTP/1.1\r\nHost: localhost\r\n\r\n"));
+            if (response.getStatus() != 200)
+                throw new IllegalStateException(response.toString());
+        }
+
+        System.gc();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        heap += memory.getHeapMemoryUsage().getUsed();
+        nonHeap += memory.getNonHeapMemoryUsage().getUsed();
+        samples++;
+        main.stop();
+    }
+
+    @TearDown(Level.Trial)
+    public void report() throws IOException
+    {
+        System.out.printf("%n%d contexts, shared %s: %d KB heap and %d KB non-heap per extra context%n", contexts, shared,
+            (heap / samples - baselineHeap) / contexts / 1024, (nonHeap / samples - baselineNonHeap) / contexts / 1024);
+        try (Stream<Path> paths = Files.walk(webRoots))
+        {
+            for (Path path : (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator)
+            {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Main start() throws Exception
+    {
+        main.start();
+        return main;
+    }
+}
@@ -0,0 +1,132 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo.jmh;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.demo.Main;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.server.ServerConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to load {@code assets.jsp} and the 33 assets it links to, as a browser would,
+ * over HTTP/1.1 with up to 6 connections, and over h2c with a single multiplexed connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiplexingBenchmark
+{
+    private static final Pattern ASSET = Pattern.compile("(?:href|src)=\"\\.\\./([^\"]+)\"");
+
+    @Param({"http/1.1", "h2c"})
+    public String protocol;
+
+    private Main main;
+    private HttpClient client;
+    private String baseUri;
+
+    @Setup
+    public void start() throws Exception
+    {
+        main = new Main(0, true);
+        main.setH2c(true);
+        main.start();
+        baseUri = "http://localhost:" + ((ServerConnector)main.getServer().getConnectors()[0]).getLocalPort() + "/";
+
+        client = "h2c".equals(protocol) ? new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client())) : new HttpClient();
+        // As many connections as a browser opens to a host
+        client.setMaxConnectionsPerDestination(6);
+        client.start();
+        loadPage();
+    }
+
+    @TearDown
+    public void stop() throws Exception
+    {
+        client.stop();
+        main.stop();
+    }
+
+    @Benchmark
+    public long loadPage() throws Exception
+    {
+        ContentResponse page = client.GET(baseUri + "test/assets.jsp");
+        if (page.getStatus() != 200)
+            throw new IllegalStateException(page.toString());
+
+        List<String> assets = new ArrayList<>();
+        Matcher matcher = ASSET.matcher(page.getContentAsString());
+        while (matcher.find())
+        {
+            assets.add(matcher.group(1));
+        }
+        if (assets.size() != 33)
+            throw new IllegalStateException("Found " + assets.size() + " assets");
+
+        CountDownLatch latch = new CountDownLatch(assets.size());
+        AtomicLong bytes = new AtomicLong(page.getContent().length);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (String asset : assets)
+        {
+            client.newRequest(baseUri + asset).send(new BufferingResponseListener()
+            {
+                @Override
+                public void onComplete(Result result)
+                {
+                    if (result.isFailed())
+                        failure.set(result.getFailure());
+                    else
+                        bytes.addAndGet(getContent().length);
+                    latch.countDown();
+                }
+            });
+        }
+        if (!latch.await(10, TimeUnit.SECONDS))
+            throw new IllegalStateException("Timed out loading assets");
+        if (failure.get() != null)
+            throw new IllegalStateException(failure.get());
+        return bytes.get();
+    }
+}
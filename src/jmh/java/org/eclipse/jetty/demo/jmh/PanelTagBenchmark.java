@@ -0,0 +1,192 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo.jmh;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.GenericServlet;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.jsp.JspContext;
+import javax.servlet.jsp.JspFactory;
+import javax.servlet.jsp.PageContext;
+import javax.servlet.jsp.tagext.JspFragment;
+import javax.servlet.jsp.tagext.SimpleTag;
+
+import org.eclipse.jetty.demo.Main;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single invocation of the {@code panel.tag} tag file, as compiled
+ * by the build, outside of any request handling.
+ * <p>
+ * The generated tag handler needs a real {@link PageContext}, whose EL and
+ * instance manager come from the servlet context of a started {@link Main}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PanelTagBenchmark
+{
+    // The class the jspc plugin compiles WEB-INF/tags/panel.tag to
+    private static final String PANEL_TAG = "org.apache.jsp.tag.web.panel_tag";
+
+    private Main main;
+    private PageContext pageContext;
+    private Constructor<? extends SimpleTag> newTag;
+    private Method setColor;
+    private Method setBgcolor;
+    private Method setTitle;
+    private JspFragment body;
+
+    @Setup
+    public void start() throws Exception
+    {
+        main = new Main(0);
+        main.start();
+        ServletContextHandler context = main.getServer().getChildHandlerByClass(ServletContextHandler.class);
+        ServletContext servletContext = context.getServletContext();
+
+        GenericServlet servlet = new GenericServlet()
+        {
+            @Override
+            public void service(ServletRequest req, ServletResponse res)
+            {
+            }
+        };
+        servlet.init(new ServletConfig()
+        {
+            @Override
+            public String getServletName()
+            {
+                return "panel";
+            }
+
+            @Override
+            public ServletContext getServletContext()
+            {
+                return servletContext;
+            }
+
+            @Override
+            public String getInitParameter(String name)
+            {
+                return null;
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames()
+            {
+                return Collections.emptyEnumeration();
+            }
+        });
+
+        // The page is autoflushed into a response writer that discards everything
+        PrintWriter discard = new PrintWriter(Writer.nullWriter());
+        HttpServletRequest request = stub(HttpServletRequest.class, null);
+        HttpServletResponse response = stub(HttpServletResponse.class, discard);
+        pageContext = JspFactory.getDefaultFactory().getPageContext(servlet, request, response, null, false, 8192, true);
+
+        Class<? extends SimpleTag> tagClass = Class.forName(PANEL_TAG, true, context.getClassLoader()).asSubclass(SimpleTag.class);
+        newTag = tagClass.getConstructor();
+        setColor = tagClass.getMethod("setColor", String.class);
+        setBgcolor = tagClass.getMethod("setBgcolor", String.class);
+        setTitle = tagClass.getMethod("setTitle", String.class);
+        body = new JspFragment()
+        {
+            @Override
+            public void invoke(Writer out) throws IOException
+            {
+                (out == null ? pageContext.getOut() : out).write("A panel in a panel.");
+            }
+
+            @Override
+            public JspContext getJspContext()
+            {
+                return pageContext;
+            }
+        };
+    }
+
+    /**
+     * A request or response that answers every call with a default value,
+     * other than {@code getWriter()}.
+     */
+    private static <T> T stub(Class<T> type, PrintWriter writer)
+    {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+        {
+            Class<?> returnType = method.getReturnType();
+            if ("getWriter".equals(method.getName()))
+                return writer;
+            if (returnType == boolean.class)
+                return false;
+            if (returnType == int.class)
+                return 0;
+            if (returnType == long.class)
+                return 0L;
+            return null;
+        }));
+    }
+
+    @TearDown
+    public void stop() throws Exception
+    {
+        main.stop();
+    }
+
+    @Benchmark
+    public SimpleTag panel() throws Exception
+    {
+        // Tag file handlers are not pooled, Jasper creates one per use
+        SimpleTag tag = newTag.newInstance();
+        tag.setJspContext(pageContext);
+        tag.setJspBody(body);
+        setColor.invoke(tag, "#ff80ff");
+        setBgcolor.invoke(tag, "#ffc0ff");
+        setTitle.invoke(tag, "Inner");
+        tag.doTag();
+        return tag;
+    }
+}
@@ -0,0 +1,95 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.demo.Main;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The full render path of a JSP: HTTP parsing, the jsp servlet, the page
+ * and its tags, and response generation, through an in-memory
+ * {@link LocalConnector} so that no sockets are involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark
+{
+    @Param({"/test/jstl.jsp", "/test/tagfile.jsp", "/test/expr.jsp?A=21", "/test/bean1.jsp"})
+    public String page;
+
+    @Param({"false", "true"})
+    public boolean compiledEl;
+
+    private Main main;
+    private LocalConnector connector;
+    private String request;
+
+    @Setup
+    public void start() throws Exception
+    {
+        main = new Main(0);
+        main.setJspCompiledEl(compiledEl);
+        main.start();
+        connector = new LocalConnector(main.getServer());
+        main.getServer().addConnector(connector);
+        connector.start();
+
+        // Compile the JSP outside of the measurement, and join the session
+        // it creates (if any) so that each request does not start a new one
+        HttpTester.Response response = HttpTester.parseResponse(
+            connector.getResponse("GET " + page + " HTTP/1.1\r\nHost: localhost\r\n\r\n"));
+        if (response.getStatus() != 200)
+            throw new IllegalStateException(response.toString());
+        String cookie = response.get(HttpHeader.SET_COOKIE);
+        request = "GET " + page + " HTTP/1.1\r\nHost: localhost\r\n" +
+            (cookie == null ? "" : "Cookie: " + cookie.split(";")[0] + "\r\n") +
+            "\r\n";
+    }
+
+    @TearDown
+    public void stop() throws Exception
+    {
+        main.stop();
+    }
+
+    @Benchmark
+    public String render() throws Exception
+    {
+        return connector.getResponse(request);
+    }
+}
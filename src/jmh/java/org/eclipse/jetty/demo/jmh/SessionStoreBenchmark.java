@@ -0,0 +1,120 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo.jmh;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.acme.Counter;
+import org.eclipse.jetty.demo.Main;
+import org.eclipse.jetty.demo.SessionStore;
+import org.eclipse.jetty.server.session.Session;
+import org.eclipse.jetty.server.session.SessionCache;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The full GC pause, and the live heap (printed at the end of each trial), with a million sessions each holding a {@link Counter},
+ * kept on the heap or passivated to direct memory or a mapped file (with 10,000 kept on the heap).
+ * Also the time to access a random one of the sessions, and so to activate it from the store.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-XX:MaxDirectMemorySize=2g"})
+public class SessionStoreBenchmark
+{
+    @Param({"HEAP", "DIRECT", "MAPPED"})
+    public SessionStore store;
+
+    @Param({"1000000"})
+    public int sessions;
+
+    private Main main;
+    private SessionCache cache;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception
+    {
+        main = new Main(0);
+        main.setSessionStore(store);
+        main.start();
+        cache = main.getServer().getChildHandlerByClass(ServletContextHandler.class).getSessionHandler().getSessionCache();
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < sessions; i++)
+        {
+            // As created by a request for bean1.jsp
+            String id = id(i);
+            Session session = cache.newSession(null, id, now, -1);
+            cache.add(id, session);
+            Counter counter = new Counter();
+            counter.setLast("/test/bean1.jsp");
+            session.setAttribute("counter", counter);
+            cache.release(id, session);
+        }
+    }
+
+    private static String id(int i)
+    {
+        return "node0session" + i;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception
+    {
+        System.gc();
+        System.out.printf("%n%s: %d MB live heap with %d sessions%n", store,
+            ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024), sessions);
+        main.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void fullGc()
+    {
+        System.gc();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public Session accessRandomSession() throws Exception
+    {
+        String id = id(ThreadLocalRandom.current().nextInt(sessions));
+        Session session = cache.get(id);
+        cache.release(id, session);
+        return session;
+    }
+}
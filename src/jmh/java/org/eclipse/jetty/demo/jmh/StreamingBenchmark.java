@@ -0,0 +1,129 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo.jmh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.demo.Main;
+import org.eclipse.jetty.server.ServerConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to first byte, and to the whole page, of the 1MB {@code large.jsp},
+ * with and without JSP streaming, over a socket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamingBenchmark
+{
+    private static final byte[] REQUEST = "GET /test/large.jsp HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    @Param({"false", "true"})
+    public boolean streaming;
+
+    private Main main;
+    private int port;
+
+    @Setup
+    public void start() throws Exception
+    {
+        main = new Main(0, true);
+        main.setJspStreaming(streaming);
+        main.start();
+        port = ((ServerConnector)main.getServer().getConnectors()[0]).getLocalPort();
+    }
+
+    @TearDown
+    public void stop() throws Exception
+    {
+        main.stop();
+    }
+
+    /**
+     * A connection, opened and drained outside of the measurement.
+     */
+    @State(Scope.Thread)
+    public static class Connection
+    {
+        private final byte[] buffer = new byte[64 * 1024];
+        private Socket socket;
+
+        @Setup(Level.Invocation)
+        public void open(StreamingBenchmark benchmark) throws IOException
+        {
+            socket = new Socket("localhost", benchmark.port);
+        }
+
+        @TearDown(Level.Invocation)
+        public void close() throws IOException
+        {
+            drain();
+            socket.close();
+        }
+
+        int drain() throws IOException
+        {
+            InputStream in = socket.getInputStream();
+            int total = 0;
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+            {
+                total += read;
+            }
+            return total;
+        }
+    }
+
+    @Benchmark
+    public int firstByte(Connection connection) throws IOException
+    {
+        OutputStream out = connection.socket.getOutputStream();
+        out.write(REQUEST);
+        out.flush();
+        return connection.socket.getInputStream().read();
+    }
+
+    @Benchmark
+    public int wholePage(Connection connection) throws IOException
+    {
+        OutputStream out = connection.socket.getOutputStream();
+        out.write(REQUEST);
+        out.flush();
+        return connection.drain();
+    }
+}
@@ -0,0 +1,102 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.demo.Main;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the JSTL and acme tags with and without the {@link org.eclipse.jetty.demo.TagPlugins}:
+ * per iteration of a {@code c:forEach} with a {@code c:out} in {@code loop.jsp} (rendered with
+ * {@value #ITERATIONS} of them, so the cost of the request is spread over the iterations), and
+ * per rendering of {@code tag2.jsp} (two {@code acme:date2} tags).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TagPluginBenchmark
+{
+    private static final int ITERATIONS = 1000;
+
+    @Param({"false", "true"})
+    public boolean tagPlugins;
+
+    private Main main;
+    private LocalConnector connector;
+    private String loopRequest;
+    private String date2Request;
+
+    @Setup
+    public void start() throws Exception
+    {
+        // In production mode, so that the JSPs are not checked for modifications on each request
+        main = new Main(0, true);
+        main.setJspTagPlugins(tagPlugins);
+        main.start();
+        connector = new LocalConnector(main.getServer());
+        main.getServer().addConnector(connector);
+        connector.start();
+
+        loopRequest = "GET /test/loop.jsp?n=" + ITERATIONS + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        date2Request = "GET /test/tag2.jsp HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        for (String request : new String[]{loopRequest, date2Request})
+        {
+            HttpTester.Response response = HttpTester.parseResponse(connector.getResponse(request));
+            if (response.getStatus() != 200)
+                throw new IllegalStateException(response.toString());
+        }
+    }
+
+    @TearDown
+    public void stop() throws Exception
+    {
+        main.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITERATIONS)
+    public String loop() throws Exception
+    {
+        return connector.getResponse(loopRequest);
+    }
+
+    @Benchmark
+    public String date2() throws Exception
+    {
+        return connector.getResponse(date2Request);
+    }
+}
@@ -0,0 +1,93 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo.jmh;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.acme.DateTag;
+import org.eclipse.jetty.demo.Main;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and allocation of {@code tag.jsp} (two {@code acme:date} tags) rendered by many
+ * threads at once, with a handler created for each use of a tag ({@code none}), Jasper's
+ * synchronized pools of 5 ({@code jasper}), or {@link org.eclipse.jetty.demo.TagPool}s
+ * ({@code striped}) of up to 64 handlers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class TagPoolBenchmark
+{
+    @Param({"none", "jasper", "striped"})
+    public String pool;
+
+    private Main main;
+    private LocalConnector connector;
+    private String request;
+
+    @Setup
+    public void start() throws Exception
+    {
+        // In production mode, so that the JSP is not checked for modifications on each request
+        main = new Main(0, true);
+        main.setJspTagPooling(!"none".equals(pool));
+        if ("striped".equals(pool))
+            main.setJspTagPoolSizes(Map.of(DateTag.class.getName(), 64));
+        main.start();
+        connector = new LocalConnector(main.getServer());
+        main.getServer().addConnector(connector);
+        connector.start();
+
+        request = "GET /test/tag.jsp HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        HttpTester.Response response = HttpTester.parseResponse(connector.getResponse(request));
+        if (response.getStatus() != 200)
+            throw new IllegalStateException(response.toString());
+    }
+
+    @TearDown
+    public void stop() throws Exception
+    {
+        main.stop();
+    }
+
+    @Benchmark
+    public String render() throws Exception
+    {
+        return connector.getResponse(request);
+    }
+}
@@ -0,0 +1,224 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package com.acme;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The asynchronous variant of the {@link DateServlet}.
+ * <p>
+ * The request is suspended while the date is prepared on an executor of the servlet
+ * (standing in for a slow data source), so no container thread is held while waiting,
+ * and is then dispatched to the JSP that renders it. If the request times out or fails
+ * first, the preparation is cancelled.
+ * </p>
+ * <p>
+ * Init parameters:
+ * </p>
+ * <ul>
+ * <li>{@code threads}: the threads preparing dates (default 16)</li>
+ * <li>{@code queue}: the requests that can wait for one of those threads (default 1024), beyond which a 503 is sent</li>
+ * <li>{@code timeout}: the milliseconds a request can be suspended (default 5000), after which a 504 is sent</li>
+ * </ul>
+ * <p>
+ * The {@code delay} request parameter simulates a data source taking that many milliseconds.
+ * </p>
+ */
+@SuppressWarnings("serial")
+public class AsyncDateServlet extends HttpServlet
+{
+    private ThreadPoolExecutor executor;
+    private long timeout;
+
+    @Override
+    public void init() throws ServletException
+    {
+        int threads = getIntInitParameter("threads", 16);
+        int queue = getIntInitParameter("queue", 1024);
+        timeout = getIntInitParameter("timeout", 5000);
+
+        AtomicInteger ids = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queue), task ->
+        {
+            Thread thread = new Thread(task, getServletName() + "-" + ids.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private int getIntInitParameter(String name, int defaultValue)
+    {
+        String value = getInitParameter(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    @Override
+    public void destroy()
+    {
+        executor.shutdownNow();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+    {
+        long delay = getDelay(req);
+        if (delay < 0)
+        {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid delay");
+            return;
+        }
+
+        AsyncContext async = req.startAsync();
+        async.setTimeout(timeout);
+        // Set by the first of the date, a failure or the timeout, so that only it ends the request
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Future<?>> task = new AtomicReference<>();
+        async.addListener(new AsyncListener()
+        {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException
+            {
+                if (done.compareAndSet(false, true))
+                {
+                    cancel(task.get());
+                    ((HttpServletResponse)event.getSuppliedResponse()).sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT, "Timed out preparing the date");
+                    event.getAsyncContext().complete();
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent event)
+            {
+                // Eg: the client went away, the container ends the request
+                if (done.compareAndSet(false, true))
+                    cancel(task.get());
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event)
+            {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event)
+            {
+            }
+        });
+
+        try
+        {
+            task.set(executor.submit(() ->
+            {
+                ZonedDateTime date;
+                try
+                {
+                    date = prepareDate(delay);
+                }
+                catch (InterruptedException e)
+                {
+                    // Cancelled, the request has already ended
+                    return;
+                }
+                catch (RuntimeException e)
+                {
+                    if (done.compareAndSet(false, true))
+                    {
+                        log("Unable to prepare the date", e);
+                        sendError(async, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    }
+                    return;
+                }
+                if (done.compareAndSet(false, true))
+                {
+                    req.setAttribute(Date2Tag.DATE_ATTRIBUTE, date);
+                    async.dispatch("/test/tag2.jsp");
+                }
+            }));
+        }
+        catch (RejectedExecutionException e)
+        {
+            if (done.compareAndSet(false, true))
+                sendError(async, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private static long getDelay(HttpServletRequest req)
+    {
+        try
+        {
+            String delay = req.getParameter("delay");
+            return delay == null ? 0 : Long.parseLong(delay);
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    private static void cancel(Future<?> task)
+    {
+        if (task != null)
+            task.cancel(true);
+    }
+
+    private void sendError(AsyncContext async, int status)
+    {
+        try
+        {
+            ((HttpServletResponse)async.getResponse()).sendError(status);
+        }
+        catch (IOException | IllegalStateException e)
+        {
+            log("Unable to send " + status, e);
+        }
+        finally
+        {
+            async.complete();
+        }
+    }
+
+    /**
+     * @param delay the milliseconds the data source takes
+     * @return the date to render
+     * @throws InterruptedException if cancelled, as the request timed out or failed
+     */
+    protected ZonedDateTime prepareDate(long delay) throws InterruptedException
+    {
+        Thread.sleep(delay);
+        return ZonedDateTime.now();
+    }
+}
@@ -0,0 +1,134 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package com.acme;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.BodyTagSupport;
+import javax.servlet.jsp.tagext.TryCatchFinally;
+
+/**
+ * Caches the rendered body for {@code ttl} seconds (default 60), in the {@link FragmentCache} of the context.
+ * <p>
+ * A classic tag, so that the body may contain scriptlets.
+ * </p>
+ */
+@SuppressWarnings("serial")
+public class CacheTag extends BodyTagSupport implements TryCatchFinally
+{
+    public static final int DEFAULT_TTL = 60;
+
+    private String key;
+    private int ttl = DEFAULT_TTL;
+    private FragmentCache.Flight flight;
+
+    public void setKey(String key)
+    {
+        this.key = key;
+    }
+
+    public void setTtl(int ttl)
+    {
+        this.ttl = ttl;
+    }
+
+    @Override
+    public int doStartTag() throws JspException
+    {
+        // Left over from a previous use of this (pooled) handler
+        bodyContent = null;
+        if (ttl <= 0)
+            return EVAL_BODY_BUFFERED;
+
+        FragmentCache cache = FragmentCache.getCache(pageContext.getServletContext());
+        String content = cache.getIfPresent(key);
+        if (content == null)
+        {
+            try
+            {
+                flight = cache.populate(key);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new JspException(e);
+            }
+            content = flight.getContent();
+        }
+        if (content == null)
+            return EVAL_BODY_BUFFERED;
+
+        flight = null;
+        write(content);
+        return SKIP_BODY;
+    }
+
+    @Override
+    public int doEndTag() throws JspException
+    {
+        if (bodyContent == null && flight == null)
+            return EVAL_PAGE;
+
+        String content = bodyContent == null ? "" : bodyContent.getString();
+        if (flight != null && flight.isOwner())
+        {
+            flight.complete(content, TimeUnit.SECONDS.toNanos(ttl));
+            flight = null;
+        }
+        write(content);
+        return EVAL_PAGE;
+    }
+
+    private void write(String content) throws JspException
+    {
+        try
+        {
+            pageContext.getOut().write(content);
+        }
+        catch (IOException e)
+        {
+            throw new JspException(e);
+        }
+    }
+
+    @Override
+    public void doCatch(Throwable t) throws Throwable
+    {
+        throw t;
+    }
+
+    @Override
+    public void doFinally()
+    {
+        // Let a waiting thread populate the key instead, if the body failed
+        if (flight != null && flight.isOwner())
+            flight.abandon();
+        flight = null;
+    }
+
+    @Override
+    public void release()
+    {
+        super.release();
+        key = null;
+        ttl = DEFAULT_TTL;
+        flight = null;
+    }
+}
@@ -18,24 +18,71 @@
 
 package com.acme;
 
-@SuppressWarnings("serial")
-public class Counter implements java.io.Serializable
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A session scoped counter, safe for concurrent requests in the same session.
+ * <p>
+ * Counting is lock-free, so concurrent requests neither lose updates nor
+ * serialize on the counter. The serialized form is unchanged (an {@code int}
+ * counter and the last URI), so persisted sessions remain readable.
+ * </p>
+ */
+public class Counter implements Serializable
 {
-    int counter=0;
-    String last;
+    private static final long serialVersionUID = 856089874586303221L;
+
+    private static final ObjectStreamField[] serialPersistentFields =
+    {
+        new ObjectStreamField("counter", int.class),
+        new ObjectStreamField("last", String.class)
+    };
+
+    private transient LongAdder counter = new LongAdder();
+    private transient volatile String last;
 
+    /**
+     * Count an access.
+     * <p>
+     * The count returned includes this access, and any that are concurrent with it.
+     * </p>
+     *
+     * @return the number of accesses
+     */
     public int getCount()
     {
-	counter++;
-	return counter;
+        counter.increment();
+        return counter.intValue();
     }
 
-    public void setLast(String uri) {
-        last=uri;
+    public void setLast(String uri)
+    {
+        last = uri;
     }
 
-    public String getLast() {
+    public String getLast()
+    {
         return last;
     }
-}
 
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("counter", counter.intValue());
+        fields.put("last", last);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        ObjectInputStream.GetField fields = in.readFields();
+        counter = new LongAdder();
+        counter.add(fields.get("counter", 0));
+        last = (String)fields.get("last", null);
+    }
+}
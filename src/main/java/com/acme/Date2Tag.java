@@ -19,17 +19,19 @@
 package com.acme;
 
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.StringTokenizer;
+import java.time.ZonedDateTime;
 
 import javax.servlet.jsp.JspContext;
 import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.PageContext;
 import javax.servlet.jsp.tagext.JspFragment;
 import javax.servlet.jsp.tagext.SimpleTagSupport;
 
 public class Date2Tag extends SimpleTagSupport
 {
+    // Request attribute for a date prepared before the page is rendered (see AsyncDateServlet), used instead of now
+    public static final String DATE_ATTRIBUTE = "com.acme.date";
+
     String format;
 
     public void setFormat(String value) {
@@ -37,17 +39,35 @@ public class Date2Tag extends SimpleTagSupport
     }
 
     public void doTag() throws JspException, IOException {
-        String formatted =
-            new SimpleDateFormat("long".equals(format)?"EEE 'the' d:MMM:yyyy":"d:MM:yy")
-            .format(new Date());
-        StringTokenizer tok = new StringTokenizer(formatted,":");
-        JspContext context = getJspContext();
-        context.setAttribute("day", tok.nextToken() );
-        context.setAttribute("month", tok.nextToken() );
-        context.setAttribute("year", tok.nextToken() );
+        setVariables(getJspContext(), format);
 
         JspFragment fragment = getJspBody();
         fragment.invoke(null);
     }
+
+    /**
+     * Set the day, month and year variables of the tag. Also called by the
+     * code the date2 tag plugin inlines in place of the tag.
+     */
+    public static void setVariables(JspContext context, String format) {
+        Object date = context.getAttribute(DATE_ATTRIBUTE, PageContext.REQUEST_SCOPE);
+        ZonedDateTime now = date instanceof ZonedDateTime ? (ZonedDateTime)date : ZonedDateTime.now();
+        if ("long".equals(format)) {
+            // EEE 'the' d:MMM:yyyy
+            context.setAttribute("day", DateFormatterCache.getFormatter("EEE 'the' d", null).format(now));
+            context.setAttribute("month", DateFormatterCache.getFormatter("MMM", null).format(now));
+            context.setAttribute("year", Integer.toString(now.getYear()));
+        }
+        else {
+            // d:MM:yy
+            context.setAttribute("day", Integer.toString(now.getDayOfMonth()));
+            context.setAttribute("month", twoDigits(now.getMonthValue()));
+            context.setAttribute("year", twoDigits(now.getYear() % 100));
+        }
+    }
+
+    private static String twoDigits(int value) {
+        return value < 10 ? "0" + value : Integer.toString(value);
+    }
 }
 
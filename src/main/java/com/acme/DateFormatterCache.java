@@ -0,0 +1,102 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package com.acme;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A bounded cache of immutable (and so thread safe) DateTimeFormatters,
+ * shared by the date tags, keyed by pattern and time zone ID. It is
+ * cleared when full.
+ * <p>
+ * The patterns are those of {@link DateTimeFormatter}, which mostly agree with
+ * those of {@link java.text.SimpleDateFormat}, but not entirely: {@code u} is the
+ * year (not the day of the week), {@code F} the aligned day of the week in the
+ * month (not the day of the week in the month), five {@code E}, {@code M} or
+ * {@code L} are the narrow (not full) text, {@code [ ] # { }} are reserved,
+ * and repeating some letters more than they allow (eg: {@code aa} or {@code ddd})
+ * is an error rather than padding.
+ * </p>
+ */
+public class DateFormatterCache
+{
+    public static final int MAX_SIZE = 256;
+
+    private static final ConcurrentMap<Key, DateTimeFormatter> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * @param pattern the {@link DateTimeFormatter} pattern
+     * @param tz the time zone ID, resolved like {@link TimeZone#getTimeZone(String)}, or null for the system default
+     * @return the formatter for the pattern in the time zone
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    public static DateTimeFormatter getFormatter(String pattern, String tz)
+    {
+        Key key = new Key(pattern, tz);
+        DateTimeFormatter formatter = CACHE.get(key);
+        if (formatter != null)
+            return formatter;
+
+        ZoneId zone = tz == null ? ZoneId.systemDefault() : TimeZone.getTimeZone(tz).toZoneId();
+        formatter = DateTimeFormatter.ofPattern(pattern).withZone(zone);
+
+        // Patterns come from page content, so keep the cache bounded. A page has few patterns,
+        // so more than MAX_SIZE is unusual enough to start again rather than track their use
+        if (CACHE.size() >= MAX_SIZE)
+            CACHE.clear();
+        DateTimeFormatter existing = CACHE.putIfAbsent(key, formatter);
+        return existing == null ? formatter : existing;
+    }
+
+    public static int size()
+    {
+        return CACHE.size();
+    }
+
+    private static class Key
+    {
+        private final String pattern;
+        private final String tz;
+
+        private Key(String pattern, String tz)
+        {
+            this.pattern = pattern;
+            this.tz = tz;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key)o;
+            return pattern.equals(key.pattern) && (tz == null ? key.tz == null : tz.equals(key.tz));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * pattern.hashCode() + (tz == null ? 0 : tz.hashCode());
+        }
+    }
+}
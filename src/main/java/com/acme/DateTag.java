@@ -18,9 +18,8 @@
 
 package com.acme;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
 
 import javax.servlet.jsp.JspException;
 import javax.servlet.jsp.JspTagException;
@@ -29,6 +28,10 @@ import javax.servlet.jsp.tagext.BodyContent;
 import javax.servlet.jsp.tagext.BodyTagSupport;
 import javax.servlet.jsp.tagext.Tag;
 
+/**
+ * Writes the current date in the format of the body of the tag, a {@link DateTimeFormatter}
+ * pattern (see {@link DateFormatterCache} for where it differs from a {@code SimpleDateFormat} one).
+ */
 @SuppressWarnings("serial")
 public class DateTag extends BodyTagSupport
 {
@@ -52,9 +55,8 @@ public class DateTag extends BodyTagSupport
     public int doAfterBody() throws JspException {
 	try
 	{
-            SimpleDateFormat format = new SimpleDateFormat(body.getString());
-            format.setTimeZone(TimeZone.getTimeZone(tz));
-	    body.getEnclosingWriter().write(format.format(new Date()));
+            DateTimeFormatter format = DateFormatterCache.getFormatter(body.getString(), tz);
+	    body.getEnclosingWriter().write(format.format(Instant.now()));
 	    return SKIP_BODY;
 	}
 	catch (Exception ex) {
@@ -0,0 +1,389 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package com.acme;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.servlet.ServletContext;
+
+/**
+ * A concurrent cache of rendered page fragments, with a TTL per entry, a bound on the
+ * total size of the cached content, and single-flight population.
+ * <p>
+ * Hits are lock-free. When the cache is over its size, the least recently used entries are
+ * evicted, by one thread at a time, until it is back under 90% of the size.
+ * When several threads miss on the same key at once, one populates the entry while the others
+ * wait for its content (see {@link #populate(String)}), so a miss does not stampede. A thread
+ * that waits longer than the maximum wait renders the fragment itself, without caching it,
+ * so a populating thread that hangs does not hold every request for the key.
+ * </p>
+ *
+ * @see CacheTag
+ */
+public class FragmentCache
+{
+    // Servlet context attribute (and init parameter for the maximum size, in bytes) of a context's cache
+    public static final String ATTRIBUTE = "com.acme.FragmentCache";
+    public static final String MAX_SIZE_PARAMETER = "com.acme.FragmentCache.maxSize";
+    public static final long DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+    // Init parameter for the maximum wait for another thread populating a key, in milliseconds
+    public static final String MAX_WAIT_PARAMETER = "com.acme.FragmentCache.maxWait";
+    public static final long DEFAULT_MAX_WAIT = 5000;
+
+    // Estimated bytes of an entry besides its key and content
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final long maxSize;
+    private final long maxWaitMillis;
+    private final AtomicLong size = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder waitTimeouts = new LongAdder();
+
+    /**
+     * @param maxSize the maximum estimated bytes of cached keys and content
+     */
+    public FragmentCache(long maxSize)
+    {
+        this(maxSize, DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * @param maxSize the maximum estimated bytes of cached keys and content
+     * @param maxWaitMillis the maximum wait for another thread populating a key
+     */
+    public FragmentCache(long maxSize, long maxWaitMillis)
+    {
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * @param context the servlet context
+     * @return the cache of the context, created on first use
+     */
+    public static FragmentCache getCache(ServletContext context)
+    {
+        FragmentCache cache = (FragmentCache)context.getAttribute(ATTRIBUTE);
+        if (cache == null)
+        {
+            synchronized (FragmentCache.class)
+            {
+                cache = (FragmentCache)context.getAttribute(ATTRIBUTE);
+                if (cache == null)
+                {
+                    String maxSize = context.getInitParameter(MAX_SIZE_PARAMETER);
+                    String maxWait = context.getInitParameter(MAX_WAIT_PARAMETER);
+                    cache = new FragmentCache(maxSize == null ? DEFAULT_MAX_SIZE : Long.parseLong(maxSize),
+                        maxWait == null ? DEFAULT_MAX_WAIT : Long.parseLong(maxWait));
+                    context.setAttribute(ATTRIBUTE, cache);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * @param key the key
+     * @return the content cached for the key, or null if missing or expired
+     */
+    public String getIfPresent(String key)
+    {
+        Entry entry = getEntry(key, System.nanoTime());
+        if (entry == null)
+        {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.content;
+    }
+
+    private Entry getEntry(String key, long now)
+    {
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+        if (now - entry.expiresAt >= 0)
+        {
+            if (remove(key, entry))
+                expirations.increment();
+            return null;
+        }
+        entry.lastAccess = now;
+        return entry;
+    }
+
+    /**
+     * Start to populate a key after a miss, or wait for the thread already populating it.
+     *
+     * @param key the key
+     * @return the flight of the population: its content if already populated, otherwise if
+     * {@link Flight#isOwner()}, the caller must render the content and either
+     * {@link Flight#complete(String, long) complete} or {@link Flight#abandon() abandon} the flight,
+     * and if not (eg: after waiting too long for another thread), render it without caching it
+     * @throws InterruptedException if interrupted while waiting for another thread
+     */
+    public Flight populate(String key) throws InterruptedException
+    {
+        while (true)
+        {
+            Flight flight = new Flight(key, Thread.currentThread());
+            Flight existing = flights.putIfAbsent(key, flight);
+            if (existing == null)
+            {
+                // Another flight may have completed since the miss
+                Entry entry = getEntry(key, System.nanoTime());
+                if (entry == null)
+                    return flight;
+                flight.done(entry.content);
+                return flight;
+            }
+
+            // The same key nested within its own content cannot be cached
+            if (existing.owner == Thread.currentThread())
+                return new Flight(key, null);
+
+            coalesced.increment();
+            if (!existing.latch.await(maxWaitMillis, TimeUnit.MILLISECONDS))
+            {
+                waitTimeouts.increment();
+                return new Flight(key, null);
+            }
+            if (existing.content != null)
+                return existing;
+            // The populating thread abandoned the flight, so try to populate again
+        }
+    }
+
+    private void put(String key, String content, long ttlNanos)
+    {
+        long now = System.nanoTime();
+        Entry entry = new Entry(content, ENTRY_OVERHEAD + 2L * (key.length() + content.length()), now, now + ttlNanos);
+        if (entry.size > maxSize)
+            return;
+
+        Entry old = entries.put(key, entry);
+        size.addAndGet(entry.size - (old == null ? 0 : old.size));
+        if (size.get() > maxSize)
+            evict();
+    }
+
+    private boolean remove(String key, Entry entry)
+    {
+        if (!entries.remove(key, entry))
+            return false;
+        size.addAndGet(-entry.size);
+        return true;
+    }
+
+    private void evict()
+    {
+        if (!evictionLock.tryLock())
+            return;
+        try
+        {
+            long target = maxSize / 10 * 9;
+            if (size.get() <= target)
+                return;
+            List<Map.Entry<String, Entry>> lru = new ArrayList<>(entries.entrySet());
+            lru.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+            for (Map.Entry<String, Entry> e : lru)
+            {
+                if (size.get() <= target)
+                    break;
+                if (remove(e.getKey(), e.getValue()))
+                    evictions.increment();
+            }
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of lookups that found the key cached
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that did not find the key cached
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return the ratio of lookups that were hits, or 0 if there were none
+     */
+    public double getHitRatio()
+    {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double)hits / lookups;
+    }
+
+    /**
+     * @return the number of misses that waited for another thread to populate the key
+     */
+    public long getCoalesced()
+    {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return the number of misses that rendered the content themselves, after waiting too long for another thread
+     */
+    public long getWaitTimeouts()
+    {
+        return waitTimeouts.sum();
+    }
+
+    /**
+     * @return the number of entries evicted to bound the size of the cache
+     */
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the number of entries removed after their TTL
+     */
+    public long getExpirations()
+    {
+        return expirations.sum();
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public int getEntries()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return the estimated bytes of cached keys and content
+     */
+    public long getSize()
+    {
+        return size.get();
+    }
+
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    private static class Entry
+    {
+        private final String content;
+        private final long size;
+        private final long expiresAt;
+        private volatile long lastAccess;
+
+        private Entry(String content, long size, long now, long expiresAt)
+        {
+            this.content = content;
+            this.size = size;
+            this.lastAccess = now;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * The population of a key, by a single thread.
+     */
+    public class Flight
+    {
+        private final String key;
+        private final Thread owner;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile String content;
+
+        private Flight(String key, Thread owner)
+        {
+            this.key = key;
+            this.owner = owner;
+        }
+
+        /**
+         * @return the content populated, or null if the caller must render it
+         */
+        public String getContent()
+        {
+            return content;
+        }
+
+        /**
+         * @return true if the caller must populate the key
+         */
+        public boolean isOwner()
+        {
+            return content == null && owner == Thread.currentThread();
+        }
+
+        /**
+         * Cache the content, and release the threads waiting for it.
+         *
+         * @param content the rendered content
+         * @param ttlNanos the time to live of the content
+         */
+        public void complete(String content, long ttlNanos)
+        {
+            put(key, content, ttlNanos);
+            done(content);
+        }
+
+        /**
+         * Release the threads waiting for the content without caching any,
+         * one of which will populate the key instead.
+         */
+        public void abandon()
+        {
+            done(null);
+        }
+
+        private void done(String content)
+        {
+            this.content = content;
+            flights.remove(key, this);
+            latch.countDown();
+        }
+    }
+}
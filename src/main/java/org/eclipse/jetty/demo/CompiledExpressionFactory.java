@@ -0,0 +1,659 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.el.ELContext;
+import javax.el.ELException;
+import javax.el.ELResolver;
+import javax.el.ExpressionFactory;
+import javax.el.MethodExpression;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.jsp.JspContext;
+import javax.servlet.jsp.PageContext;
+
+import org.apache.el.lang.ELArithmetic;
+import org.apache.jasper.runtime.JspApplicationContextImpl;
+
+/**
+ * An {@link ExpressionFactory} that compiles the simplest, and most common, JSP expressions once,
+ * into a form evaluated without the {@link ELResolver} chain.
+ * <p>
+ * Jasper evaluates each {@code ${...}} of a page by creating a {@link ValueExpression} from its string,
+ * then resolving every identifier and property through the resolver chain of the page (implicit objects,
+ * application resolvers, then maps, lists, beans... and finally the scoped attributes). This factory keeps
+ * a concurrent cache of compiled expressions, keyed by their string, where a compiled expression is either:
+ * </p>
+ * <ul>
+ * <li>a {@code param} or {@code header} value (eg: {@code ${param["A"]}} or {@code ${header.host}}),
+ * read straight from the request;</li>
+ * <li>an identifier (eg: {@code ${day}}), read from the page then the request scope, or</li>
+ * <li>a literal, or one arithmetic operation between two of the above (eg: {@code ${param["A"] * 2}}),
+ * folded at compile time when both are literals;</li>
+ * </ul>
+ * <p>
+ * or generic, when it is then created by Jasper's own factory each time, as usual.
+ * </p>
+ * <p>
+ * The result is the same as the resolver chain's: a compiled expression falls back to Jasper's evaluation
+ * whenever an identifier could resolve to something else, ie: when it is a lambda argument, is in the
+ * variable mapper (eg: the {@code var} of a deferred {@code c:forEach}), is not in the page or request scope,
+ * or when any {@link ELResolver} was added to the application.
+ * </p>
+ *
+ * @see #install(ServletContext, int)
+ */
+public class CompiledExpressionFactory extends ExpressionFactory
+{
+    // Servlet context attribute for the factory of a context
+    public static final String ATTRIBUTE = CompiledExpressionFactory.class.getName();
+
+    // Same as the default size of the cache of parsed expressions of Jasper's EL implementation
+    public static final int DEFAULT_MAX_SIZE = 5000;
+
+    // Servlet context attribute Jasper looks up (or creates) the JspApplicationContext of the context with
+    private static final String APPLICATION_CONTEXT_ATTRIBUTE = JspApplicationContextImpl.class.getName();
+
+    private static final Set<String> IMPLICIT_OBJECTS = Set.of("pageContext", "pageScope", "requestScope", "sessionScope",
+        "applicationScope", "param", "paramValues", "header", "headerValues", "initParam", "cookie");
+
+    private static final Set<String> RESERVED_WORDS = Set.of("and", "or", "not", "eq", "ne", "lt", "gt", "le", "ge",
+        "true", "false", "null", "instanceof", "empty", "div", "mod");
+
+    // Result of an operand that can only be resolved through the ELResolver chain
+    private static final Object UNRESOLVED = new Object();
+
+    private final ExpressionFactory delegate;
+    private final int maxSize;
+    private final ConcurrentMap<String, Compiled> cache = new ConcurrentHashMap<>();
+    private final Compiled generic = new Compiled(null, null, (char)0, null, List.of());
+    private final LongAdder fastEvaluations = new LongAdder();
+    private final LongAdder genericEvaluations = new LongAdder();
+    private volatile boolean applicationResolvers;
+
+    /**
+     * Compile the expressions of the JSPs of a context.
+     * <p>
+     * Must be called before the context starts, as it installs the {@code JspApplicationContext}
+     * Jasper uses for the context, whose expression factory is this one.
+     * </p>
+     *
+     * @param context the context of the JSPs
+     * @param maxSize the maximum expressions cached, others are compiled on each use
+     * @return the factory of the context
+     */
+    public static CompiledExpressionFactory install(ServletContext context, int maxSize)
+    {
+        ApplicationContext applicationContext = new ApplicationContext(maxSize);
+        context.setAttribute(APPLICATION_CONTEXT_ATTRIBUTE, applicationContext);
+        context.setAttribute(ATTRIBUTE, applicationContext.factory);
+        return applicationContext.factory;
+    }
+
+    /**
+     * @param delegate the factory of the expressions that are not compiled, and of everything else
+     * @param maxSize the maximum expressions cached, others are compiled on each use
+     */
+    public CompiledExpressionFactory(ExpressionFactory delegate, int maxSize)
+    {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public ValueExpression createValueExpression(ELContext context, String expression, Class<?> expectedType)
+    {
+        Compiled compiled = cache.get(expression);
+        if (compiled == null)
+        {
+            compiled = compile(expression);
+            if (cache.size() < maxSize)
+                cache.putIfAbsent(expression, compiled);
+        }
+        if (compiled == generic || expectedType == null)
+        {
+            genericEvaluations.increment();
+            return delegate.createValueExpression(context, expression, expectedType);
+        }
+        return compiled.getValueExpression(expectedType);
+    }
+
+    @Override
+    public ValueExpression createValueExpression(Object instance, Class<?> expectedType)
+    {
+        return delegate.createValueExpression(instance, expectedType);
+    }
+
+    @Override
+    public MethodExpression createMethodExpression(ELContext context, String expression, Class<?> expectedReturnType, Class<?>[] expectedParamTypes)
+    {
+        return delegate.createMethodExpression(context, expression, expectedReturnType, expectedParamTypes);
+    }
+
+    @Override
+    public Object coerceToType(Object obj, Class<?> targetType)
+    {
+        return delegate.coerceToType(obj, targetType);
+    }
+
+    @Override
+    public ELResolver getStreamELResolver()
+    {
+        return delegate.getStreamELResolver();
+    }
+
+    @Override
+    public Map<String, Method> getInitFunctionMap()
+    {
+        return delegate.getInitFunctionMap();
+    }
+
+    /**
+     * @return the expressions in the cache, compiled or generic
+     */
+    public int getCacheSize()
+    {
+        return cache.size();
+    }
+
+    /**
+     * @return the evaluations of compiled expressions that did not need the ELResolver chain
+     */
+    public long getFastEvaluations()
+    {
+        return fastEvaluations.sum();
+    }
+
+    /**
+     * @return the expressions created by Jasper's factory, either as they are not compiled, or as a
+     * compiled expression fell back to it (in a JSP, each is created for a single evaluation)
+     */
+    public long getGenericEvaluations()
+    {
+        return genericEvaluations.sum();
+    }
+
+    /**
+     * @param expression the expression string
+     * @return the compiled expression, or {@link #generic} if the expression is not one of the compiled forms
+     */
+    private Compiled compile(String expression)
+    {
+        if (!expression.startsWith("${") || !expression.endsWith("}"))
+            return generic;
+        Parser parser = new Parser(expression, 2, expression.length() - 1);
+        try
+        {
+            Operand left = parser.operand();
+            if (parser.atEnd())
+                return new Compiled(expression, left, (char)0, null, parser.identifiers);
+            char operator = parser.operator();
+            Operand right = parser.operand();
+            if (!parser.atEnd())
+                return generic;
+
+            if (left instanceof Literal && right instanceof Literal)
+            {
+                try
+                {
+                    Object value = apply(operator, ((Literal)left).value, ((Literal)right).value);
+                    return new Compiled(expression, new Literal(value), (char)0, null, parser.identifiers);
+                }
+                catch (ELException e)
+                {
+                    // Not a constant, fails on each evaluation as usual
+                }
+            }
+            return new Compiled(expression, left, operator, right, parser.identifiers);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return generic;
+        }
+    }
+
+    private static Object apply(char operator, Object left, Object right)
+    {
+        switch (operator)
+        {
+            case '+':
+                return ELArithmetic.add(left, right);
+            case '-':
+                return ELArithmetic.subtract(left, right);
+            case '*':
+                return ELArithmetic.multiply(left, right);
+            case '/':
+                return ELArithmetic.divide(left, right);
+            case '%':
+                return ELArithmetic.mod(left, right);
+            default:
+                throw new IllegalStateException("Unknown operator " + operator);
+        }
+    }
+
+    /**
+     * An expression compiled to at most two operands and an operator.
+     */
+    private class Compiled
+    {
+        private final String expression;
+        private final Operand left;
+        private final char operator;
+        private final Operand right;
+        private final String[] identifiers;
+        // Value expressions are stateless, so the last one created is shared, as an expression is usually used with a single type
+        private volatile FastValueExpression last;
+
+        private Compiled(String expression, Operand left, char operator, Operand right, List<String> identifiers)
+        {
+            this.expression = expression;
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+            this.identifiers = identifiers.toArray(new String[0]);
+        }
+
+        private ValueExpression getValueExpression(Class<?> expectedType)
+        {
+            FastValueExpression valueExpression = last;
+            if (valueExpression == null || valueExpression.expectedType != expectedType)
+            {
+                valueExpression = new FastValueExpression(this, expectedType);
+                last = valueExpression;
+            }
+            return valueExpression;
+        }
+
+        /**
+         * @param context the EL context of the page
+         * @return the value, or {@link #UNRESOLVED} if it must be evaluated through the ELResolver chain
+         */
+        private Object evaluate(ELContext context)
+        {
+            if (applicationResolvers)
+                return UNRESOLVED;
+            Object jspContext = context.getContext(JspContext.class);
+            if (!(jspContext instanceof PageContext))
+                return UNRESOLVED;
+            for (String identifier : identifiers)
+            {
+                if (context.isLambdaArgument(identifier))
+                    return UNRESOLVED;
+                VariableMapper variableMapper = context.getVariableMapper();
+                if (variableMapper != null && variableMapper.resolveVariable(identifier) != null)
+                    return UNRESOLVED;
+            }
+
+            PageContext pageContext = (PageContext)jspContext;
+            Object leftValue = left.get(pageContext);
+            if (leftValue == UNRESOLVED || operator == 0)
+                return leftValue;
+            Object rightValue = right.get(pageContext);
+            if (rightValue == UNRESOLVED)
+                return UNRESOLVED;
+            return apply(operator, leftValue, rightValue);
+        }
+    }
+
+    /**
+     * A compiled expression for an expected type.
+     */
+    @SuppressWarnings("serial")
+    private class FastValueExpression extends ValueExpression
+    {
+        private final Compiled compiled;
+        private final Class<?> expectedType;
+
+        private FastValueExpression(Compiled compiled, Class<?> expectedType)
+        {
+            this.compiled = compiled;
+            this.expectedType = expectedType;
+        }
+
+        private ValueExpression toGeneric(ELContext context)
+        {
+            genericEvaluations.increment();
+            return delegate.createValueExpression(context, compiled.expression, expectedType);
+        }
+
+        @Override
+        public Object getValue(ELContext context)
+        {
+            Object value = compiled.evaluate(context);
+            if (value == UNRESOLVED)
+                return toGeneric(context).getValue(context);
+
+            fastEvaluations.increment();
+            context.notifyBeforeEvaluation(compiled.expression);
+            if (expectedType == String.class && (value == null || value instanceof String || value instanceof Number || value instanceof Boolean))
+                value = value == null ? "" : value.toString();
+            else if (expectedType != Object.class)
+                value = context.convertToType(value, expectedType);
+            context.notifyAfterEvaluation(compiled.expression);
+            return value;
+        }
+
+        @Override
+        public void setValue(ELContext context, Object value)
+        {
+            toGeneric(context).setValue(context, value);
+        }
+
+        @Override
+        public boolean isReadOnly(ELContext context)
+        {
+            return toGeneric(context).isReadOnly(context);
+        }
+
+        @Override
+        public Class<?> getType(ELContext context)
+        {
+            return toGeneric(context).getType(context);
+        }
+
+        @Override
+        public Class<?> getExpectedType()
+        {
+            return expectedType;
+        }
+
+        @Override
+        public String getExpressionString()
+        {
+            return compiled.expression;
+        }
+
+        @Override
+        public boolean isLiteralText()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof FastValueExpression))
+                return false;
+            FastValueExpression that = (FastValueExpression)obj;
+            return compiled.expression.equals(that.compiled.expression) && Objects.equals(expectedType, that.expectedType);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return compiled.expression.hashCode();
+        }
+    }
+
+    private interface Operand
+    {
+        /**
+         * @param pageContext the page context (or tag file context) the expression is evaluated in
+         * @return the value, or {@link #UNRESOLVED}
+         */
+        Object get(PageContext pageContext);
+    }
+
+    private static class Literal implements Operand
+    {
+        private final Object value;
+
+        private Literal(Object value)
+        {
+            this.value = value;
+        }
+
+        @Override
+        public Object get(PageContext pageContext)
+        {
+            return value;
+        }
+    }
+
+    /**
+     * Parses the body of an expression into operands, throwing {@link IllegalArgumentException}
+     * as soon as it finds anything other than the compiled forms.
+     */
+    private static class Parser
+    {
+        private final String expression;
+        private final int end;
+        private final List<String> identifiers = new ArrayList<>();
+        private int index;
+
+        private Parser(String expression, int start, int end)
+        {
+            this.expression = expression;
+            this.index = start;
+            this.end = end;
+        }
+
+        private boolean atEnd()
+        {
+            skipWhitespace();
+            return index == end;
+        }
+
+        private void skipWhitespace()
+        {
+            while (index < end && Character.isWhitespace(expression.charAt(index)))
+            {
+                index++;
+            }
+        }
+
+        private char peek()
+        {
+            if (index == end)
+                throw new IllegalArgumentException();
+            return expression.charAt(index);
+        }
+
+        private char operator()
+        {
+            skipWhitespace();
+            char c = peek();
+            if (c == '+' || c == '-' || c == '*' || c == '/' || c == '%')
+            {
+                index++;
+                return c;
+            }
+            String word = identifier();
+            if ("div".equals(word))
+                return '/';
+            if ("mod".equals(word))
+                return '%';
+            throw new IllegalArgumentException();
+        }
+
+        private Operand operand()
+        {
+            skipWhitespace();
+            char c = peek();
+            if (c >= '0' && c <= '9')
+                return new Literal(number());
+            if (c == '\'' || c == '"')
+                return new Literal(string());
+
+            String name = identifier();
+            switch (name)
+            {
+                case "true":
+                    return new Literal(Boolean.TRUE);
+                case "false":
+                    return new Literal(Boolean.FALSE);
+                case "null":
+                    return new Literal(null);
+                default:
+                    if (RESERVED_WORDS.contains(name))
+                        throw new IllegalArgumentException();
+            }
+
+            skipWhitespace();
+            boolean property = index < end && (peek() == '.' || peek() == '[');
+            if (!property)
+            {
+                if (IMPLICIT_OBJECTS.contains(name))
+                    throw new IllegalArgumentException();
+                identifiers.add(name);
+                return pageContext ->
+                {
+                    Object value = pageContext.getAttribute(name, PageContext.PAGE_SCOPE);
+                    if (value == null)
+                        value = pageContext.getAttribute(name, PageContext.REQUEST_SCOPE);
+                    return value == null ? UNRESOLVED : value;
+                };
+            }
+
+            String key;
+            if (expression.charAt(index++) == '.')
+            {
+                skipWhitespace();
+                key = identifier();
+            }
+            else
+            {
+                skipWhitespace();
+                char quote = peek();
+                if (quote != '\'' && quote != '"')
+                    throw new IllegalArgumentException();
+                key = string();
+                skipWhitespace();
+                if (peek() != ']')
+                    throw new IllegalArgumentException();
+                index++;
+            }
+            skipWhitespace();
+            if (index < end && (peek() == '.' || peek() == '['))
+                throw new IllegalArgumentException();
+
+            identifiers.add(name);
+            switch (name)
+            {
+                case "param":
+                    return pageContext -> pageContext.getRequest().getParameter(key);
+                case "header":
+                    return pageContext ->
+                    {
+                        ServletRequest request = pageContext.getRequest();
+                        return request instanceof HttpServletRequest ? ((HttpServletRequest)request).getHeader(key) : UNRESOLVED;
+                    };
+                default:
+                    throw new IllegalArgumentException();
+            }
+        }
+
+        private String identifier()
+        {
+            int start = index;
+            if (index == end || !Character.isJavaIdentifierStart(expression.charAt(index)))
+                throw new IllegalArgumentException();
+            while (index < end && Character.isJavaIdentifierPart(expression.charAt(index)))
+            {
+                index++;
+            }
+            return expression.substring(start, index);
+        }
+
+        private Object number()
+        {
+            int start = index;
+            while (index < end && Character.isDigit(expression.charAt(index)))
+            {
+                index++;
+            }
+            boolean floating = index < end && expression.charAt(index) == '.';
+            if (floating)
+            {
+                index++;
+                while (index < end && Character.isDigit(expression.charAt(index)))
+                {
+                    index++;
+                }
+            }
+            if (index < end && (Character.isJavaIdentifierPart(expression.charAt(index)) || expression.charAt(index) == '.'))
+                throw new IllegalArgumentException();
+            // Integer literals too large for a long are left to Jasper
+            String literal = expression.substring(start, index);
+            return floating ? (Object)Double.valueOf(literal) : (Object)Long.valueOf(literal);
+        }
+
+        private String string()
+        {
+            char quote = expression.charAt(index++);
+            StringBuilder value = new StringBuilder();
+            while (true)
+            {
+                char c = peek();
+                index++;
+                if (c == quote)
+                    return value.toString();
+                if (c == '\\' && index < end)
+                {
+                    char next = expression.charAt(index);
+                    if (next == '\\' || next == '\'' || next == '"')
+                    {
+                        index++;
+                        c = next;
+                    }
+                }
+                value.append(c);
+            }
+        }
+    }
+
+    /**
+     * The {@code JspApplicationContext} of a context, whose expression factory is a compiled one.
+     */
+    private static class ApplicationContext extends JspApplicationContextImpl
+    {
+        private final CompiledExpressionFactory factory;
+
+        private ApplicationContext(int maxSize)
+        {
+            factory = new CompiledExpressionFactory(super.getExpressionFactory(), maxSize);
+        }
+
+        @Override
+        public ExpressionFactory getExpressionFactory()
+        {
+            return factory;
+        }
+
+        @Override
+        public void addELResolver(ELResolver resolver) throws IllegalStateException
+        {
+            super.addELResolver(resolver);
+            // Might resolve any identifier before the scoped attributes
+            factory.applicationResolvers = true;
+        }
+    }
+}
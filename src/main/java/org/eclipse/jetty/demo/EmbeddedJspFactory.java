@@ -0,0 +1,172 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import javax.servlet.Servlet;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.jsp.JspFactory;
+import javax.servlet.jsp.JspWriter;
+import javax.servlet.jsp.PageContext;
+
+import org.apache.jasper.runtime.JspFactoryImpl;
+import org.apache.jasper.runtime.PageContextImpl;
+
+/**
+ * A {@link JspFactory} that streams the output of the JSPs of the contexts that ask for it,
+ * and leases their page contexts from a shared {@link PageContextPool}.
+ * <p>
+ * For a streaming context, the response buffer is reduced to the stream buffer size, so the
+ * first part of a page (usually its head) is sent as soon as it is written, rather than once
+ * the whole response buffer is full, and the rest follows in chunks of that size.
+ * The {@link JspWriter} of an auto flushing page is capped to the same size, so each time it
+ * flushes, its chars are encoded once, straight into the pooled (direct) buffer of the response.
+ * </p>
+ * <p>
+ * For a pooled context, a released page context, with its {@link JspWriter} and {@code BodyContent}
+ * buffers, goes back to the pool of the context rather than to Jasper's per thread pool.
+ * </p>
+ * <p>
+ * The factory is JVM wide, as is Jasper's, and behaves exactly like Jasper's for contexts
+ * without the {@link #STREAM_BUFFER_SIZE_ATTRIBUTE} or the {@link PageContextPool#ATTRIBUTE}.
+ * </p>
+ */
+public class EmbeddedJspFactory extends JspFactoryImpl
+{
+    // Servlet context attribute for the response buffer size of a streaming context
+    public static final String STREAM_BUFFER_SIZE_ATTRIBUTE = EmbeddedJspFactory.class.getName() + ".streamBufferSize";
+
+    public static final int DEFAULT_STREAM_BUFFER_SIZE = 8 * 1024;
+
+    // System property for Jasper to drop BodyContent buffers grown beyond their default size when released
+    private static final String LIMIT_BODY_CONTENT_BUFFER_PROPERTY = "org.apache.jasper.runtime.BodyContentImpl.LIMIT_BUFFER";
+
+    /**
+     * Stream the JSPs of a context.
+     *
+     * @param context the context to stream the JSPs of
+     * @param streamBufferSize the response buffer size for its JSPs
+     */
+    public static void installStreaming(ServletContext context, int streamBufferSize)
+    {
+        install();
+        context.setAttribute(STREAM_BUFFER_SIZE_ATTRIBUTE, streamBufferSize);
+    }
+
+    /**
+     * Lease the page contexts of the JSPs of a context from a pool.
+     *
+     * @param context the context to pool the page contexts of
+     * @param pool the pool to lease them from
+     */
+    public static void installPool(ServletContext context, PageContextPool pool)
+    {
+        install();
+        context.setAttribute(PageContextPool.ATTRIBUTE, pool);
+    }
+
+    /**
+     * Install the factory, if not already installed.
+     * <p>
+     * Also limits the size of the {@code BodyContent} buffers that Jasper keeps for reuse,
+     * if its {@code BodyContentImpl} has not been used yet, so that a large buffered body
+     * (eg: in a tag using {@code EVAL_BODY_BUFFERED}) does not leave large char arrays behind.
+     * </p>
+     */
+    private static void install()
+    {
+        if (System.getProperty(LIMIT_BODY_CONTENT_BUFFER_PROPERTY) == null)
+            System.setProperty(LIMIT_BODY_CONTENT_BUFFER_PROPERTY, "true");
+
+        // Jasper installs its own factory when its runtime is first initialized, so make sure that has happened
+        try
+        {
+            Class.forName("org.apache.jasper.compiler.JspRuntimeContext", true, JspFactoryImpl.class.getClassLoader());
+        }
+        catch (ClassNotFoundException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        synchronized (EmbeddedJspFactory.class)
+        {
+            if (!(JspFactory.getDefaultFactory() instanceof EmbeddedJspFactory))
+                JspFactory.setDefaultFactory(new EmbeddedJspFactory());
+        }
+    }
+
+    @Override
+    public PageContext getPageContext(Servlet servlet, ServletRequest request, ServletResponse response, String errorPageURL,
+                                      boolean needsSession, int bufferSize, boolean autoflush)
+    {
+        ServletContext context = servlet.getServletConfig().getServletContext();
+        Integer streamBufferSize = (Integer)context.getAttribute(STREAM_BUFFER_SIZE_ATTRIBUTE);
+        if (streamBufferSize != null)
+        {
+            // An unbuffered JspWriter was measured to be slower, as every small write then goes through the response writer
+            if (autoflush && bufferSize > streamBufferSize)
+                bufferSize = streamBufferSize;
+            // Not possible once content has been written, eg: for an included or forwarded to JSP
+            if (!response.isCommitted() && response.getBufferSize() > streamBufferSize)
+            {
+                try
+                {
+                    response.setBufferSize(streamBufferSize);
+                }
+                catch (IllegalStateException e)
+                {
+                    // Keep the current buffer
+                }
+            }
+        }
+
+        PageContextPool pool = (PageContextPool)context.getAttribute(PageContextPool.ATTRIBUTE);
+        PageContext pageContext = pool == null ? null : pool.lease();
+        if (pageContext == null)
+            return super.getPageContext(servlet, request, response, errorPageURL, needsSession, bufferSize, autoflush);
+        try
+        {
+            ((PageContextImpl)pageContext).initialize(servlet, request, response, errorPageURL, needsSession, bufferSize, autoflush);
+            return pageContext;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void releasePageContext(PageContext pageContext)
+    {
+        if (pageContext instanceof PageContextImpl)
+        {
+            // The context is cleared on release
+            PageContextPool pool = (PageContextPool)pageContext.getServletContext().getAttribute(PageContextPool.ATTRIBUTE);
+            if (pool != null)
+            {
+                pageContext.release();
+                pool.offer(pageContext);
+                return;
+            }
+        }
+        super.releasePageContext(pageContext);
+    }
+}
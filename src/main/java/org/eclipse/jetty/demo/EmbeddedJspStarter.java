@@ -18,6 +18,11 @@
 
 package org.eclipse.jetty.demo;
 
+import java.net.URL;
+import java.util.Set;
+import javax.servlet.ServletContext;
+
+import org.apache.jasper.servlet.TldScanner;
 import org.apache.tomcat.util.scan.StandardJarScanFilter;
 import org.apache.tomcat.util.scan.StandardJarScanner;
 import org.eclipse.jetty.apache.jsp.JettyJasperInitializer;
@@ -30,17 +35,43 @@ import org.eclipse.jetty.util.component.AbstractLifeCycle;
  * This is added as a bean that is a jetty LifeCycle on the ServletContextHandler.
  * This bean's doStart method will be called as the ServletContextHandler starts,
  * and will call the ServletContainerInitializer for the jsp engine.
+ *
+ * If the build generated a {@link TldIndex}, the indexed TLDs are handed to the
+ * jsp engine as already scanned, and only the jars in the WEB-INF/lib of the
+ * webroot, if any, are scanned (see {@link IndexedTldScanner}).
+ *
+ * If the context shares a {@link SharedJspRuntime} with others, the TLDs outside
+ * of its webroot are only parsed if no other context has parsed them yet.
+ *
+ * If {@link #setTagPlugins(boolean)}, the jsp engine inlines the tags of the
+ * {@link TagPlugins} in the JSPs it compiles.
  */
 public class EmbeddedJspStarter extends AbstractLifeCycle
 {
     private JettyJasperInitializer sci;
     private ServletContextHandler context;
+    private StandardJarScanner jarScanner;
+    private boolean useTldIndex = true;
+    private SharedJspRuntime jspRuntime;
+    private Set<URL> tldUrls;
+    private ClassLoader tagPluginsClassLoader;
 
     public EmbeddedJspStarter(ServletContextHandler context)
     {
-        this.sci = new JettyJasperInitializer();
+        this.sci = new JettyJasperInitializer()
+        {
+            @Override
+            public TldScanner newTldScanner(ServletContext servletContext, boolean namespaceAware, boolean validate, boolean blockExternal)
+            {
+                if (jspRuntime != null)
+                    return jspRuntime.newTldScanner(servletContext, namespaceAware, validate, blockExternal, tldUrls);
+                if (tldUrls != null)
+                    return new IndexedTldScanner(servletContext, namespaceAware, validate, blockExternal, tldUrls);
+                return super.newTldScanner(servletContext, namespaceAware, validate, blockExternal);
+            }
+        };
         this.context = context;
-        StandardJarScanner jarScanner = new StandardJarScanner();
+        this.jarScanner = new StandardJarScanner();
         StandardJarScanFilter jarScanFilter = new StandardJarScanFilter();
         jarScanFilter.setTldScan("taglibs-standard-impl-*");
         jarScanFilter.setTldSkip("apache-*,ecj-*,jetty-*,asm-*,javax.servlet-*,javax.annotation-*,taglibs-standard-spec-*");
@@ -48,6 +79,64 @@ public class EmbeddedJspStarter extends AbstractLifeCycle
         this.context.setAttribute("org.apache.tomcat.JarScanner", jarScanner);
     }
 
+    /**
+     * @param useTldIndex true (the default) to use the {@link TldIndex} if there is one, false to always scan jars for TLDs
+     */
+    public void setUseTldIndex(boolean useTldIndex)
+    {
+        this.useTldIndex = useTldIndex;
+    }
+
+    public boolean isUseTldIndex()
+    {
+        return useTldIndex;
+    }
+
+    /**
+     * @param jspRuntime the parts of the jsp engine to share with other contexts, or null (the default) for none
+     */
+    public void setJspRuntime(SharedJspRuntime jspRuntime)
+    {
+        this.jspRuntime = jspRuntime;
+        if (jspRuntime == null)
+            context.removeAttribute(SharedJspRuntime.ATTRIBUTE);
+        else
+            context.setAttribute(SharedJspRuntime.ATTRIBUTE, jspRuntime);
+    }
+
+    public SharedJspRuntime getJspRuntime()
+    {
+        return jspRuntime;
+    }
+
+    /**
+     * Set before any other classloader wraps that of the context (eg: that of a {@link JspCache}).
+     *
+     * @param tagPlugins true to register the {@link TagPlugins} with the jsp engine, false (the default) for none
+     */
+    public void setTagPlugins(boolean tagPlugins)
+    {
+        if (tagPlugins == isTagPlugins())
+            return;
+        if (tagPlugins)
+        {
+            tagPluginsClassLoader = TagPlugins.newClassLoader(context.getClassLoader());
+            context.setClassLoader(tagPluginsClassLoader);
+        }
+        else
+        {
+            if (context.getClassLoader() != tagPluginsClassLoader)
+                throw new IllegalStateException("Classloader of the context wrapped since the tag plugins were set");
+            context.setClassLoader(tagPluginsClassLoader.getParent());
+            tagPluginsClassLoader = null;
+        }
+    }
+
+    public boolean isTagPlugins()
+    {
+        return tagPluginsClassLoader != null;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -55,6 +144,12 @@ public class EmbeddedJspStarter extends AbstractLifeCycle
         Thread.currentThread().setContextClassLoader(context.getClassLoader());
         try
         {
+            TldIndex tldIndex = useTldIndex ? TldIndex.load(context.getClassLoader()) : null;
+            tldUrls = tldIndex == null ? null : tldIndex.getTldUrls(context.getClassLoader());
+            if (tldUrls != null)
+                context.setAttribute(TldIndex.TLDS_ATTRIBUTE, tldUrls);
+            // The index covers the classpath, so only the jars of the webroot are scanned
+            jarScanner.setScanClassPath(tldUrls == null);
             sci.onStartup(null, context.getServletContext());
             super.doStart();
         }
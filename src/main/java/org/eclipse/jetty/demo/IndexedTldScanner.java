@@ -0,0 +1,113 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collection;
+import javax.servlet.ServletContext;
+
+import org.apache.jasper.compiler.JarScannerFactory;
+import org.apache.tomcat.Jar;
+import org.apache.tomcat.JarScanType;
+import org.apache.tomcat.JarScannerCallback;
+import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
+import org.eclipse.jetty.apache.jsp.JettyTldPreScanned;
+import org.xml.sax.SAXException;
+
+/**
+ * The TLD scanner of a context with a {@link TldIndex}.
+ * <p>
+ * The indexed TLDs are pre-scanned, but the jars in the {@code WEB-INF/lib} of the context
+ * (see {@link Main#addContext(String, java.nio.file.Path)}) are not on the classpath the index
+ * was built from, so they are still scanned. The jar scanner of the context should not scan
+ * the classpath, which the index already covers.
+ * </p>
+ */
+public class IndexedTldScanner extends JettyTldPreScanned
+{
+    private final ServletContext context;
+
+    /**
+     * @param context the context to scan the TLDs of
+     * @param namespaceAware true to parse TLDs namespace aware
+     * @param validate true to validate TLDs
+     * @param blockExternal true to block external entities in TLDs
+     * @param tldUrls the URLs of the indexed TLDs
+     */
+    public IndexedTldScanner(ServletContext context, boolean namespaceAware, boolean validate, boolean blockExternal, Collection<URL> tldUrls)
+    {
+        super(context, namespaceAware, validate, blockExternal, tldUrls);
+        this.context = context;
+    }
+
+    @Override
+    public void scanJars()
+    {
+        super.scanJars();
+        JarScannerFactory.getJarScanner(context).scan(JarScanType.TLD, context, new WebAppJarCallback());
+    }
+
+    /**
+     * Finds the TLDs of the jars in {@code WEB-INF/lib} and in {@code WEB-INF/classes/META-INF}, as Jasper's own {@code TldScanner} would.
+     */
+    private class WebAppJarCallback implements JarScannerCallback
+    {
+        @Override
+        public void scan(Jar jar, String webappPath, boolean isWebapp) throws IOException
+        {
+            if (!isWebapp)
+                return;
+            jar.nextEntry();
+            for (String entryName = jar.getEntryName(); entryName != null; jar.nextEntry(), entryName = jar.getEntryName())
+            {
+                if (!entryName.startsWith("META-INF/") || !entryName.endsWith(".tld"))
+                    continue;
+                try
+                {
+                    parseTld(new TldResourcePath(jar.getJarFileURL(), webappPath, entryName));
+                }
+                catch (SAXException e)
+                {
+                    throw new IOException(e);
+                }
+            }
+        }
+
+        @Override
+        public void scan(File file, String webappPath, boolean isWebapp)
+        {
+            // Only jars are scanned
+        }
+
+        @Override
+        public void scanWebInfClasses() throws IOException
+        {
+            try
+            {
+                scanResourcePaths("/WEB-INF/classes/META-INF/");
+            }
+            catch (SAXException e)
+            {
+                throw new IOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,459 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+
+import org.apache.jasper.EmbeddedServletOptions;
+import org.apache.jasper.JspCompilationContext;
+import org.apache.jasper.compiler.JspRuntimeContext;
+import org.apache.jasper.compiler.JspUtil;
+import org.apache.jasper.servlet.JasperLoader;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent cache of compiled JSP classes that survives restarts.
+ * <p>
+ * Every JSP under the webroot is keyed by a SHA-256 hash of its source, the
+ * sources of everything it may depend on at translation time (tag files, TLDs
+ * and {@code .jspf} includes), the JSP engine configuration and the application
+ * classes it is compiled against (such as its tag handlers and tag plugins). The hashes of
+ * all the JSPs together name an entry directory under the cache directory,
+ * which holds the compiled classes plus a manifest of those hashes.
+ * </p>
+ * <p>
+ * The entry is validated once, as the context starts. If it is missing or
+ * does not match, every JSP is compiled into a private staging directory which
+ * is then atomically renamed into place, so processes sharing the cache
+ * directory only ever see complete entries. The compiled classes are then
+ * served directly (see {@link PrecompiledJsps}), and a restart of the same
+ * build never invokes Jasper at all.
+ * </p>
+ */
+public class JspCache extends AbstractLifeCycle
+{
+    private static final Logger LOG = LoggerFactory.getLogger(JspCache.class);
+
+    // Name of the manifest within each cache entry
+    public static final String MANIFEST = "jsp-cache.properties";
+
+    private final ServletContextHandler context;
+    private final Path cacheDir;
+    private final Map<String, String> hashesByPath = new TreeMap<>();
+    private final Map<String, String> classNamesByPath = new LinkedHashMap<>();
+    private final Path entryDir;
+    private boolean compiled;
+
+    /**
+     * Hash the JSPs of a context, compiled against the classes of this application.
+     *
+     * @param context the context to cache the JSPs of, with its "jsp" servlet already configured
+     * @param cacheDir the directory to keep cache entries in, which may be shared between processes
+     * @throws IOException if unable to read the webroot or the application classes
+     */
+    public JspCache(ServletContextHandler context, Path cacheDir) throws IOException
+    {
+        this(context, cacheDir, getApplicationClasses());
+    }
+
+    /**
+     * Hash the JSPs of a context.
+     *
+     * @param context the context to cache the JSPs of, with its "jsp" servlet already configured
+     * @param cacheDir the directory to keep cache entries in, which may be shared between processes
+     * @param classes the jar or directory of the application classes the JSPs are compiled against, or null
+     * @throws IOException if unable to read the webroot or the application classes
+     */
+    public JspCache(ServletContextHandler context, Path cacheDir, Path classes) throws IOException
+    {
+        this.context = context;
+        this.cacheDir = cacheDir;
+
+        Map<String, Resource> jsps = new TreeMap<>();
+        Map<String, Resource> dependencies = new TreeMap<>();
+        collect(context.getBaseResource(), "/", jsps, dependencies);
+
+        // Everything other than the JSP itself that influences its compiled form
+        MessageDigest shared = newDigest();
+        update(shared, Server.getVersion());
+        update(shared, new TreeMap<>(getJspServlet().getInitParameters()).toString());
+        if (classes != null)
+            updateClasses(shared, classes);
+        for (Map.Entry<String, Resource> dependency : dependencies.entrySet())
+        {
+            update(shared, dependency.getKey());
+            update(shared, dependency.getValue());
+        }
+        byte[] sharedHash = shared.digest();
+
+        MessageDigest entry = newDigest();
+        for (Map.Entry<String, Resource> jsp : jsps.entrySet())
+        {
+            MessageDigest digest = newDigest();
+            digest.update(sharedHash);
+            update(digest, jsp.getKey());
+            update(digest, jsp.getValue());
+            String hash = StringUtil.toHexString(digest.digest()).toLowerCase(Locale.ENGLISH);
+
+            hashesByPath.put(jsp.getKey(), hash);
+            classNamesByPath.put(jsp.getKey(), toClassName(jsp.getKey()));
+            update(entry, jsp.getKey() + "=" + hash);
+        }
+        this.entryDir = cacheDir.resolve(StringUtil.toHexString(entry.digest()).substring(0, 32).toLowerCase(Locale.ENGLISH));
+    }
+
+    private static void collect(Resource dir, String path, Map<String, Resource> jsps, Map<String, Resource> dependencies) throws IOException
+    {
+        String[] names = dir.list();
+        if (names == null)
+            return;
+        for (String name : names)
+        {
+            Resource resource = dir.addPath(name);
+            String resourcePath = path + name;
+            if (resource.isDirectory())
+                collect(resource, resourcePath.endsWith("/") ? resourcePath : resourcePath + "/", jsps, dependencies);
+            else if (name.endsWith(".jsp") || name.endsWith(".jspx"))
+                jsps.put(resourcePath, resource);
+            else if (name.endsWith(".tag") || name.endsWith(".tagx") || name.endsWith(".tld") || name.endsWith(".jspf"))
+                dependencies.put(resourcePath, resource);
+        }
+    }
+
+    // Same naming as JspCompilationContext, with the default "org.apache.jsp" package
+    private static String toClassName(String jspUri)
+    {
+        int slash = jspUri.lastIndexOf('/');
+        String packageName = slash > 0 ? JspUtil.makeJavaPackage(jspUri.substring(1, slash)) : "";
+        String className = JspUtil.makeJavaIdentifier(jspUri.substring(slash + 1));
+        return packageName.isEmpty() ? "org.apache.jsp." + className : "org.apache.jsp." + packageName + "." + className;
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value)
+    {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte)0);
+    }
+
+    private static void update(MessageDigest digest, Resource resource) throws IOException
+    {
+        try (InputStream in = resource.getInputStream())
+        {
+            update(digest, in);
+        }
+    }
+
+    private static void update(MessageDigest digest, InputStream in) throws IOException
+    {
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) >= 0)
+        {
+            digest.update(buffer, 0, len);
+        }
+        digest.update((byte)0);
+    }
+
+    /**
+     * @return the jar or directory this class was loaded from, or null if unknown
+     */
+    private static Path getApplicationClasses() throws IOException
+    {
+        CodeSource codeSource = JspCache.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null)
+            return null;
+        try
+        {
+            return Path.of(codeSource.getLocation().toURI());
+        }
+        catch (URISyntaxException | IllegalArgumentException e)
+        {
+            throw new IOException("Unable to locate the application classes at " + codeSource.getLocation(), e);
+        }
+    }
+
+    // The whole jar, or each class file of a directory (such as target/classes)
+    private static void updateClasses(MessageDigest digest, Path classes) throws IOException
+    {
+        if (!Files.isDirectory(classes))
+        {
+            try (InputStream in = Files.newInputStream(classes))
+            {
+                update(digest, in);
+            }
+            return;
+        }
+        try (Stream<Path> files = Files.walk(classes))
+        {
+            for (Path file : (Iterable<Path>)files.filter(f -> f.toString().endsWith(".class")).sorted()::iterator)
+            {
+                update(digest, classes.relativize(file).toString());
+                try (InputStream in = Files.newInputStream(file))
+                {
+                    update(digest, in);
+                }
+            }
+        }
+    }
+
+    private ServletHolder getJspServlet()
+    {
+        return context.getServletHandler().getServlet("jsp");
+    }
+
+    /**
+     * @return the directory holding the compiled classes for the current JSP sources
+     */
+    public Path getEntryDir()
+    {
+        return entryDir;
+    }
+
+    /**
+     * @return the JSP paths (eg: {@code /test/jstl.jsp}) mapped to their generated servlet class names
+     */
+    public Map<String, String> getClassNamesByPath()
+    {
+        return Collections.unmodifiableMap(classNamesByPath);
+    }
+
+    /**
+     * @return true if the last start had to compile the JSPs, false if it found a valid entry
+     */
+    public boolean isCompiled()
+    {
+        return compiled;
+    }
+
+    /**
+     * A classloader that loads the compiled JSP classes from the cache entry.
+     * <p>
+     * Like Jasper's own loader, classes in the {@code org.apache.jsp} package are
+     * only ever loaded from the entry, never from the parent.
+     * </p>
+     *
+     * @param parent the parent classloader for everything else
+     * @return the classloader
+     */
+    public ClassLoader newClassLoader(ClassLoader parent)
+    {
+        try
+        {
+            // The entry may not exist yet, so ensure the URL is treated as a directory
+            String uri = entryDir.toUri().toASCIIString();
+            return new JasperLoader(new URL[]{new URL(uri.endsWith("/") ? uri : uri + "/")}, parent, null);
+        }
+        catch (MalformedURLException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        compiled = false;
+        if (!isValid(entryDir))
+        {
+            if (Files.exists(entryDir))
+            {
+                LOG.warn("Discarding invalid JSP cache entry {}", entryDir);
+                Path stale = Files.createTempDirectory(cacheDir, entryDir.getFileName() + ".stale-");
+                Files.move(entryDir, stale.resolve("entry"), StandardCopyOption.ATOMIC_MOVE);
+                delete(stale);
+            }
+            compile();
+        }
+        else
+        {
+            LOG.info("Using cached JSP classes from {}", entryDir);
+        }
+        super.doStart();
+    }
+
+    private boolean isValid(Path dir) throws IOException
+    {
+        Path manifest = dir.resolve(MANIFEST);
+        if (!Files.isRegularFile(manifest))
+            return false;
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(manifest))
+        {
+            properties.load(in);
+        }
+        if (!new HashMap<>(properties).equals(hashesByPath))
+            return false;
+
+        for (String className : classNamesByPath.values())
+        {
+            if (!Files.isRegularFile(dir.resolve(className.replace('.', '/') + ".class")))
+                return false;
+        }
+        return true;
+    }
+
+    private void compile() throws Exception
+    {
+        Files.createDirectories(cacheDir);
+        Path staging = Files.createTempDirectory(cacheDir, entryDir.getFileName() + ".tmp-");
+        try
+        {
+            long start = System.nanoTime();
+            ServletContext servletContext = context.getServletContext();
+            Map<String, String> initParams = new HashMap<>(getJspServlet().getInitParameters());
+            initParams.put("scratchdir", staging.toString());
+            EmbeddedServletOptions options = new EmbeddedServletOptions(new CacheServletConfig(servletContext, initParams), servletContext);
+            JspRuntimeContext runtimeContext = new JspRuntimeContext(servletContext, options);
+            try
+            {
+                for (String jspUri : classNamesByPath.keySet())
+                {
+                    JspCompilationContext compilationContext = new JspCompilationContext(jspUri, options, servletContext, null, runtimeContext);
+                    compilationContext.createCompiler().compile(true, true);
+                }
+            }
+            finally
+            {
+                runtimeContext.destroy();
+            }
+
+            Properties manifest = new Properties();
+            manifest.putAll(hashesByPath);
+            try (OutputStream out = Files.newOutputStream(staging.resolve(MANIFEST)))
+            {
+                manifest.store(out, "Compiled JSP hashes");
+            }
+
+            // Publish the complete entry in one step
+            try
+            {
+                Files.move(staging, entryDir, StandardCopyOption.ATOMIC_MOVE);
+                LOG.info("Compiled {} JSPs into {} in {}ms", classNamesByPath.size(), entryDir, (System.nanoTime() - start) / 1_000_000);
+                compiled = true;
+            }
+            catch (FileSystemException e)
+            {
+                // Another process published the same entry first
+                if (!isValid(entryDir))
+                    throw e;
+                LOG.info("Using JSP classes concurrently cached in {}", entryDir);
+            }
+        }
+        finally
+        {
+            if (Files.exists(staging))
+                delete(staging);
+        }
+    }
+
+    private static void delete(Path dir) throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(dir))
+        {
+            for (Path path : (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator)
+            {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * The ServletConfig the JSP engine options are read from when compiling into the cache.
+     */
+    private static class CacheServletConfig implements ServletConfig
+    {
+        private final ServletContext servletContext;
+        private final Map<String, String> initParams;
+
+        private CacheServletConfig(ServletContext servletContext, Map<String, String> initParams)
+        {
+            this.servletContext = servletContext;
+            this.initParams = initParams;
+        }
+
+        @Override
+        public String getServletName()
+        {
+            return "jsp";
+        }
+
+        @Override
+        public ServletContext getServletContext()
+        {
+            return servletContext;
+        }
+
+        @Override
+        public String getInitParameter(String name)
+        {
+            return initParams.get(name);
+        }
+
+        @Override
+        public Enumeration<String> getInitParameterNames()
+        {
+            return Collections.enumeration(initParams.keySet());
+        }
+    }
+}
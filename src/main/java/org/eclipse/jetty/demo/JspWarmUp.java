@@ -0,0 +1,297 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.http.pathmap.MatchedResource;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHandler.MappedServlet;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles, loads and initializes every JSP of the contexts of a server as soon as they are started.
+ * <p>
+ * Registered as a listener of the handler of the server, so that it runs once every context is started,
+ * but before the server opens its connectors: the first request to any JSP then finds it ready.
+ * Each JSP served by the "jsp" servlet is requested with the {@code jsp_precompile} parameter, through
+ * a {@link LocalConnector} that is only started for the warm-up, so the page is compiled and its servlet
+ * initialized, but never executed. JSPs mapped to their own servlet (eg: precompiled) are skipped, as
+ * they are initialized by their holder.
+ * </p>
+ * <p>
+ * The JSPs are compiled in parallel, on a fork-join pool of a bounded number of threads. Jasper only
+ * compiles a tag file (eg: {@code /WEB-INF/tags/panel.tag}) as part of a page using it, and pages using the
+ * same tag file wait for each other while it compiles. So the tag files each page uses (directly, or
+ * through other tag files) are found from its {@code taglib} directives, the first page using each tag file
+ * is compiled first, and all the other pages then compile in parallel without waiting on any tag file.
+ * </p>
+ */
+public class JspWarmUp implements LifeCycle.Listener
+{
+    private static final Logger LOG = LoggerFactory.getLogger(JspWarmUp.class);
+
+    // The taglib directives of a page or tag file, and the attributes of each
+    private static final Pattern TAGLIB_DIRECTIVE = Pattern.compile("<%@\\s*taglib\\s(.*?)%>", Pattern.DOTALL);
+    private static final Pattern ATTRIBUTE = Pattern.compile("([\\w-]+)\\s*=\\s*[\"']([^\"']*)[\"']");
+
+    private final Server server;
+    private final int threads;
+    private final Map<String, Long> compileTimes = new ConcurrentHashMap<>();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * @param server the server to warm up the contexts of
+     * @param threads the maximum JSPs compiled at once
+     */
+    public JspWarmUp(Server server, int threads)
+    {
+        if (threads < 1)
+            throw new IllegalArgumentException("Invalid threads " + threads);
+        this.server = server;
+        this.threads = threads;
+    }
+
+    @Override
+    public void lifeCycleStarted(LifeCycle event)
+    {
+        long start = System.nanoTime();
+        compileTimes.clear();
+        failures.set(0);
+        LocalConnector connector = new LocalConnector(server);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try
+        {
+            connector.start();
+            List<Callable<Void>> tagFilePages = new ArrayList<>();
+            List<Callable<Void>> otherPages = new ArrayList<>();
+            for (Handler handler : server.getChildHandlersByClass(ServletContextHandler.class))
+            {
+                ServletContextHandler context = (ServletContextHandler)handler;
+                Set<String> compiledTagFiles = new HashSet<>();
+                for (String jspPath : getJspPaths(context))
+                {
+                    Set<String> tagFiles = getTagFiles(context, jspPath, new LinkedHashSet<>());
+                    if (compiledTagFiles.containsAll(tagFiles))
+                    {
+                        otherPages.add(() -> compile(connector, context, jspPath));
+                    }
+                    else
+                    {
+                        LOG.debug("Compiling tag files {} with {}", tagFiles, jspPath);
+                        compiledTagFiles.addAll(tagFiles);
+                        tagFilePages.add(() -> compile(connector, context, jspPath));
+                    }
+                }
+            }
+            pool.invokeAll(tagFilePages);
+            pool.invokeAll(otherPages);
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to warm up the JSPs", e);
+        }
+        finally
+        {
+            pool.shutdownNow();
+            try
+            {
+                connector.stop();
+            }
+            catch (Exception e)
+            {
+                LOG.warn("Unable to stop the warm-up connector", e);
+            }
+        }
+
+        String slowest = compileTimes.entrySet().stream()
+            .max(Map.Entry.comparingByValue())
+            .map(e -> e.getKey() + " in " + e.getValue() + "ms")
+            .orElse("none");
+        LOG.info("Warmed up {} JSPs ({} failed) on {} threads in {}ms, slowest {}",
+            compileTimes.size(), failures, threads, (System.nanoTime() - start) / 1_000_000, slowest);
+    }
+
+    private Void compile(LocalConnector connector, ServletContextHandler context, String jspPath)
+    {
+        MatchedResource<MappedServlet> matched = context.getServletHandler().getMatchedServlet(jspPath);
+        if (matched == null || !"jsp".equals(matched.getResource().getServletHolder().getName()))
+            return null;
+
+        String uri = context.getContextPath().equals("/") ? jspPath : context.getContextPath() + jspPath;
+        try
+        {
+            long start = System.nanoTime();
+            HttpTester.Response response = HttpTester.parseResponse(connector.getResponse(
+                "GET " + uri + "?jsp_precompile HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            if (response != null && response.getStatus() == 200)
+            {
+                compileTimes.put(uri, millis);
+                LOG.debug("Compiled {} in {}ms", uri, millis);
+            }
+            else
+            {
+                failures.incrementAndGet();
+                LOG.warn("Unable to warm up {}: {}", uri, response == null ? "no response" : response.getStatus());
+            }
+        }
+        catch (Exception e)
+        {
+            failures.incrementAndGet();
+            LOG.warn("Unable to warm up {}", uri, e);
+        }
+        return null;
+    }
+
+    /**
+     * @param context the context to look for JSPs in
+     * @return the paths of the JSPs in the base resource of the context, outside of WEB-INF and META-INF
+     * @throws IOException if unable to list the base resource
+     */
+    static List<String> getJspPaths(ServletContextHandler context) throws IOException
+    {
+        List<String> jspPaths = new ArrayList<>();
+        if (context.getBaseResource() != null)
+            collect(context.getBaseResource(), "/", jspPaths);
+        return jspPaths;
+    }
+
+    private static void collect(Resource dir, String path, List<String> jspPaths) throws IOException
+    {
+        String[] names = dir.list();
+        if (names == null)
+            return;
+        for (String name : names)
+        {
+            Resource resource = dir.addPath(name);
+            String resourcePath = path + name;
+            if (resource.isDirectory())
+            {
+                String dirPath = resourcePath.endsWith("/") ? resourcePath : resourcePath + "/";
+                if (!"/WEB-INF/".equals(dirPath) && !"/META-INF/".equals(dirPath))
+                    collect(resource, dirPath, jspPaths);
+            }
+            else if (name.endsWith(".jsp") || name.endsWith(".jspx"))
+            {
+                jspPaths.add(resourcePath);
+            }
+        }
+    }
+
+    /**
+     * Find the tag files used by a page or tag file, from the prefixes of its {@code tagdir} taglib directives.
+     *
+     * @param context the context of the page
+     * @param path the path of the page or tag file in the context
+     * @param tagFiles the tag files found so far, added to
+     * @return the tag files, including those used by the tag files
+     * @throws IOException if unable to read the page
+     */
+    static Set<String> getTagFiles(ServletContextHandler context, String path, Set<String> tagFiles) throws IOException
+    {
+        Resource resource = context.getBaseResource().addPath(path);
+        if (!resource.exists() || resource.isDirectory())
+            return tagFiles;
+        String source;
+        try (InputStream in = resource.getInputStream())
+        {
+            source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        Matcher directive = TAGLIB_DIRECTIVE.matcher(source);
+        while (directive.find())
+        {
+            Map<String, String> attributes = new HashMap<>();
+            Matcher attribute = ATTRIBUTE.matcher(directive.group(1));
+            while (attribute.find())
+            {
+                attributes.put(attribute.group(1), attribute.group(2));
+            }
+            String tagDir = attributes.get("tagdir");
+            String prefix = attributes.get("prefix");
+            if (tagDir == null || prefix == null)
+                continue;
+
+            Matcher tag = Pattern.compile("<" + Pattern.quote(prefix) + ":([\\w.-]+)").matcher(source);
+            while (tag.find())
+            {
+                String tagFile = (tagDir.endsWith("/") ? tagDir : tagDir + "/") + tag.group(1) + ".tag";
+                if (!context.getBaseResource().addPath(tagFile).exists())
+                    tagFile = tagFile + "x";
+                if (tagFiles.add(tagFile))
+                    getTagFiles(context, tagFile, tagFiles);
+            }
+        }
+        return tagFiles;
+    }
+
+    /**
+     * @return the number of JSPs compiled and initialized by the last warm-up
+     */
+    public int getWarmedUp()
+    {
+        return compileTimes.size();
+    }
+
+    /**
+     * @return the number of JSPs that failed to compile or initialize in the last warm-up
+     */
+    public int getFailures()
+    {
+        return failures.get();
+    }
+
+    /**
+     * @return the milliseconds each JSP took to compile and initialize in the last warm-up (including the
+     * tag files first compiled with it), keyed by URI
+     */
+    public Map<String, Long> getCompileTimes()
+    {
+        return Collections.unmodifiableMap(compileTimes);
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+}
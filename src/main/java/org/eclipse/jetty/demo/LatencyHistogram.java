@@ -0,0 +1,98 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with buckets of powers of two microseconds, from 1&micro;s to ~67s.
+ * <p>
+ * Recording is allocation-free, and each bucket is a striped {@link LongAdder},
+ * so concurrent requests do not contend on a single counter.
+ * </p>
+ */
+public class LatencyHistogram
+{
+    // Bucket i counts latencies of at most 2^i microseconds (and more than 2^(i-1)), the last bucket counts the rest
+    public static final int BUCKETS = 27;
+
+    // The upper bound of each bucket in seconds, as Prometheus "le" labels
+    private static final String[] UPPER_BOUNDS = new String[BUCKETS];
+
+    static
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            UPPER_BOUNDS[i] = BigDecimal.valueOf(1L << i, 6).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram()
+    {
+        for (int i = 0; i < counts.length; i++)
+        {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos the latency to record
+     */
+    public void record(long nanos)
+    {
+        // Rounded up, so that a latency on a bound is counted in its "le" bucket and one just over it is not
+        long micros = (Math.max(0, nanos) + 999) / 1000;
+        int bucket = Math.min(BUCKETS, 64 - Long.numberOfLeadingZeros(Math.max(0, micros - 1)));
+        counts[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * @param bucket the bucket index, less than {@link #BUCKETS}
+     * @return the upper bound of the bucket, in seconds
+     */
+    public static String getUpperBound(int bucket)
+    {
+        return UPPER_BOUNDS[bucket];
+    }
+
+    /**
+     * @return the latencies recorded in each bucket, the last being those over the largest upper bound
+     */
+    public long[] getCounts()
+    {
+        long[] snapshot = new long[counts.length];
+        for (int i = 0; i < counts.length; i++)
+        {
+            snapshot[i] = counts[i].sum();
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the sum of all latencies recorded, in nanoseconds
+     */
+    public long getSumNanos()
+    {
+        return sumNanos.sum();
+    }
+}
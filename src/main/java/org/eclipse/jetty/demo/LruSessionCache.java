@@ -0,0 +1,399 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EventListener;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSessionActivationListener;
+import javax.servlet.http.HttpSessionEvent;
+
+import org.eclipse.jetty.server.session.DefaultSessionCache;
+import org.eclipse.jetty.server.session.Session;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.server.session.SessionHandler;
+import org.eclipse.jetty.util.statistic.CounterStatistic;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A session cache holding at most a number of resident sessions on the heap, in front of a
+ * passivating {@link org.eclipse.jetty.server.session.SessionDataStore} such as the
+ * {@link OffHeapSessionDataStore}.
+ * <p>
+ * When there are too many resident sessions, the least recently accessed ones that are not in
+ * use are passivated to the store and dropped from the heap, by the session scheduler rather
+ * than a request thread. They are activated again from the store on their next request.
+ * Only the passivated sessions are in the store: resident sessions are not stored as their
+ * requests complete, and are deleted from the store when they are activated.
+ * </p>
+ * <p>
+ * As well as the session attributes implementing {@link HttpSessionActivationListener}, the
+ * activation listeners registered with the context (such as the {@code TagListener} of the
+ * acme taglib) are called when a session will passivate and did activate.
+ * </p>
+ */
+public class LruSessionCache extends DefaultSessionCache
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LruSessionCache.class);
+
+    private final ConcurrentMap<String, Session> sessions;
+    private final int maxResidentSessions;
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder evictions = new LongAdder();
+    // Sessions loaded or evicted bypass the statistics of the DefaultSessionCache
+    private final CounterStatistic stats = new CounterStatistic();
+
+    /**
+     * @param handler the session handler
+     * @param maxResidentSessions the maximum sessions to keep on the heap
+     */
+    public LruSessionCache(SessionHandler handler, int maxResidentSessions)
+    {
+        this(handler, new ConcurrentHashMap<>(), maxResidentSessions);
+    }
+
+    private LruSessionCache(SessionHandler handler, ConcurrentMap<String, Session> sessions, int maxResidentSessions)
+    {
+        super(handler, sessions);
+        this.sessions = sessions;
+        this.maxResidentSessions = maxResidentSessions;
+    }
+
+    public int getMaxResidentSessions()
+    {
+        return maxResidentSessions;
+    }
+
+    /**
+     * @return the sessions passivated to make room on the heap
+     */
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getSessionsCurrent()
+    {
+        return stats.getCurrent();
+    }
+
+    @Override
+    public long getSessionsMax()
+    {
+        return stats.getMax();
+    }
+
+    @Override
+    public long getSessionsTotal()
+    {
+        return stats.getTotal();
+    }
+
+    @Override
+    public void resetStats()
+    {
+        stats.reset();
+    }
+
+    @Override
+    public Session newSession(HttpServletRequest request, SessionData data)
+    {
+        return new LruSession(getSessionHandler(), request, data);
+    }
+
+    /**
+     * A session loaded from the store, which is activated once it is resident (see
+     * {@link #doComputeIfAbsent(String, Function)}).
+     */
+    @Override
+    public Session newSession(SessionData data)
+    {
+        return new LruSession(getSessionHandler(), data);
+    }
+
+    @Override
+    protected Session getAndEnter(String id, boolean enter) throws Exception
+    {
+        Session session = super.getAndEnter(id, enter);
+        if (session != null)
+            ((LruSession)session).entering.decrementAndGet();
+        return session;
+    }
+
+    @Override
+    public Session doPutIfAbsent(String id, Session session)
+    {
+        Session existing = super.doPutIfAbsent(id, session);
+        if (existing == null)
+        {
+            stats.increment();
+            checkResidentSessions();
+        }
+        return existing;
+    }
+
+    @Override
+    public Session doDelete(String id)
+    {
+        Session session = super.doDelete(id);
+        if (session != null)
+            stats.decrement();
+        return session;
+    }
+
+    /**
+     * Only called by getAndEnter, so the session found cannot be evicted until it is entered.
+     * <p>
+     * A session not resident is loaded from the store before the map is updated, and activated
+     * (and deleted from the store) after, so that neither the store nor the listeners are called
+     * within the update of the map. It is locked until activated, so the requests that find it
+     * in the meantime wait to enter it.
+     * </p>
+     */
+    @Override
+    protected Session doComputeIfAbsent(String id, Function<String, Session> mappingFunction)
+    {
+        LruSession loaded = null;
+        while (true)
+        {
+            if (loaded == null && !sessions.containsKey(id))
+            {
+                loaded = (LruSession)mappingFunction.apply(id);
+                if (loaded == null)
+                    return null;
+            }
+
+            LruSession candidate = loaded;
+            AutoLock lock = candidate == null ? null : candidate.lock();
+            try
+            {
+                Session session = sessions.compute(id, (key, existing) ->
+                {
+                    Session found = existing == null ? candidate : existing;
+                    if (found != null)
+                        ((LruSession)found).entering.incrementAndGet();
+                    return found;
+                });
+                // Evicted since it was found resident, so load it
+                if (session == null)
+                    continue;
+
+                if (session == candidate)
+                {
+                    stats.increment();
+                    activate(candidate);
+                }
+                checkResidentSessions();
+                return session;
+            }
+            finally
+            {
+                if (lock != null)
+                    lock.close();
+            }
+        }
+    }
+
+    /**
+     * A session loaded from the store is activated, and no longer kept in the store until it is evicted again.
+     */
+    private void activate(LruSession session)
+    {
+        session.didActivate();
+        try
+        {
+            _sessionDataStore.delete(session.getId());
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to delete activated session {}", session.getId(), e);
+        }
+    }
+
+    /**
+     * Unlike {@link org.eclipse.jetty.server.session.AbstractSessionCache#release(String, Session)}
+     * with a passivating store, the session is neither stored nor passivated when its last request
+     * completes: it stays resident until it is evicted.
+     */
+    @Override
+    public void release(String id, Session session) throws Exception
+    {
+        if (session == null || session.getId() == null)
+            throw new IllegalArgumentException("Put key=" + id + " session=" + (session == null ? "null" : session.getId()));
+
+        try (AutoLock lock = session.lock())
+        {
+            if (session.getSessionHandler() == null)
+                throw new IllegalStateException("Session " + id + " is not managed");
+            if (session.isInvalid())
+                return;
+            ((LruSession)session).exit();
+            if (session.getRequests() <= 0)
+                session.setIdChanged(false);
+        }
+    }
+
+    private void checkResidentSessions()
+    {
+        if (sessions.size() > maxResidentSessions && evicting.compareAndSet(false, true))
+            getSessionHandler().getScheduler().schedule(this::evict, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Passivate the least recently accessed sessions until 90% of the maximum are resident.
+     */
+    void evict()
+    {
+        try
+        {
+            int excess = sessions.size() - maxResidentSessions * 9 / 10;
+            if (excess <= 0)
+                return;
+            List<LruSession> candidates = new ArrayList<>(sessions.size());
+            for (Session session : sessions.values())
+            {
+                candidates.add((LruSession)session);
+            }
+            candidates.sort(Comparator.comparingLong(LruSession::getLastUsed));
+            for (LruSession session : candidates)
+            {
+                if (excess <= 0)
+                    break;
+                if (passivate(session))
+                    excess--;
+            }
+        }
+        finally
+        {
+            evicting.set(false);
+        }
+    }
+
+    private boolean passivate(LruSession session)
+    {
+        try (AutoLock lock = session.lock())
+        {
+            if (!session.isResident() || !session.isValid() || session.getRequests() > 0 || session.entering.get() > 0)
+                return false;
+            session.willPassivate();
+            // Attributes may have been changed in place, so always store them
+            session.getData().setDirty(true);
+            _sessionDataStore.store(session.getId(), session.getData());
+            // Unless a request has found it since, and is waiting for the lock to enter it
+            if (sessions.computeIfPresent(session.getId(), (id, resident) -> resident == session && session.entering.get() == 0 ? null : resident) != null)
+            {
+                _sessionDataStore.delete(session.getId());
+                session.didActivate();
+                return false;
+            }
+            stats.decrement();
+            session.setResident(false);
+            evictions.increment();
+            return true;
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to passivate session {}", session.getId(), e);
+            return false;
+        }
+    }
+
+    private void notifyActivationListeners(Session session, boolean activate)
+    {
+        List<EventListener> listeners = _context.getContext().getContextHandler().getEventListeners();
+        HttpSessionEvent event = null;
+        for (EventListener listener : listeners)
+        {
+            if (listener instanceof HttpSessionActivationListener)
+            {
+                if (event == null)
+                    event = new HttpSessionEvent(session);
+                if (activate)
+                    ((HttpSessionActivationListener)listener).sessionDidActivate(event);
+                else
+                    ((HttpSessionActivationListener)listener).sessionWillPassivate(event);
+            }
+        }
+    }
+
+    private class LruSession extends Session
+    {
+        // When the session was last accessed, or created or loaded (so that it is not evicted before its first access)
+        private volatile long lastUsed = System.nanoTime();
+        // The requests that found the session in the cache and are about to enter it
+        private final AtomicInteger entering = new AtomicInteger();
+
+        LruSession(SessionHandler handler, HttpServletRequest request, SessionData data)
+        {
+            super(handler, request, data);
+        }
+
+        LruSession(SessionHandler handler, SessionData data)
+        {
+            super(handler, data);
+        }
+
+        SessionData getData()
+        {
+            return getSessionData();
+        }
+
+        long getLastUsed()
+        {
+            return lastUsed;
+        }
+
+        void exit()
+        {
+            complete();
+        }
+
+        @Override
+        protected boolean access(long time)
+        {
+            lastUsed = System.nanoTime();
+            return super.access(time);
+        }
+
+        @Override
+        public void willPassivate()
+        {
+            super.willPassivate();
+            notifyActivationListeners(this, false);
+        }
+
+        @Override
+        public void didActivate()
+        {
+            super.didActivate();
+            notifyActivationListeners(this, true);
+        }
+    }
+}
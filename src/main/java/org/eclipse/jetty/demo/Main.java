@@ -25,18 +25,48 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+import javax.servlet.DispatcherType;
 import javax.servlet.jsp.JspFactory;
 
+import com.acme.AsyncDateServlet;
 import com.acme.DateServlet;
 import org.apache.jasper.runtime.JspFactoryImpl;
+import org.apache.jasper.runtime.TagHandlerPool;
 import org.apache.tomcat.InstanceManager;
 import org.apache.tomcat.SimpleInstanceManager;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
 import org.eclipse.jetty.jsp.JettyJspServlet;
+import org.eclipse.jetty.logging.JettyLoggerFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.server.session.SessionHandler;
 import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.StringUtil;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.slf4j.bridge.SLF4JBridgeHandler;
 
 /**
@@ -60,31 +90,781 @@ public class Main
     // Resource path pointing to where the WEBROOT is
     private static final String WEBROOT_INDEX = "/webroot/";
 
+    // System property to serve the JSPs precompiled at build time (see pom.xml)
+    public static final String PRECOMPILED_PROPERTY = "jsp.precompiled";
+
+    // System property naming a persistent directory to cache compiled JSPs in
+    public static final String CACHE_DIR_PROPERTY = "jsp.cache.dir";
+
+    // System property to run the JSP engine in production mode
+    public static final String PRODUCTION_PROPERTY = "jsp.production";
+
+    // Jetty logging property for the level of the Jasper loggers
+    private static final String JASPER_LEVEL_PROPERTY = "org.apache.jasper.LEVEL";
+
+    // System property for the seconds between background JSP recompile checks in production mode
+    public static final String CHECK_INTERVAL_PROPERTY = "jsp.checkInterval";
+
+    // System property to stream JSP output, rather than buffering it in the response
+    public static final String STREAMING_PROPERTY = "jsp.streaming";
+
+    // System property for the page contexts (and their JspWriter and BodyContent buffers) pooled across threads, or 0 for Jasper's per thread pool
+    public static final String BUFFER_POOL_PROPERTY = "jsp.bufferPool";
+
+    // System property to compile and initialize every JSP as the server starts, before it accepts connections
+    public static final String WARM_UP_PROPERTY = "jsp.warmUp";
+
+    // System property for the maximum JSPs compiled at once by the warm-up, by default the available processors
+    public static final String WARM_UP_THREADS_PROPERTY = "jsp.warmUpThreads";
+
+    // System property to evaluate the simplest EL expressions of the JSPs without the ELResolver chain
+    public static final String COMPILED_EL_PROPERTY = "jsp.compiledEl";
+
+    // System property to not pool the handlers of classic tags, but create one for each use
+    public static final String TAG_POOLING_PROPERTY = "jsp.tagPooling";
+
+    // System property for the maximum handlers pooled for each use of a tag class, "*" for the others (eg: com.acme.DateTag=64,*=5)
+    public static final String TAG_POOL_SIZES_PROPERTY = "jsp.tagPoolSizes";
+
+    // System property to inline c:forEach over ranges, c:out and acme:date2 in the JSPs, rather than run their tag handlers
+    public static final String TAG_PLUGINS_PROPERTY = "jsp.tagPlugins";
+
+    // System property to scan every jar for TLDs instead of using the index generated at build time
+    public static final String TLD_INDEX_PROPERTY = "jsp.tldIndex";
+
+    // System property for the threads requests run on: platform (the default), virtual or hybrid
+    public static final String THREAD_MODE_PROPERTY = "server.threadMode";
+
+    // System property to serve webroot/static from an in-memory cache
+    public static final String STATIC_CACHE_PROPERTY = "static.cache";
+
+    // System property to record request metrics, exposed at /metrics
+    public static final String METRICS_PROPERTY = "server.metrics";
+
+    // System property to send JSP responses with an ETag, answering conditional requests with a 304
+    public static final String PAGE_ETAGS_PROPERTY = "page.etags";
+
+    // System property for the JSPs to cache whole responses of, and their TTL in seconds (eg: /test/jstl.jsp=60,/test/tag.jsp=1)
+    public static final String PAGE_CACHE_PROPERTY = "page.cache";
+
+    // System property for where sessions are kept: heap (the default), direct or mapped
+    public static final String SESSION_STORE_PROPERTY = "server.sessionStore";
+
+    // System property for the maximum sessions kept on the heap, when not all of them are
+    public static final String MAX_RESIDENT_SESSIONS_PROPERTY = "server.maxResidentSessions";
+
+    // System property to also accept HTTP/2 cleartext (h2c) connections, by prior knowledge or upgrade from HTTP/1.1
+    public static final String H2C_PROPERTY = "server.h2c";
+
+    // System properties to tune the connector, see the setters for their defaults
+    public static final String ACCEPTORS_PROPERTY = "server.acceptors";
+    public static final String SELECTORS_PROPERTY = "server.selectors";
+    public static final String IDLE_TIMEOUT_PROPERTY = "server.idleTimeout";
+    public static final String OUTPUT_BUFFER_SIZE_PROPERTY = "server.outputBufferSize";
+    public static final String MAX_CONCURRENT_STREAMS_PROPERTY = "server.maxConcurrentStreams";
+
+    // System property for the milliseconds to drain the requests in flight for when stopping, or 0 to stop at once
+    public static final String DRAIN_TIMEOUT_PROPERTY = "server.drainTimeout";
+
+    // System property to listen with SO_REUSEPORT, so that the next instance can listen on the same port before this one stops
+    public static final String REUSE_PORT_PROPERTY = "server.reusePort";
+
+    // System property to accept on the socket handed over by the process that started this one (eg: systemd), if any
+    public static final String INHERIT_CHANNEL_PROPERTY = "server.inheritChannel";
+
+    // System property for extra contexts, each with its own webroot (eg: /app1=/srv/app1,/app2=/srv/app2)
+    public static final String CONTEXTS_PROPERTY = "server.contexts";
+
+    // System property to not share the parsed TLDs and tag plugins between contexts
+    public static final String SHARED_JSP_RUNTIME_PROPERTY = "jsp.sharedRuntime";
+
     public static void main(String[] args) throws Exception
     {
-        int port = 8080;
-
-        Main main = new Main(port);
+        Main main = fromSystemProperties(8080);
         main.start();
         main.waitForInterrupt();
     }
 
+    /**
+     * @param port the port to listen on
+     * @return a Main configured by the system properties (see the {@code *_PROPERTY} constants)
+     */
+    public static Main fromSystemProperties(int port)
+    {
+        boolean production = Boolean.getBoolean(PRODUCTION_PROPERTY);
+        if (!production && System.getProperty(JASPER_LEVEL_PROPERTY) == null)
+        {
+            // Jasper logs at WARN by default (see jetty-logging.properties). Set before any logging
+            // is initialized, so it also applies to Jasper loggers created later
+            System.setProperty(JASPER_LEVEL_PROPERTY, "DEBUG");
+        }
+
+        Main main = new Main(port, production);
+        main.setJspCheckInterval(Integer.getInteger(CHECK_INTERVAL_PROPERTY, 0));
+        main.setPrecompiled(Boolean.getBoolean(PRECOMPILED_PROPERTY));
+        main.setJspStreaming(Boolean.getBoolean(STREAMING_PROPERTY));
+        main.setJspBufferPool(Integer.getInteger(BUFFER_POOL_PROPERTY, 0));
+        main.setJspWarmUp(Boolean.getBoolean(WARM_UP_PROPERTY));
+        main.setJspWarmUpThreads(Integer.getInteger(WARM_UP_THREADS_PROPERTY, main.getJspWarmUpThreads()));
+        main.setJspCompiledEl(Boolean.getBoolean(COMPILED_EL_PROPERTY));
+        main.setJspTagPooling(Boolean.parseBoolean(System.getProperty(TAG_POOLING_PROPERTY, "true")));
+        Map<String, Integer> tagPoolSizes = new LinkedHashMap<>();
+        for (String size : StringUtil.csvSplit(System.getProperty(TAG_POOL_SIZES_PROPERTY, "")))
+        {
+            String[] classAndSize = size.split("=", 2);
+            tagPoolSizes.put(classAndSize[0].trim(), Integer.parseInt(classAndSize[1].trim()));
+        }
+        main.setJspTagPoolSizes(tagPoolSizes);
+        main.setJspTagPlugins(Boolean.getBoolean(TAG_PLUGINS_PROPERTY));
+        main.setTldIndex(Boolean.parseBoolean(System.getProperty(TLD_INDEX_PROPERTY, "true")));
+        main.setStaticCache(Boolean.getBoolean(STATIC_CACHE_PROPERTY));
+        main.setMetrics(Boolean.getBoolean(METRICS_PROPERTY));
+        main.setPageETags(Boolean.getBoolean(PAGE_ETAGS_PROPERTY));
+        Map<String, Integer> pageCacheTtls = new LinkedHashMap<>();
+        for (String ttl : StringUtil.csvSplit(System.getProperty(PAGE_CACHE_PROPERTY, "")))
+        {
+            String[] pathAndSeconds = ttl.split("=", 2);
+            pageCacheTtls.put(pathAndSeconds[0].trim(), Integer.parseInt(pathAndSeconds[1].trim()));
+        }
+        main.setPageCacheTtls(pageCacheTtls);
+        for (String context : StringUtil.csvSplit(System.getProperty(CONTEXTS_PROPERTY, "")))
+        {
+            String[] pathAndWebRoot = context.split("=", 2);
+            main.addContext(pathAndWebRoot[0].trim(), Path.of(pathAndWebRoot[1].trim()));
+        }
+        main.setSharedJspRuntime(Boolean.parseBoolean(System.getProperty(SHARED_JSP_RUNTIME_PROPERTY, "true")));
+        main.setSessionStore(SessionStore.valueOf(System.getProperty(SESSION_STORE_PROPERTY, "heap").toUpperCase(Locale.ENGLISH)));
+        main.setMaxResidentSessions(Integer.getInteger(MAX_RESIDENT_SESSIONS_PROPERTY, main.getMaxResidentSessions()));
+        main.setThreadMode(ThreadMode.valueOf(System.getProperty(THREAD_MODE_PROPERTY, "platform").toUpperCase(Locale.ENGLISH)));
+        main.setH2c(Boolean.getBoolean(H2C_PROPERTY));
+        main.setAcceptors(Integer.getInteger(ACCEPTORS_PROPERTY, main.getAcceptors()));
+        main.setSelectors(Integer.getInteger(SELECTORS_PROPERTY, main.getSelectors()));
+        main.setIdleTimeout(Long.getLong(IDLE_TIMEOUT_PROPERTY, main.getIdleTimeout()));
+        main.setOutputBufferSize(Integer.getInteger(OUTPUT_BUFFER_SIZE_PROPERTY, main.getOutputBufferSize()));
+        main.setMaxConcurrentStreams(Integer.getInteger(MAX_CONCURRENT_STREAMS_PROPERTY, main.getMaxConcurrentStreams()));
+        main.setDrainTimeout(Long.getLong(DRAIN_TIMEOUT_PROPERTY, main.getDrainTimeout()));
+        main.setReusePort(Boolean.getBoolean(REUSE_PORT_PROPERTY));
+        main.setInheritChannel(Boolean.getBoolean(INHERIT_CHANNEL_PROPERTY));
+        String cacheDir = System.getProperty(CACHE_DIR_PROPERTY);
+        if (cacheDir != null)
+            main.setJspCacheDir(Path.of(cacheDir));
+        return main;
+    }
+
     private int port;
+    private boolean production;
+    private int jspCheckInterval;
+    private boolean precompiled;
+    private boolean tldIndex = true;
+    private boolean jspStreaming;
+    private int jspBufferPool;
+    private boolean jspWarmUp;
+    private int jspWarmUpThreads = Runtime.getRuntime().availableProcessors();
+    private JspWarmUp warmUp;
+    private boolean jspCompiledEl;
+    private boolean jspTagPooling = true;
+    private Map<String, Integer> jspTagPoolSizes = Map.of();
+    private boolean jspTagPlugins;
+    private Path jspCacheDir;
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+    private boolean staticCache;
+    private boolean metrics;
+    private boolean pageETags;
+    private Map<String, Integer> pageCacheTtls = Map.of();
+    private SessionStore sessionStore = SessionStore.HEAP;
+    private int maxResidentSessions = 10_000;
+    private boolean h2c;
+    private int acceptors = -1;
+    private int selectors = -1;
+    private long idleTimeout = 30_000;
+    private int outputBufferSize = 32 * 1024;
+    private int maxConcurrentStreams = 128;
+    private long drainTimeout;
+    private boolean reusePort;
+    private boolean inheritChannel;
+    private int requestsCutOff;
+    private final Map<String, Path> contextWebRoots = new LinkedHashMap<>();
+    private boolean sharedJspRuntime = true;
+    private SharedJspRuntime jspRuntime;
     private Server server;
+    private StatisticsHandler statistics;
 
     public Main(int port)
+    {
+        this(port, false);
+    }
+
+    /**
+     * @param port the port to listen on
+     * @param production true to run the JSP engine in production mode: JSPs are not checked for
+     * modification on each request, generated sources are not kept, and Jasper only logs warnings.
+     */
+    public Main(int port, boolean production)
     {
         this.port = port;
+        this.production = production;
+    }
+
+    public boolean isProduction()
+    {
+        return production;
+    }
+
+    /**
+     * In production mode, the seconds between checks by a background thread for modified JSPs to recompile.
+     *
+     * @param jspCheckInterval the interval in seconds, or 0 (the default) to never recompile
+     */
+    public void setJspCheckInterval(int jspCheckInterval)
+    {
+        this.jspCheckInterval = jspCheckInterval;
+    }
+
+    public int getJspCheckInterval()
+    {
+        return jspCheckInterval;
+    }
+
+    /**
+     * Serve the JSPs that were precompiled at build time by the jetty-jspc-maven-plugin.
+     * <p>
+     * Each generated class is registered directly as a servlet against its JSP path,
+     * so no JSP is translated or compiled by Jasper on the request path.
+     * JSPs without a precompiled class still fall back to the "jsp" servlet.
+     * </p>
+     *
+     * @param precompiled true to register the precompiled JSP classes
+     */
+    public void setPrecompiled(boolean precompiled)
+    {
+        this.precompiled = precompiled;
+    }
+
+    public boolean isPrecompiled()
+    {
+        return precompiled;
+    }
+
+    /**
+     * Stream the output of JSPs: each page is written into a smaller response buffer,
+     * so its first bytes (usually its head) are sent as soon as they are written.
+     * <p>
+     * A streamed page is committed early, so it cannot forward or send an error page once it has
+     * written more than the stream buffer size.
+     * </p>
+     *
+     * @param jspStreaming true to stream JSP output
+     * @see EmbeddedJspFactory
+     */
+    public void setJspStreaming(boolean jspStreaming)
+    {
+        this.jspStreaming = jspStreaming;
+    }
+
+    public boolean isJspStreaming()
+    {
+        return jspStreaming;
+    }
+
+    /**
+     * Pool the page contexts of JSPs, with their {@code JspWriter} and {@code BodyContent} buffers,
+     * across all the threads serving requests.
+     * <p>
+     * Jasper already reuses them within a thread, so this matters when requests do not run on a
+     * small set of long lived threads, eg: with a virtual thread per request.
+     * </p>
+     *
+     * @param jspBufferPool the maximum page contexts pooled, or 0 (the default) for Jasper's per thread pool
+     * @see PageContextPool
+     */
+    public void setJspBufferPool(int jspBufferPool)
+    {
+        this.jspBufferPool = jspBufferPool;
+    }
+
+    public int getJspBufferPool()
+    {
+        return jspBufferPool;
+    }
+
+    /**
+     * Compile, load and initialize every JSP of every context as the server starts, before the connector
+     * is opened, so that no request waits for a JSP to be compiled.
+     * <p>
+     * The JSPs served by their own servlet (see {@link #setPrecompiled(boolean)}) are initialized by their
+     * holders instead.
+     * </p>
+     *
+     * @param jspWarmUp true to warm up the JSPs, false (the default) to compile each on its first request
+     * @see JspWarmUp
+     */
+    public void setJspWarmUp(boolean jspWarmUp)
+    {
+        this.jspWarmUp = jspWarmUp;
+    }
+
+    public boolean isJspWarmUp()
+    {
+        return jspWarmUp;
+    }
+
+    /**
+     * @param jspWarmUpThreads the maximum JSPs compiled at once by the warm-up, by default the available processors
+     * @see #setJspWarmUp(boolean)
+     */
+    public void setJspWarmUpThreads(int jspWarmUpThreads)
+    {
+        this.jspWarmUpThreads = jspWarmUpThreads;
+    }
+
+    public int getJspWarmUpThreads()
+    {
+        return jspWarmUpThreads;
+    }
+
+    /**
+     * Compile the EL expressions of the JSPs that only read a request parameter, a header or a scoped
+     * attribute (optionally with one arithmetic operation), so they are evaluated without the
+     * ELResolver chain.
+     *
+     * @param jspCompiledEl true to compile the simplest expressions, false (the default) to evaluate all with Jasper
+     * @see CompiledExpressionFactory
+     */
+    public void setJspCompiledEl(boolean jspCompiledEl)
+    {
+        this.jspCompiledEl = jspCompiledEl;
+    }
+
+    public boolean isJspCompiledEl()
+    {
+        return jspCompiledEl;
+    }
+
+    /**
+     * @param jspTagPooling true (the default) to reuse the handlers of classic tags, false to create one for
+     * each use of a tag (only applies to JSPs compiled by the server, not those precompiled at build time)
+     */
+    public void setJspTagPooling(boolean jspTagPooling)
+    {
+        this.jspTagPooling = jspTagPooling;
+    }
+
+    public boolean isJspTagPooling()
+    {
+        return jspTagPooling;
+    }
+
+    /**
+     * Pool the handlers of classic tags in {@link TagPool}s, rather than in Jasper's own pools.
+     *
+     * @param jspTagPoolSizes the maximum handlers pooled for each use of a tag, by handler class name or
+     * {@link TagPools#DEFAULT} for all other classes, or empty (the default) for Jasper's pools of 5
+     * @see TagPools
+     */
+    public void setJspTagPoolSizes(Map<String, Integer> jspTagPoolSizes)
+    {
+        this.jspTagPoolSizes = jspTagPoolSizes;
+    }
+
+    public Map<String, Integer> getJspTagPoolSizes()
+    {
+        return jspTagPoolSizes;
+    }
+
+    /**
+     * @param jspTagPlugins true to generate inline Java for {@code c:forEach} over a range, {@code c:out} and
+     * {@code acme:date2}, false (the default) to run their tag handlers (only applies to JSPs compiled by the
+     * server, not those precompiled at build time)
+     * @see TagPlugins
+     */
+    public void setJspTagPlugins(boolean jspTagPlugins)
+    {
+        this.jspTagPlugins = jspTagPlugins;
+    }
+
+    public boolean isJspTagPlugins()
+    {
+        return jspTagPlugins;
+    }
+
+    /**
+     * @return the warm-up of the JSPs since the server started, or null if not enabled
+     */
+    public JspWarmUp getWarmUp()
+    {
+        return warmUp;
+    }
+
+    /**
+     * Use the index of TLDs generated at build time (the default), instead of scanning every jar for TLDs at startup.
+     *
+     * @param tldIndex true to use the TLD index, if there is one
+     * @see TldIndex
+     */
+    public void setTldIndex(boolean tldIndex)
+    {
+        this.tldIndex = tldIndex;
+    }
+
+    public boolean isTldIndex()
+    {
+        return tldIndex;
+    }
+
+    /**
+     * Cache the compiled JSPs in a persistent directory, keyed by a hash of their sources.
+     * <p>
+     * The cache is validated once at startup, compiling all JSPs only when it is missing or stale,
+     * and the cached classes are then served directly. Not used if {@link #setPrecompiled(boolean)}.
+     * </p>
+     *
+     * @param jspCacheDir the cache directory, which may be shared between processes, or null for no cache
+     * @see JspCache
+     */
+    public void setJspCacheDir(Path jspCacheDir)
+    {
+        this.jspCacheDir = jspCacheDir;
+    }
+
+    public Path getJspCacheDir()
+    {
+        return jspCacheDir;
+    }
+
+    /**
+     * Run the server on platform threads (the default), virtual threads, or a hybrid of the two.
+     *
+     * @param threadMode the threads to run on
+     * @see ThreadMode
+     */
+    public void setThreadMode(ThreadMode threadMode)
+    {
+        this.threadMode = threadMode;
+    }
+
+    public ThreadMode getThreadMode()
+    {
+        return threadMode;
+    }
+
+    /**
+     * Serve the resources in webroot/static from memory, loaded once at startup.
+     * <p>
+     * Responses have a strong ETag and a Cache-Control header, and the gzip (or brotli)
+     * variants precompressed at build time are sent to clients that accept them. So are those of
+     * the other static content of each context, served by its "default" servlet, which does not
+     * list directories in production mode.
+     * </p>
+     *
+     * @param staticCache true to cache the static resources
+     * @see StaticContentServlet
+     */
+    public void setStaticCache(boolean staticCache)
+    {
+        this.staticCache = staticCache;
+    }
+
+    public boolean isStaticCache()
+    {
+        return staticCache;
+    }
+
+    /**
+     * Record the requests, latency and bytes written for each servlet path, and JSP compiles,
+     * exposed in the Prometheus text format at {@code /metrics}.
+     *
+     * @param metrics true to record metrics
+     * @see RequestMetrics
+     */
+    public void setMetrics(boolean metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    public boolean isMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Buffer the output of JSPs to send it with a strong ETag, answering conditional requests
+     * with a 304 Not Modified. Implied by {@link #setPageCacheTtls(Map)}.
+     *
+     * @param pageETags true to send ETags
+     * @see PageCacheFilter
+     */
+    public void setPageETags(boolean pageETags)
+    {
+        this.pageETags = pageETags;
+    }
+
+    public boolean isPageETags()
+    {
+        return pageETags;
+    }
+
+    /**
+     * Cache whole responses of JSPs in memory, so that a hit is a copy of the stored bytes (or a 304).
+     * <p>
+     * Only the JSPs given a TTL are cached, and only the responses that are the same for
+     * everyone: not those with a query string or that set a cookie (such as a new session).
+     * </p>
+     *
+     * @param pageCacheTtls the JSP paths (eg: {@code /test/jstl.jsp}) to cache, and their TTL in seconds
+     * @see PageCacheFilter
+     */
+    public void setPageCacheTtls(Map<String, Integer> pageCacheTtls)
+    {
+        this.pageCacheTtls = pageCacheTtls;
+    }
+
+    public Map<String, Integer> getPageCacheTtls()
+    {
+        return pageCacheTtls;
+    }
+
+    /**
+     * Keep every session on the heap (the default), or only the recently used ones,
+     * passivating the others to direct memory or a memory mapped file.
+     *
+     * @param sessionStore where to keep the sessions
+     * @see SessionStore
+     */
+    public void setSessionStore(SessionStore sessionStore)
+    {
+        this.sessionStore = sessionStore;
+    }
+
+    public SessionStore getSessionStore()
+    {
+        return sessionStore;
+    }
+
+    /**
+     * @param maxResidentSessions the maximum sessions kept on the heap, when not using the {@link SessionStore#HEAP} store
+     */
+    public void setMaxResidentSessions(int maxResidentSessions)
+    {
+        this.maxResidentSessions = maxResidentSessions;
+    }
+
+    public int getMaxResidentSessions()
+    {
+        return maxResidentSessions;
+    }
+
+    /**
+     * Also accept HTTP/2 cleartext (h2c) connections on the connector, from clients that know
+     * the server supports it (prior knowledge), or that upgrade an HTTP/1.1 request.
+     * <p>
+     * All the requests of a page, and of its assets, can then be multiplexed on one connection.
+     * </p>
+     *
+     * @param h2c true to accept h2c as well as HTTP/1.1
+     */
+    public void setH2c(boolean h2c)
+    {
+        this.h2c = h2c;
+    }
+
+    public boolean isH2c()
+    {
+        return h2c;
+    }
+
+    /**
+     * @param acceptors the threads accepting connections, or -1 (the default) for Jetty to pick from the available processors
+     */
+    public void setAcceptors(int acceptors)
+    {
+        this.acceptors = acceptors;
+    }
+
+    public int getAcceptors()
+    {
+        return acceptors;
+    }
+
+    /**
+     * @param selectors the selectors for the connections, or -1 (the default) for Jetty to pick from the available processors
+     */
+    public void setSelectors(int selectors)
+    {
+        this.selectors = selectors;
+    }
+
+    public int getSelectors()
+    {
+        return selectors;
+    }
+
+    /**
+     * @param idleTimeout the milliseconds a connection can be idle before it is closed (default 30000)
+     */
+    public void setIdleTimeout(long idleTimeout)
+    {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public long getIdleTimeout()
+    {
+        return idleTimeout;
+    }
+
+    /**
+     * @param outputBufferSize the size in bytes of the response buffer, before content is committed (default 32KB)
+     */
+    public void setOutputBufferSize(int outputBufferSize)
+    {
+        this.outputBufferSize = outputBufferSize;
+    }
+
+    public int getOutputBufferSize()
+    {
+        return outputBufferSize;
+    }
+
+    /**
+     * @param maxConcurrentStreams the requests an h2c connection can have in flight at once (default 128)
+     */
+    public void setMaxConcurrentStreams(int maxConcurrentStreams)
+    {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    public int getMaxConcurrentStreams()
+    {
+        return maxConcurrentStreams;
+    }
+
+    /**
+     * Drain the requests in flight when stopping: stop accepting connections, close each connection
+     * after its next response (or once idle for a second), and only then stop the server.
+     *
+     * @param drainTimeout the milliseconds to wait for the connections to close, after which the requests
+     * still in flight are cut off, or 0 (the default) to stop at once
+     * @see #getRequestsCutOff()
+     */
+    public void setDrainTimeout(long drainTimeout)
+    {
+        this.drainTimeout = drainTimeout;
+    }
+
+    public long getDrainTimeout()
+    {
+        return drainTimeout;
+    }
+
+    /**
+     * Listen with SO_REUSEPORT, so that the instance replacing this one can start listening on the same port
+     * (and share the new connections with it) before this one stops, with {@link #setDrainTimeout(long)}.
+     *
+     * @param reusePort true to listen with SO_REUSEPORT, false (the default) to not
+     */
+    public void setReusePort(boolean reusePort)
+    {
+        this.reusePort = reusePort;
+    }
+
+    public boolean isReusePort()
+    {
+        return reusePort;
+    }
+
+    /**
+     * Accept on the listening socket handed over by the process that started this one (eg: by systemd socket
+     * activation), so that the socket stays open, with the connections waiting on it, from one instance to the next.
+     *
+     * @param inheritChannel true to accept on the inherited socket if there is one, false (the default) to open one
+     */
+    public void setInheritChannel(boolean inheritChannel)
+    {
+        this.inheritChannel = inheritChannel;
+    }
+
+    public boolean isInheritChannel()
+    {
+        return inheritChannel;
+    }
+
+    /**
+     * @return the requests still in flight when the last drain timed out, which the stop then cut off
+     */
+    public int getRequestsCutOff()
+    {
+        return requestsCutOff;
+    }
+
+    /**
+     * Host another JSP application, next to the one at {@code /}.
+     * <p>
+     * The context serves the JSPs and static content of its webroot, with its own classloader
+     * (including the {@code WEB-INF/classes} and {@code WEB-INF/lib} jars of the webroot, if any),
+     * sessions and JSP scratch directory, and the same JSP settings as the root context.
+     * The servlets of the demo (eg: {@code /date/}) and the precompiled JSPs are only in the root context.
+     * </p>
+     *
+     * @param contextPath the context path (eg: {@code /app1})
+     * @param webRoot the directory of the JSPs and static content of the context
+     * @see #setSharedJspRuntime(boolean)
+     */
+    public void addContext(String contextPath, Path webRoot)
+    {
+        if (!contextPath.startsWith("/") || contextPath.length() == 1 || contextPath.endsWith("/"))
+            throw new IllegalArgumentException("Invalid context path " + contextPath);
+        contextWebRoots.put(contextPath, webRoot);
+    }
+
+    /**
+     * @return the webroots of the contexts added with {@link #addContext(String, Path)}, keyed by context path
+     */
+    public Map<String, Path> getContextWebRoots()
+    {
+        return Collections.unmodifiableMap(contextWebRoots);
+    }
+
+    /**
+     * Share the parts of the JSP engine that do not depend on a context between all contexts (the default).
+     *
+     * @param sharedJspRuntime true to share the parsed TLDs outside of the webroots, and the tag plugins
+     * @see SharedJspRuntime
+     */
+    public void setSharedJspRuntime(boolean sharedJspRuntime)
+    {
+        this.sharedJspRuntime = sharedJspRuntime;
+    }
+
+    public boolean isSharedJspRuntime()
+    {
+        return sharedJspRuntime;
+    }
+
+    /**
+     * @return the JSP runtime shared by the contexts since the server started, or null if not shared
+     */
+    public SharedJspRuntime getJspRuntime()
+    {
+        return jspRuntime;
+    }
+
+    public Server getServer()
+    {
+        return server;
     }
 
     public void start() throws Exception
     {
-        server = new Server();
+        if (production)
+        {
+            // Jasper loggers created later are at the level configured when logging was initialized,
+            // WARN unless raised (see fromSystemProperties(int)), but those that exist may be lower
+            setLoggerLevel("org.apache.jasper", "WARN");
+        }
 
-        // Define ServerConnector
-        ServerConnector connector = new ServerConnector(server);
-        connector.setPort(port);
-        server.addConnector(connector);
+        server = new Server(threadMode.newThreadPool());
+
+        server.addConnector(newConnector(server));
+        jspRuntime = sharedJspRuntime ? new SharedJspRuntime() : null;
 
         // Base URI for servlet context
         URI baseUri = getWebRootResourceUri();
@@ -93,28 +873,187 @@ public class Main
         ServletContextHandler servletContextHandler = new ServletContextHandler(ServletContextHandler.SESSIONS);
         servletContextHandler.setContextPath("/");
         servletContextHandler.setResourceBase(baseUri.toASCIIString());
+        SessionHandler sessionHandler = servletContextHandler.getSessionHandler();
+        sessionHandler.setSessionCache(sessionStore.newSessionCache(sessionHandler, maxResidentSessions, Path.of(System.getProperty("java.io.tmpdir"))));
 
         // Since this is a ServletContextHandler we must manually configure JSP support.
-        enableEmbeddedJspSupport(servletContextHandler);
+        enableEmbeddedJspSupport(servletContextHandler, "embedded-jetty-jsp", new URL[0]);
+        Map<String, ServletHolder> precompiledJsps = Map.of();
+        if (precompiled)
+            precompiledJsps = enablePrecompiledJsps(servletContextHandler);
+        else if (jspCacheDir != null)
+            precompiledJsps = enableJspCache(servletContextHandler);
+
+        if (metrics)
+            enableMetrics(servletContextHandler);
+        if (pageETags || !pageCacheTtls.isEmpty())
+            enablePageCache(servletContextHandler);
 
         // Add Application Servlets
         servletContextHandler.addServlet(DateServlet.class, "/date/");
+        // The same, suspending the request while the date is prepared
+        ServletHolder holderAsyncDate = new ServletHolder("asyncDate", AsyncDateServlet.class);
+        holderAsyncDate.setAsyncSupported(true);
+        servletContextHandler.addServlet(holderAsyncDate, "/date/async/");
         // Create Example of mapping jsp to path spec
-        ServletHolder holderAltMapping = new ServletHolder();
-        holderAltMapping.setName("foo.jsp");
-        holderAltMapping.setForcedPath("/test/foo/foo.jsp");
+        ServletHolder holderAltMapping = precompiledJsps.get("/test/foo/foo.jsp");
+        if (holderAltMapping == null)
+        {
+            holderAltMapping = new ServletHolder();
+            holderAltMapping.setName("foo.jsp");
+            holderAltMapping.setForcedPath("/test/foo/foo.jsp");
+        }
         servletContextHandler.addServlet(holderAltMapping, "/test/foo/");
 
-        // Default Servlet (always last, always named "default")
-        ServletHolder holderDefault = new ServletHolder("default", DefaultServlet.class);
-        holderDefault.setInitParameter("resourceBase", baseUri.toASCIIString());
-        holderDefault.setInitParameter("dirAllowed", "true");
-        servletContextHandler.addServlet(holderDefault, "/");
-        server.setHandler(servletContextHandler);
+        if (staticCache)
+        {
+            ServletHolder holderStatic = new ServletHolder("static", StaticContentServlet.class);
+            holderStatic.setInitOrder(1);
+            servletContextHandler.addServlet(holderStatic, "/static/*");
+        }
+
+        addDefaultServlet(servletContextHandler, baseUri);
+
+        // The root context, and the others, matched by the longest context path
+        ContextHandlerCollection contexts = new ContextHandlerCollection();
+        contexts.addHandler(servletContextHandler);
+        for (Map.Entry<String, Path> context : contextWebRoots.entrySet())
+        {
+            contexts.addHandler(newContext(context.getKey(), context.getValue()));
+        }
+        statistics = null;
+        if (drainTimeout > 0)
+        {
+            // Counts the requests in flight, for the drain
+            statistics = new StatisticsHandler();
+            statistics.setHandler(contexts);
+            server.setHandler(statistics);
+        }
+        else
+        {
+            server.setHandler(contexts);
+        }
+
+        // Once every context is started, and before the connector is
+        warmUp = null;
+        if (jspWarmUp)
+        {
+            precompiledJsps.values().forEach(holder -> holder.setInitOrder(1));
+            warmUp = new JspWarmUp(server, jspWarmUpThreads);
+            contexts.addEventListener(warmUp);
+        }
 
         // Start Server
         // server.setDumpAfterStart(true);
         server.start();
+
+        if (production)
+        {
+            // Again for the Jasper loggers created while starting, such as the JspServlet's
+            setLoggerLevel("org.apache.jasper", "WARN");
+        }
+    }
+
+    /**
+     * @param contextPath the context path
+     * @param webRoot the webroot of the context
+     * @return a context serving the JSPs and static content of the webroot
+     * @throws IOException if unable to configure the context
+     */
+    private ServletContextHandler newContext(String contextPath, Path webRoot) throws IOException
+    {
+        URI baseUri = webRoot.toUri();
+        ServletContextHandler servletContextHandler = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        servletContextHandler.setContextPath(contextPath);
+        servletContextHandler.setResourceBase(baseUri.toASCIIString());
+        SessionHandler sessionHandler = servletContextHandler.getSessionHandler();
+        sessionHandler.setSessionCache(sessionStore.newSessionCache(sessionHandler, maxResidentSessions, Path.of(System.getProperty("java.io.tmpdir"))));
+
+        // Classes of the context are only visible to its own JSPs
+        List<URL> classPath = new ArrayList<>();
+        Path classes = webRoot.resolve("WEB-INF/classes");
+        if (Files.isDirectory(classes))
+            classPath.add(classes.toUri().toURL());
+        Path lib = webRoot.resolve("WEB-INF/lib");
+        if (Files.isDirectory(lib))
+        {
+            try (Stream<Path> jars = Files.list(lib))
+            {
+                for (Path jar : (Iterable<Path>)jars.filter(p -> p.toString().endsWith(".jar")).sorted()::iterator)
+                {
+                    classPath.add(jar.toUri().toURL());
+                }
+            }
+        }
+        enableEmbeddedJspSupport(servletContextHandler, "embedded-jetty-jsp" + contextPath.replace('/', '-'), classPath.toArray(new URL[0]));
+        addDefaultServlet(servletContextHandler, baseUri);
+        return servletContextHandler;
+    }
+
+    /**
+     * Serve the static content of the webroot, with the "default" servlet (always last, always named "default").
+     *
+     * @param servletContextHandler the ServletContextHandler to configure
+     * @param baseUri the webroot
+     */
+    private void addDefaultServlet(ServletContextHandler servletContextHandler, URI baseUri)
+    {
+        ServletHolder holderDefault = new ServletHolder("default", DefaultServlet.class);
+        holderDefault.setInitParameter("resourceBase", baseUri.toASCIIString());
+        if (staticCache)
+        {
+            // The precompressed variants of the resources outside webroot/static, and no listings in production
+            holderDefault.setInitParameter("dirAllowed", Boolean.toString(!production));
+            holderDefault.setInitParameter("precompressed", "br=.br,gzip=.gz");
+        }
+        else
+        {
+            holderDefault.setInitParameter("dirAllowed", "true");
+        }
+        servletContextHandler.addServlet(holderDefault, "/");
+    }
+
+    /**
+     * @param server the server to add the connector to
+     * @return a connector for HTTP/1.1, and h2c if enabled, tuned with the connector settings
+     */
+    private ServerConnector newConnector(Server server)
+    {
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.setOutputBufferSize(outputBufferSize);
+        HttpConnectionFactory http11 = new HttpConnectionFactory(httpConfig);
+
+        ServerConnector connector;
+        if (h2c)
+        {
+            HTTP2CServerConnectionFactory http2c = new HTTP2CServerConnectionFactory(httpConfig);
+            http2c.setMaxConcurrentStreams(maxConcurrentStreams);
+            connector = new ServerConnector(server, acceptors, selectors, http11, http2c);
+        }
+        else
+        {
+            connector = new ServerConnector(server, acceptors, selectors, http11);
+        }
+        connector.setPort(port);
+        connector.setIdleTimeout(idleTimeout);
+        connector.setReusePort(reusePort);
+        connector.setInheritChannel(inheritChannel);
+        return connector;
+    }
+
+    /**
+     * Filter the requests for JSPs through a {@link PageCacheFilter}, named "pageCache".
+     *
+     * @param servletContextHandler the ServletContextHandler to configure
+     */
+    private void enablePageCache(ServletContextHandler servletContextHandler)
+    {
+        StringBuilder ttls = new StringBuilder();
+        pageCacheTtls.forEach((path, ttl) -> ttls.append(ttls.length() == 0 ? "" : ",").append(path).append('=').append(ttl));
+        FilterHolder holderPageCache = new FilterHolder(PageCacheFilter.class);
+        holderPageCache.setName("pageCache");
+        holderPageCache.setInitParameter("ttl", ttls.toString());
+        servletContextHandler.addFilter(holderPageCache, "*.jsp", EnumSet.of(DispatcherType.REQUEST));
     }
 
     /**
@@ -124,13 +1063,25 @@ public class Main
      * </p>
      *
      * @param servletContextHandler the ServletContextHandler to configure
+     * @param scratchDirName the name of the directory the JSPs of the context are compiled to, in the temp directory
+     * @param classPath the classes and jars of the context, if any
      * @throws IOException if unable to configure
      */
-    private void enableEmbeddedJspSupport(ServletContextHandler servletContextHandler) throws IOException
+    private void enableEmbeddedJspSupport(ServletContextHandler servletContextHandler, String scratchDirName, URL[] classPath) throws IOException
     {
         // Establish Scratch directory for the servlet context (used by JSP compilation)
+        if (!jspTagPooling)
+        {
+            // Pooling is decided as the JSPs are compiled, so the classes compiled without it are kept apart
+            scratchDirName += "-unpooled";
+        }
+        if (jspTagPlugins)
+        {
+            // As are the classes with the tag plugins inlined
+            scratchDirName += "-plugins";
+        }
         File tempDir = new File(System.getProperty("java.io.tmpdir"));
-        File scratchDir = new File(tempDir.toString(), "embedded-jetty-jsp");
+        File scratchDir = new File(tempDir.toString(), scratchDirName);
 
         if (!scratchDir.exists())
         {
@@ -145,27 +1096,119 @@ public class Main
         // JSP requires a non-System classloader, this simply wraps the
         // embedded System classloader in a way that makes it suitable
         // for JSP to use
-        ClassLoader jspClassLoader = new URLClassLoader(new URL[0], this.getClass().getClassLoader());
+        ClassLoader jspClassLoader = new URLClassLoader(classPath, this.getClass().getClassLoader());
         servletContextHandler.setClassLoader(jspClassLoader);
 
         // Manually call JettyJasperInitializer on context startup
-        servletContextHandler.addBean(new EmbeddedJspStarter(servletContextHandler));
+        EmbeddedJspStarter jspStarter = new EmbeddedJspStarter(servletContextHandler);
+        jspStarter.setUseTldIndex(tldIndex);
+        jspStarter.setJspRuntime(jspRuntime);
+        jspStarter.setTagPlugins(jspTagPlugins);
+        servletContextHandler.addBean(jspStarter);
 
         // Create / Register JSP Servlet (must be named "jsp" per spec)
         ServletHolder holderJsp = new ServletHolder("jsp", JettyJspServlet.class);
         holderJsp.setInitOrder(0);
         holderJsp.setInitParameter("scratchdir", scratchDir.toString());
-        holderJsp.setInitParameter("logVerbosityLevel", "DEBUG");
         holderJsp.setInitParameter("fork", "false");
         holderJsp.setInitParameter("xpoweredBy", "false");
         holderJsp.setInitParameter("compilerTargetVM", "1.8");
         holderJsp.setInitParameter("compilerSourceVM", "1.8");
-        holderJsp.setInitParameter("keepgenerated", "true");
+        if (jspRuntime != null)
+            holderJsp.setInitParameter("engineOptionsClass", SharedJspOptions.class.getName());
+        if (production)
+        {
+            // Compile each JSP once, with no modification checks on the request path
+            holderJsp.setInitParameter("development", "false");
+            holderJsp.setInitParameter("checkInterval", Integer.toString(jspCheckInterval));
+            holderJsp.setInitParameter("keepgenerated", "false");
+        }
+        else
+        {
+            holderJsp.setInitParameter("logVerbosityLevel", "DEBUG");
+            holderJsp.setInitParameter("keepgenerated", "true");
+        }
+        if (!jspTagPooling)
+        {
+            holderJsp.setInitParameter("enablePooling", "false");
+        }
+        else if (!jspTagPoolSizes.isEmpty())
+        {
+            // A context init parameter, so that it also applies to the JSPs precompiled at build time
+            servletContextHandler.setInitParameter(TagHandlerPool.OPTION_TAGPOOL, TagPool.class.getName());
+            servletContextHandler.setAttribute(TagPools.ATTRIBUTE, new TagPools(jspTagPoolSizes));
+        }
         servletContextHandler.addServlet(holderJsp, "*.jsp");
+        if (jspStreaming)
+            EmbeddedJspFactory.installStreaming(servletContextHandler.getServletContext(), EmbeddedJspFactory.DEFAULT_STREAM_BUFFER_SIZE);
+        if (jspBufferPool > 0)
+            EmbeddedJspFactory.installPool(servletContextHandler.getServletContext(), new PageContextPool(jspBufferPool));
+        if (jspCompiledEl)
+            CompiledExpressionFactory.install(servletContextHandler.getServletContext(), CompiledExpressionFactory.DEFAULT_MAX_SIZE);
 
         servletContextHandler.setAttribute(InstanceManager.class.getName(), new SimpleInstanceManager());
     }
 
+    /**
+     * Register the JSP classes precompiled at build time directly as servlets.
+     *
+     * @param servletContextHandler the ServletContextHandler to configure
+     * @return the registered holders, keyed by JSP path
+     * @throws IOException if the build did not precompile any JSPs
+     */
+    private Map<String, ServletHolder> enablePrecompiledJsps(ServletContextHandler servletContextHandler) throws IOException
+    {
+        PrecompiledJsps precompiledJsps = PrecompiledJsps.load(this.getClass().getClassLoader());
+        if (precompiledJsps == null)
+        {
+            throw new FileNotFoundException("Unable to find resource " + PrecompiledJsps.WEB_FRAGMENT + " (were the JSPs precompiled?)");
+        }
+        return precompiledJsps.register(servletContextHandler);
+    }
+
+    /**
+     * Serve the JSPs from a persistent cache of compiled classes, compiling them at startup if needed.
+     *
+     * @param servletContextHandler the ServletContextHandler to configure
+     * @return the registered holders, keyed by JSP path
+     * @throws IOException if unable to hash the JSP sources
+     */
+    private Map<String, ServletHolder> enableJspCache(ServletContextHandler servletContextHandler) throws IOException
+    {
+        JspCache jspCache = new JspCache(servletContextHandler, jspCacheDir);
+        servletContextHandler.setClassLoader(jspCache.newClassLoader(servletContextHandler.getClassLoader()));
+        // Must be added after the EmbeddedJspStarter, as it compiles with the initialized JSP engine
+        servletContextHandler.addBean(jspCache);
+        return new PrecompiledJsps(jspCache.getClassNamesByPath()).register(servletContextHandler);
+    }
+
+    /**
+     * Record request metrics, and expose them at /metrics.
+     *
+     * @param servletContextHandler the ServletContextHandler to configure
+     */
+    private void enableMetrics(ServletContextHandler servletContextHandler)
+    {
+        RequestMetrics requestMetrics = new RequestMetrics();
+        servletContextHandler.setAttribute(RequestMetrics.ATTRIBUTE, requestMetrics);
+        servletContextHandler.addEventListener(requestMetrics);
+
+        // Jasper instantiates each JSP servlet it (re)compiles through the InstanceManager
+        InstanceManager instanceManager = (InstanceManager)servletContextHandler.getAttribute(InstanceManager.class.getName());
+        servletContextHandler.setAttribute(InstanceManager.class.getName(), new MetricsInstanceManager(instanceManager, requestMetrics));
+
+        servletContextHandler.addServlet(MetricsServlet.class, "/metrics");
+    }
+
+    private static void setLoggerLevel(String name, String level)
+    {
+        ILoggerFactory loggerFactory = LoggerFactory.getILoggerFactory();
+        if (loggerFactory instanceof JettyLoggerFactory)
+        {
+            ((JettyLoggerFactory)loggerFactory).setLoggerLevel(name, level);
+        }
+    }
+
     private URI getWebRootResourceUri() throws FileNotFoundException, URISyntaxException
     {
         URL indexUri = this.getClass().getResource(WEBROOT_INDEX);
@@ -179,18 +1222,64 @@ public class Main
 
     public void stop() throws Exception
     {
+        if (statistics != null && server.isStarted())
+            drain();
         server.stop();
     }
 
+    /**
+     * Shut the connectors down, and wait for them to close all of their connections.
+     * <p>
+     * The server's own graceful stop ({@link Server#setStopTimeout(long)}) would also shut the
+     * {@link StatisticsHandler} down, which answers the requests that arrive on the connections
+     * still open with a 503, rather than serving them and closing the connection.
+     * </p>
+     *
+     * @throws Exception if interrupted while waiting
+     */
+    private void drain() throws Exception
+    {
+        long start = NanoTime.now();
+        List<CompletableFuture<Void>> shutdowns = new ArrayList<>();
+        for (Connector connector : server.getConnectors())
+        {
+            shutdowns.add(connector.shutdown());
+        }
+        try
+        {
+            CompletableFuture.allOf(shutdowns.toArray(new CompletableFuture<?>[0])).get(drainTimeout, TimeUnit.MILLISECONDS);
+            requestsCutOff = 0;
+        }
+        catch (TimeoutException e)
+        {
+            requestsCutOff = statistics.getRequestsActive();
+        }
+        // Not a static logger, so loading Main does not initialize logging before main(String[]) configures it
+        Logger log = LoggerFactory.getLogger(Main.class);
+        log.info("Drained in {}ms, cutting off {} requests in flight", NanoTime.millisSince(start), requestsCutOff);
+    }
+
     /**
      * Cause server to keep running until it receives a Interrupt.
      * <p>
-     * Interrupt Signal, or SIGINT (Unix Signal), is typically seen as a result of a kill -TERM {pid} or Ctrl+C
+     * Interrupt Signal, or SIGINT (Unix Signal), is typically seen as a result of a kill -TERM {pid} or Ctrl+C.
+     * The server is then stopped by a shutdown hook, draining the requests in flight if {@link #setDrainTimeout(long)}.
      *
      * @throws InterruptedException if interrupted
      */
     public void waitForInterrupt() throws InterruptedException
     {
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+        {
+            try
+            {
+                stop();
+            }
+            catch (Exception e)
+            {
+                LoggerFactory.getLogger(Main.class).warn("Unable to stop", e);
+            }
+        }, "drain"));
         server.join();
     }
 }
@@ -0,0 +1,81 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.lang.reflect.InvocationTargetException;
+import javax.naming.NamingException;
+import javax.servlet.Servlet;
+
+import org.apache.tomcat.InstanceManager;
+
+/**
+ * An {@link InstanceManager} that records every JSP servlet Jasper instantiates.
+ * <p>
+ * Jasper creates a new instance of a JSP servlet each time it loads the class,
+ * which is after each time it (re)compiles the JSP, so these are the compile events.
+ * </p>
+ */
+public class MetricsInstanceManager implements InstanceManager
+{
+    private final InstanceManager delegate;
+    private final RequestMetrics metrics;
+
+    public MetricsInstanceManager(InstanceManager delegate, RequestMetrics metrics)
+    {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object newInstance(Class<?> clazz) throws IllegalAccessException, InvocationTargetException, NamingException, InstantiationException, IllegalArgumentException, NoSuchMethodException, SecurityException
+    {
+        return recorded(clazz.getName(), delegate.newInstance(clazz));
+    }
+
+    @Override
+    public Object newInstance(String className) throws IllegalAccessException, InvocationTargetException, NamingException, InstantiationException, ClassNotFoundException, IllegalArgumentException, NoSuchMethodException, SecurityException
+    {
+        return recorded(className, delegate.newInstance(className));
+    }
+
+    @Override
+    public Object newInstance(String fqcn, ClassLoader classLoader) throws IllegalAccessException, InvocationTargetException, NamingException, InstantiationException, ClassNotFoundException, IllegalArgumentException, NoSuchMethodException, SecurityException
+    {
+        return recorded(fqcn, delegate.newInstance(fqcn, classLoader));
+    }
+
+    @Override
+    public void newInstance(Object o) throws IllegalAccessException, InvocationTargetException, NamingException
+    {
+        // Tag handlers, which are not loads of a JSP
+        delegate.newInstance(o);
+    }
+
+    @Override
+    public void destroyInstance(Object o) throws IllegalAccessException, InvocationTargetException
+    {
+        delegate.destroyInstance(o);
+    }
+
+    private Object recorded(String className, Object instance)
+    {
+        if (instance instanceof Servlet)
+            metrics.recordJspLoad(className);
+        return instance;
+    }
+}
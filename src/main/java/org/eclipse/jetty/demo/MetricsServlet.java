@@ -0,0 +1,121 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.jasper.servlet.JspServlet;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+/**
+ * Exposes the {@link RequestMetrics} of the context, and the state of the JSP engine,
+ * in the Prometheus text exposition format.
+ */
+@SuppressWarnings("serial")
+public class MetricsServlet extends HttpServlet
+{
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
+    {
+        resp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        Writer out = resp.getWriter();
+
+        RequestMetrics metrics = (RequestMetrics)getServletContext().getAttribute(RequestMetrics.ATTRIBUTE);
+        if (metrics != null)
+            metrics.writeTo(out);
+
+        JspServlet jspServlet = getJspServlet();
+        if (jspServlet != null)
+        {
+            out.write("# HELP jsp_loaded JSPs currently loaded by Jasper.\n");
+            out.write("# TYPE jsp_loaded gauge\n");
+            out.write("jsp_loaded " + jspServlet.getJspCount() + "\n");
+            out.write("# HELP jsp_reloads_total JSPs reloaded by Jasper after being modified.\n");
+            out.write("# TYPE jsp_reloads_total counter\n");
+            out.write("jsp_reloads_total " + jspServlet.getJspReloadCount() + "\n");
+        }
+
+        PageContextPool pool = (PageContextPool)getServletContext().getAttribute(PageContextPool.ATTRIBUTE);
+        if (pool != null)
+        {
+            out.write("# HELP jsp_buffer_pool_hits_total JSP page contexts leased from the pool.\n");
+            out.write("# TYPE jsp_buffer_pool_hits_total counter\n");
+            out.write("jsp_buffer_pool_hits_total " + pool.getHits() + "\n");
+            out.write("# HELP jsp_buffer_pool_misses_total JSP page contexts allocated as the pool was empty.\n");
+            out.write("# TYPE jsp_buffer_pool_misses_total counter\n");
+            out.write("jsp_buffer_pool_misses_total " + pool.getMisses() + "\n");
+            out.write("# HELP jsp_buffer_pool_discards_total JSP page contexts dropped as the pool was full.\n");
+            out.write("# TYPE jsp_buffer_pool_discards_total counter\n");
+            out.write("jsp_buffer_pool_discards_total " + pool.getDiscards() + "\n");
+        }
+
+        TagPools tagPools = (TagPools)getServletContext().getAttribute(TagPools.ATTRIBUTE);
+        if (tagPools != null)
+        {
+            Map<String, TagPools.Stats> stats = tagPools.getStats();
+            out.write("# HELP jsp_tag_pool_hits_total Tag handlers checked out from a pool, by tag class.\n");
+            out.write("# TYPE jsp_tag_pool_hits_total counter\n");
+            for (Map.Entry<String, TagPools.Stats> entry : stats.entrySet())
+            {
+                RequestMetrics.writeSample(out, "jsp_tag_pool_hits_total", "class", entry.getKey(), null, Long.toString(entry.getValue().getHits()));
+            }
+            out.write("# HELP jsp_tag_pool_misses_total Tag handlers created as their pool was empty, by tag class.\n");
+            out.write("# TYPE jsp_tag_pool_misses_total counter\n");
+            for (Map.Entry<String, TagPools.Stats> entry : stats.entrySet())
+            {
+                RequestMetrics.writeSample(out, "jsp_tag_pool_misses_total", "class", entry.getKey(), null, Long.toString(entry.getValue().getMisses()));
+            }
+            out.write("# HELP jsp_tag_pool_discards_total Tag handlers released as their pool was full, by tag class.\n");
+            out.write("# TYPE jsp_tag_pool_discards_total counter\n");
+            for (Map.Entry<String, TagPools.Stats> entry : stats.entrySet())
+            {
+                RequestMetrics.writeSample(out, "jsp_tag_pool_discards_total", "class", entry.getKey(), null, Long.toString(entry.getValue().getDiscards()));
+            }
+            out.write("# HELP jsp_tag_pool_size Tag handlers currently pooled, by tag class.\n");
+            out.write("# TYPE jsp_tag_pool_size gauge\n");
+            for (Map.Entry<String, TagPools.Stats> entry : stats.entrySet())
+            {
+                RequestMetrics.writeSample(out, "jsp_tag_pool_size", "class", entry.getKey(), null, Long.toString(entry.getValue().getSize()));
+            }
+        }
+    }
+
+    private JspServlet getJspServlet()
+    {
+        ServletHolder holder = ServletContextHandler.getServletContextHandler(getServletContext()).getServletHandler().getServlet("jsp");
+        if (holder == null)
+            return null;
+        try
+        {
+            Servlet servlet = holder.getServletInstance();
+            return servlet instanceof JspServlet ? (JspServlet)servlet : null;
+        }
+        catch (IllegalStateException e)
+        {
+            return null;
+        }
+    }
+}
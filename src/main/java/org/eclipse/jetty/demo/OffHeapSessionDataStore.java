@@ -0,0 +1,431 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToLongFunction;
+
+import org.eclipse.jetty.server.session.AbstractSessionDataStore;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+
+/**
+ * A {@link org.eclipse.jetty.server.session.SessionDataStore} that keeps serialized sessions
+ * outside of the Java heap, in direct memory or in a memory mapped file.
+ * <p>
+ * Sessions are serialized into slots of a slab allocator: one size class per power of two from
+ * 64 bytes to 1MB, each carving its slots out of 1MB chunks, and reusing freed slots.
+ * The only heap used per session is an entry in the index of session ids to slot addresses,
+ * so the number of stored sessions hardly affects the live heap (and so GC pause times).
+ * </p>
+ * <p>
+ * It is meant to sit behind a {@link LruSessionCache}, which keeps the recently used sessions
+ * on the heap. Nothing survives a restart: a mapped file is only backing memory, which the OS
+ * may page out, and is deleted when the store stops.
+ * </p>
+ */
+public class OffHeapSessionDataStore extends AbstractSessionDataStore
+{
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int MIN_SLOT_SHIFT = 6;
+    private static final int MAX_SLOT_SHIFT = 20;
+    // Each slot starts with the length and expiry of the session it holds
+    private static final int HEADER_SIZE = 12;
+
+    private final Path file;
+    private final Map<String, Long> index = new ConcurrentHashMap<>();
+    private final SizeClass[] sizeClasses = new SizeClass[MAX_SLOT_SHIFT - MIN_SLOT_SHIFT + 1];
+    private final AtomicReference<FileChannel> channel = new AtomicReference<>();
+    private int chunks;
+
+    /**
+     * A store in direct memory.
+     */
+    public OffHeapSessionDataStore()
+    {
+        this(null);
+    }
+
+    /**
+     * @param file the file to map the store from, or null to use direct memory
+     */
+    public OffHeapSessionDataStore(Path file)
+    {
+        this.file = file;
+        for (int i = 0; i < sizeClasses.length; i++)
+        {
+            sizeClasses[i] = new SizeClass(i, 1 << (i + MIN_SLOT_SHIFT));
+        }
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return the number of sessions in the store
+     */
+    public int getSessions()
+    {
+        return index.size();
+    }
+
+    /**
+     * @return the bytes of direct memory or mapped file in use
+     */
+    public long getCapacity()
+    {
+        synchronized (this)
+        {
+            return (long)chunks * CHUNK_SIZE;
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (file != null)
+            channel.set(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        index.clear();
+        for (SizeClass sizeClass : sizeClasses)
+        {
+            sizeClass.clear();
+        }
+        synchronized (this)
+        {
+            chunks = 0;
+        }
+        FileChannel fileChannel = channel.getAndSet(null);
+        if (fileChannel != null)
+        {
+            fileChannel.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public boolean isPassivating()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean doExists(String id)
+    {
+        long expiry = readExpiry(id);
+        return expiry != Long.MIN_VALUE && (expiry <= 0 || expiry > System.currentTimeMillis());
+    }
+
+    @Override
+    public void doStore(String id, SessionData data, long lastSaveTime) throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (DataOutputStream out = new DataOutputStream(bytes))
+        {
+            // Room for the header, written into the slot
+            out.write(new byte[HEADER_SIZE]);
+            out.writeUTF(data.getId());
+            out.writeUTF(data.getContextPath());
+            out.writeUTF(data.getVhost());
+            out.writeUTF(data.getLastNode() == null ? "" : data.getLastNode());
+            out.writeLong(data.getCreated());
+            out.writeLong(data.getAccessed());
+            out.writeLong(data.getLastAccessed());
+            out.writeLong(data.getCookieSet());
+            out.writeLong(data.getExpiry());
+            out.writeLong(data.getMaxInactiveMs());
+            ObjectOutputStream attributes = new ObjectOutputStream(out);
+            SessionData.serializeAttributes(data, attributes);
+            attributes.flush();
+        }
+
+        int length = bytes.size();
+        SizeClass sizeClass = getSizeClass(length);
+        if (sizeClass == null)
+            throw new IOException("Session " + id + " too large to store: " + length + " bytes");
+        long address = sizeClass.allocate();
+        ByteBuffer slot = sizeClass.slot(address);
+        slot.put(bytes.toByteArray());
+        slot.putInt(0, length);
+        slot.putLong(4, data.getExpiry());
+
+        Long old = index.put(id, address);
+        if (old != null)
+            free(old);
+    }
+
+    @Override
+    public SessionData doLoad(String id) throws Exception
+    {
+        byte[] bytes = read(id);
+        if (bytes == null)
+            return null;
+
+        AtomicReference<SessionData> loaded = new AtomicReference<>();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        // Deserialize the attributes with the classloader of the context
+        _context.run(() ->
+        {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE)))
+            {
+                String storedId = in.readUTF();
+                String contextPath = in.readUTF();
+                String vhost = in.readUTF();
+                String lastNode = in.readUTF();
+                long created = in.readLong();
+                long accessed = in.readLong();
+                long lastAccessed = in.readLong();
+                long cookieSet = in.readLong();
+                long expiry = in.readLong();
+                long maxInactiveMs = in.readLong();
+
+                SessionData data = newSessionData(storedId, created, accessed, lastAccessed, maxInactiveMs);
+                data.setContextPath(contextPath);
+                data.setVhost(vhost);
+                data.setLastNode(lastNode.isEmpty() ? null : lastNode);
+                data.setCookieSet(cookieSet);
+                data.setExpiry(expiry);
+                SessionData.deserializeAttributes(data, new ClassLoadingObjectInputStream(in));
+                loaded.set(data);
+            }
+            catch (Exception e)
+            {
+                failure.set(e);
+            }
+        });
+        if (failure.get() != null)
+            throw failure.get();
+        return loaded.get();
+    }
+
+    @Override
+    public boolean delete(String id)
+    {
+        Long address = index.remove(id);
+        if (address == null)
+            return false;
+        free(address);
+        return true;
+    }
+
+    @Override
+    public Set<String> doCheckExpired(Set<String> candidates, long time)
+    {
+        Set<String> expired = new HashSet<>();
+        for (String id : candidates)
+        {
+            // A candidate no longer in the store has expired, as far as the store is concerned
+            long expiry = readExpiry(id);
+            if (expiry == Long.MIN_VALUE || (expiry > 0 && expiry <= time))
+                expired.add(id);
+        }
+        return expired;
+    }
+
+    @Override
+    public Set<String> doGetExpired(long time)
+    {
+        Set<String> expired = new HashSet<>();
+        for (String id : index.keySet())
+        {
+            long expiry = readExpiry(id);
+            if (expiry > 0 && expiry <= time)
+                expired.add(id);
+        }
+        return expired;
+    }
+
+    @Override
+    public void doCleanOrphans(long time)
+    {
+        for (String id : doGetExpired(time))
+        {
+            delete(id);
+        }
+    }
+
+    private SizeClass getSizeClass(int length)
+    {
+        int shift = Math.max(MIN_SLOT_SHIFT, 32 - Integer.numberOfLeadingZeros(length - 1));
+        return shift > MAX_SLOT_SHIFT ? null : sizeClasses[shift - MIN_SLOT_SHIFT];
+    }
+
+    private byte[] read(String id)
+    {
+        return read(id, (sizeClass, address) ->
+        {
+            ByteBuffer slot = sizeClass.slot(address);
+            byte[] bytes = new byte[slot.getInt(0)];
+            slot.get(bytes);
+            return bytes;
+        });
+    }
+
+    /**
+     * @return the expiry of a stored session, or {@link Long#MIN_VALUE} if not stored
+     */
+    private long readExpiry(String id)
+    {
+        Long expiry = read(id, (sizeClass, address) -> sizeClass.slot(address).getLong(4));
+        return expiry == null ? Long.MIN_VALUE : expiry;
+    }
+
+    private <T> T read(String id, SlotReader<T> reader)
+    {
+        while (true)
+        {
+            Long address = index.get(id);
+            if (address == null)
+                return null;
+            SizeClass sizeClass = sizeClasses[sizeClassOf(address)];
+            synchronized (sizeClass)
+            {
+                // The slot cannot be freed while locked, but may have been before it was locked
+                if (address.equals(index.get(id)))
+                    return reader.read(sizeClass, address);
+            }
+        }
+    }
+
+    private void free(long address)
+    {
+        sizeClasses[sizeClassOf(address)].free(address);
+    }
+
+    private ByteBuffer newChunk() throws IOException
+    {
+        synchronized (this)
+        {
+            FileChannel fileChannel = channel.get();
+            ByteBuffer chunk = fileChannel == null
+                ? ByteBuffer.allocateDirect(CHUNK_SIZE)
+                : fileChannel.map(FileChannel.MapMode.READ_WRITE, (long)chunks * CHUNK_SIZE, CHUNK_SIZE);
+            chunks++;
+            return chunk;
+        }
+    }
+
+    // An address is the size class, the chunk within it, and the offset of the slot within the chunk
+    private static long address(int sizeClass, int chunk, int offset)
+    {
+        return ((long)sizeClass << 56) | ((long)chunk << 24) | offset;
+    }
+
+    private static int sizeClassOf(long address)
+    {
+        return (int)(address >>> 56);
+    }
+
+    private static int chunkOf(long address)
+    {
+        return (int)((address >>> 24) & 0xFFFFFFFFL);
+    }
+
+    private static int offsetOf(long address)
+    {
+        return (int)(address & 0xFFFFFF);
+    }
+
+    @FunctionalInterface
+    private interface SlotReader<T>
+    {
+        T read(SizeClass sizeClass, long address);
+    }
+
+    /**
+     * The slots of one size, carved out of chunks in order, and reused once freed.
+     */
+    private class SizeClass
+    {
+        private final int index;
+        private final int slotSize;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private long[] free = new long[16];
+        private int freeCount;
+        private int nextOffset = CHUNK_SIZE;
+
+        SizeClass(int index, int slotSize)
+        {
+            this.index = index;
+            this.slotSize = slotSize;
+        }
+
+        synchronized long allocate() throws IOException
+        {
+            if (freeCount > 0)
+                return free[--freeCount];
+            if (nextOffset + slotSize > CHUNK_SIZE)
+            {
+                chunks.add(newChunk());
+                nextOffset = 0;
+            }
+            long address = address(index, chunks.size() - 1, nextOffset);
+            nextOffset += slotSize;
+            return address;
+        }
+
+        synchronized void free(long address)
+        {
+            if (freeCount == free.length)
+                free = Arrays.copyOf(free, free.length * 2);
+            free[freeCount++] = address;
+        }
+
+        /**
+         * @return a view of the slot at the address, positioned at its start
+         */
+        synchronized ByteBuffer slot(long address)
+        {
+            int offset = offsetOf(address);
+            return chunks.get(chunkOf(address)).duplicate().limit(offset + slotSize).position(offset).slice();
+        }
+
+        synchronized void clear()
+        {
+            chunks.clear();
+            freeCount = 0;
+            nextOffset = CHUNK_SIZE;
+        }
+    }
+}
@@ -0,0 +1,569 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import javax.servlet.http.HttpSession;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.util.StringUtil;
+
+/**
+ * Buffers the output of pages to send it with a strong ETag, so that conditional requests are
+ * answered with a {@code 304 Not Modified}, and optionally caches whole responses in memory.
+ * <p>
+ * Only the pages given a TTL are cached, keyed by their path, the values of the selected query
+ * parameters and of the selected request headers (which are sent as {@code Vary}).
+ * Requests with any other query parameter are not cached, nor are responses that are not a
+ * {@code 200}, that set a cookie, or that are {@code private} or {@code no-store}.
+ * A cache hit is a copy of the stored bytes, without the page (or the session) being involved.
+ * </p>
+ * <p>
+ * As JSPs create a session unless they are {@code session="false"}, a new session that a page
+ * to cache leaves without attributes is invalidated, and its cookie removed from the response,
+ * so that such a page is cached in its current form. A page that stores anything in a new
+ * session keeps it, and its cookie, and is not cached.
+ * </p>
+ * <p>
+ * Init parameters:
+ * </p>
+ * <dl>
+ * <dt>ttl</dt><dd>the pages to cache and their TTL in seconds (eg: {@code /test/jstl.jsp=60,/test/tag.jsp=1}), by default none</dd>
+ * <dt>params</dt><dd>the query parameters in the cache key, comma separated</dd>
+ * <dt>vary</dt><dd>the request headers in the cache key, comma separated</dd>
+ * <dt>maxCacheSize</dt><dd>the maximum bytes of cached content (default 16MB), evicting the entries closest to expiry</dd>
+ * <dt>maxPageSize</dt><dd>the largest page to buffer (default 1MB), larger pages are streamed without an ETag</dd>
+ * </dl>
+ */
+@SuppressWarnings("serial")
+public class PageCacheFilter extends HttpFilter
+{
+    // Estimated bytes of an entry besides its key and content
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicLong size = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private Map<String, Long> ttls;
+    private List<String> params;
+    private List<String> vary;
+    private String varyHeader;
+    private long maxCacheSize;
+    private int maxPageSize;
+
+    @Override
+    public void init() throws ServletException
+    {
+        Map<String, Long> ttls = new HashMap<>();
+        for (String ttl : list(getInitParameter("ttl")))
+        {
+            int equals = ttl.indexOf('=');
+            if (equals < 0)
+                throw new ServletException("Invalid ttl: " + ttl);
+            ttls.put(ttl.substring(0, equals).trim(), TimeUnit.SECONDS.toNanos(Long.parseLong(ttl.substring(equals + 1).trim())));
+        }
+        this.ttls = ttls;
+        params = list(getInitParameter("params"));
+        vary = list(getInitParameter("vary"));
+        varyHeader = vary.isEmpty() ? null : String.join(", ", vary);
+        maxCacheSize = Long.parseLong(getInitParameter("maxCacheSize", Long.toString(16 * 1024 * 1024)));
+        maxPageSize = Integer.parseInt(getInitParameter("maxPageSize", Integer.toString(1024 * 1024)));
+    }
+
+    private static List<String> list(String value)
+    {
+        List<String> list = new ArrayList<>();
+        if (value == null)
+            return list;
+        for (String item : StringUtil.csvSplit(value))
+        {
+            if (!item.isBlank())
+                list.add(item.trim());
+        }
+        return list;
+    }
+
+    private String getInitParameter(String name, String defaultValue)
+    {
+        String value = getInitParameter(name);
+        return value == null ? defaultValue : value;
+    }
+
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return the responses answered with a 304, whether cached or not
+     */
+    public long getNotModified()
+    {
+        return notModified.sum();
+    }
+
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    public int getEntries()
+    {
+        return pages.size();
+    }
+
+    /**
+     * @return the estimated bytes of the cached responses
+     */
+    public long getSize()
+    {
+        return size.get();
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException
+    {
+        boolean get = HttpMethod.GET.is(request.getMethod());
+        if (!get && !HttpMethod.HEAD.is(request.getMethod()))
+        {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String path = request.getServletPath() + (request.getPathInfo() == null ? "" : request.getPathInfo());
+        Long ttl = get ? ttls.get(path) : null;
+        String key = ttl == null ? null : key(path, request);
+        if (key != null)
+        {
+            long now = System.nanoTime();
+            Page page = pages.get(key);
+            if (page != null && now - page.expiresAt >= 0)
+            {
+                remove(key, page);
+                page = null;
+            }
+            if (page != null)
+            {
+                hits.increment();
+                send(request, response, page);
+                return;
+            }
+            misses.increment();
+        }
+
+        boolean hadSession = key != null && request.getSession(false) != null;
+        BufferedResponse buffered = new BufferedResponse(response);
+        chain.doFilter(request, buffered);
+        byte[] content = buffered.complete();
+        if (content == null)
+            return;
+        if (key != null && !hadSession)
+            discardUnusedSession(request, response);
+
+        if (response.getStatus() != HttpServletResponse.SC_OK)
+        {
+            response.getOutputStream().write(content);
+            return;
+        }
+
+        if (key != null && varyHeader != null)
+            response.setHeader(HttpHeader.VARY.asString(), varyHeader);
+        Page page = new Page(response, content, ttl == null ? 0 : System.nanoTime() + ttl);
+        if (key != null && isCacheable(response))
+            put(key, page);
+        send(request, response, page);
+    }
+
+    private String key(String path, HttpServletRequest request)
+    {
+        for (String name : request.getParameterMap().keySet())
+        {
+            if (!params.contains(name))
+                return null;
+        }
+
+        StringBuilder key = new StringBuilder(path);
+        for (String name : params)
+        {
+            String[] values = request.getParameterValues(name);
+            if (values != null)
+                key.append('&').append(name).append('=').append(Arrays.toString(values));
+        }
+        for (String name : vary)
+        {
+            key.append('\n').append(name).append(':').append(Collections.list(request.getHeaders(name)));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Invalidate a session the page created but did not use, and remove its cookie from the response,
+     * unless the response sets other cookies too.
+     */
+    private static void discardUnusedSession(HttpServletRequest request, HttpServletResponse response)
+    {
+        HttpSession session = request.getSession(false);
+        if (session == null || !session.isNew() || session.getAttributeNames().hasMoreElements())
+            return;
+
+        String sessionCookie = request.getServletContext().getSessionCookieConfig().getName() + "=";
+        for (String cookie : response.getHeaders(HttpHeader.SET_COOKIE.asString()))
+        {
+            if (!cookie.startsWith(sessionCookie))
+                return;
+        }
+        session.invalidate();
+        response.setHeader(HttpHeader.SET_COOKIE.asString(), null);
+    }
+
+    private static boolean isCacheable(HttpServletResponse response)
+    {
+        if (response.containsHeader(HttpHeader.SET_COOKIE.asString()))
+            return false;
+        String cacheControl = response.getHeader(HttpHeader.CACHE_CONTROL.asString());
+        return cacheControl == null || !(cacheControl.contains("private") || cacheControl.contains("no-store"));
+    }
+
+    private void send(HttpServletRequest request, HttpServletResponse response, Page page) throws IOException
+    {
+        page.headers.forEach((name, values) ->
+        {
+            if (!response.containsHeader(name))
+                values.forEach(value -> response.addHeader(name, value));
+        });
+        response.setHeader(HttpHeader.ETAG.asString(), page.etag);
+
+        if (isNotModified(request.getHeader(HttpHeader.IF_NONE_MATCH.asString()), page.etag))
+        {
+            notModified.increment();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (page.contentType != null)
+            response.setContentType(page.contentType);
+        response.setContentLength(page.content.length);
+        response.getOutputStream().write(page.content);
+    }
+
+    private static boolean isNotModified(String ifNoneMatch, String etag)
+    {
+        if (ifNoneMatch == null)
+            return false;
+        for (String tag : ifNoneMatch.split(","))
+        {
+            tag = tag.trim();
+            // If-None-Match uses the weak comparison
+            if (tag.startsWith("W/"))
+                tag = tag.substring(2);
+            if ("*".equals(tag) || etag.equals(tag))
+                return true;
+        }
+        return false;
+    }
+
+    private void put(String key, Page page)
+    {
+        page.size = ENTRY_OVERHEAD + 2L * key.length() + page.content.length;
+        if (page.size > maxCacheSize)
+            return;
+        Page old = pages.put(key, page);
+        size.addAndGet(page.size - (old == null ? 0 : old.size));
+        if (size.get() > maxCacheSize)
+            evict();
+    }
+
+    private boolean remove(String key, Page page)
+    {
+        if (!pages.remove(key, page))
+            return false;
+        size.addAndGet(-page.size);
+        return true;
+    }
+
+    private void evict()
+    {
+        // One thread evicts while the others carry on, possibly a little over the size
+        if (!evictionLock.tryLock())
+            return;
+        try
+        {
+            List<Map.Entry<String, Page>> candidates = new ArrayList<>(pages.entrySet());
+            candidates.sort(Comparator.comparingLong(e -> e.getValue().expiresAt));
+            for (Map.Entry<String, Page> candidate : candidates)
+            {
+                if (size.get() <= maxCacheSize * 9 / 10)
+                    break;
+                if (remove(candidate.getKey(), candidate.getValue()))
+                    evictions.increment();
+            }
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * A complete 200 response: its headers, content and ETag.
+     */
+    private static class Page
+    {
+        private final Map<String, List<String>> headers = new LinkedHashMap<>();
+        private final String contentType;
+        private final byte[] content;
+        private final String etag;
+        private final long expiresAt;
+        private long size;
+
+        Page(HttpServletResponse response, byte[] content, long expiresAt)
+        {
+            for (String name : response.getHeaderNames())
+            {
+                if (!HttpHeader.CONTENT_TYPE.is(name) && !HttpHeader.CONTENT_LENGTH.is(name))
+                    headers.put(name, new ArrayList<>(response.getHeaders(name)));
+            }
+            this.contentType = response.getContentType();
+            this.content = content;
+            this.etag = StaticContentCache.Variant.etag(ByteBuffer.wrap(content));
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Buffers the output of a page, up to the maxPageSize, after which it is streamed.
+     */
+    private class BufferedResponse extends HttpServletResponseWrapper
+    {
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        private final CapturingOutputStream outputStream = new CapturingOutputStream();
+        private PrintWriter writer;
+        private boolean sentError;
+
+        BufferedResponse(HttpServletResponse response)
+        {
+            super(response);
+        }
+
+        /**
+         * @return the buffered content, or null if it has been streamed or an error sent instead
+         * @throws IOException if unable to stream the rest of the content
+         */
+        byte[] complete() throws IOException
+        {
+            if (writer != null)
+                writer.flush();
+            if (buffer == null || sentError)
+                return null;
+            return buffer.toByteArray();
+        }
+
+        private void overflow() throws IOException
+        {
+            ServletOutputStream out = getResponse().getOutputStream();
+            buffer.writeTo(out);
+            buffer = null;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream()
+        {
+            if (writer != null)
+                throw new IllegalStateException("getWriter() called");
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException
+        {
+            if (writer == null)
+                writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int len)
+        {
+        }
+
+        @Override
+        public void setContentLengthLong(long len)
+        {
+        }
+
+        @Override
+        public void flushBuffer() throws IOException
+        {
+            if (writer != null)
+                writer.flush();
+            if (buffer == null)
+                super.flushBuffer();
+        }
+
+        @Override
+        public boolean isCommitted()
+        {
+            return buffer == null ? super.isCommitted() : sentError;
+        }
+
+        @Override
+        public void resetBuffer()
+        {
+            if (buffer == null)
+            {
+                super.resetBuffer();
+                return;
+            }
+            if (writer != null)
+                writer.flush();
+            buffer.reset();
+        }
+
+        @Override
+        public void reset()
+        {
+            super.reset();
+            if (buffer != null)
+                resetBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException
+        {
+            sentError = true;
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException
+        {
+            sentError = true;
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException
+        {
+            sentError = true;
+            super.sendRedirect(location);
+        }
+
+        private class CapturingOutputStream extends ServletOutputStream
+        {
+            @Override
+            public void write(int b) throws IOException
+            {
+                if (buffer == null)
+                {
+                    getResponse().getOutputStream().write(b);
+                    return;
+                }
+                buffer.write(b);
+                if (buffer.size() > maxPageSize)
+                    overflow();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException
+            {
+                if (buffer == null)
+                {
+                    getResponse().getOutputStream().write(b, off, len);
+                    return;
+                }
+                buffer.write(b, off, len);
+                if (buffer.size() > maxPageSize)
+                    overflow();
+            }
+
+            @Override
+            public void flush() throws IOException
+            {
+                if (buffer == null)
+                    getResponse().getOutputStream().flush();
+            }
+
+            @Override
+            public boolean isReady()
+            {
+                if (buffer != null)
+                    return true;
+                try
+                {
+                    return getResponse().getOutputStream().isReady();
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener)
+            {
+                // Non-blocking writes cannot be buffered, so the page is streamed (without an ETag) from now on
+                try
+                {
+                    if (buffer != null)
+                        overflow();
+                    getResponse().getOutputStream().setWriteListener(writeListener);
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.jsp.JspWriter;
+import javax.servlet.jsp.PageContext;
+import javax.servlet.jsp.tagext.BodyContent;
+
+/**
+ * A bounded pool of released {@link PageContext}s, shared by all the threads serving a context.
+ * <p>
+ * A Jasper page context owns the {@link JspWriter} of its page, and the stack of
+ * {@link BodyContent}s pushed by its buffered tags and tag files, so leasing one leases
+ * all of their char buffers. Jasper pools page contexts in a {@code ThreadLocal}, which
+ * works for a pool of platform threads, but never hits with a new (eg: virtual) thread per
+ * request. This pool does not depend on the thread: its slots are split into stripes, each
+ * thread starts looking in its own stripe and moves on to the next ones, and slots are
+ * claimed with a compare and set, so no thread ever blocks (or pins its carrier) on it.
+ * </p>
+ */
+public class PageContextPool
+{
+    // Servlet context attribute for the pool of a context
+    public static final String ATTRIBUTE = PageContextPool.class.getName();
+
+    private final AtomicReferenceArray<PageContext> slots;
+    private final int stripeSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+
+    /**
+     * @param capacity the maximum page contexts kept, striped over the available processors
+     */
+    public PageContextPool(int capacity)
+    {
+        this(capacity, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param capacity the maximum page contexts kept
+     * @param stripes the number of stripes to split them over
+     */
+    public PageContextPool(int capacity, int stripes)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        slots = new AtomicReferenceArray<>(capacity);
+        stripeSize = Math.max(1, capacity / Math.max(1, stripes));
+    }
+
+    /**
+     * @return a released page context, or null if the pool is empty
+     */
+    public PageContext lease()
+    {
+        int capacity = slots.length();
+        int start = start(capacity);
+        for (int i = 0; i < capacity; i++)
+        {
+            int index = (start + i) % capacity;
+            PageContext pageContext = slots.get(index);
+            if (pageContext != null && slots.compareAndSet(index, pageContext, null))
+            {
+                hits.increment();
+                return pageContext;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @param pageContext a released page context
+     * @return true if it was pooled, false if the pool is full
+     */
+    public boolean offer(PageContext pageContext)
+    {
+        int capacity = slots.length();
+        int start = start(capacity);
+        for (int i = 0; i < capacity; i++)
+        {
+            int index = (start + i) % capacity;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, pageContext))
+                return true;
+        }
+        discards.increment();
+        return false;
+    }
+
+    private int start(int capacity)
+    {
+        // Spread the thread ids, as sequential ones would otherwise share a stripe
+        long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        int stripe = (int)((id >>> 32) % ((capacity + stripeSize - 1) / stripeSize));
+        return stripe * stripeSize;
+    }
+
+    /**
+     * @return the leases served from the pool
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * @return the leases that found the pool empty, so a new page context was allocated
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return the page contexts dropped on release because the pool was full
+     */
+    public long getDiscards()
+    {
+        return discards.sum();
+    }
+
+    /**
+     * @return the page contexts currently pooled
+     */
+    public int getSize()
+    {
+        int size = 0;
+        for (int i = 0; i < slots.length(); i++)
+        {
+            if (slots.get(i) != null)
+                size++;
+        }
+        return size;
+    }
+
+    public int getCapacity()
+    {
+        return slots.length();
+    }
+}
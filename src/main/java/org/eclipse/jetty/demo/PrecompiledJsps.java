@@ -0,0 +1,142 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * The JSPs (and tag files) precompiled at build time by the jetty-jspc-maven-plugin.
+ * <p>
+ * JspC writes a web.xml fragment listing a {@code <servlet>} and {@code <servlet-mapping>}
+ * for every page it compiled. This reads that fragment from the classpath and registers
+ * each generated class directly as a {@link ServletHolder}, so the "jsp" servlet
+ * (and with it, Jasper's runtime compiler) is never involved for those paths.
+ * </p>
+ */
+public class PrecompiledJsps
+{
+    // Classpath location of the fragment generated by the jspc plugin (see pom.xml)
+    public static final String WEB_FRAGMENT = "/webfrag.xml";
+
+    private final Map<String, String> classNamesByPath;
+
+    public PrecompiledJsps(Map<String, String> classNamesByPath)
+    {
+        this.classNamesByPath = classNamesByPath;
+    }
+
+    /**
+     * Load the precompiled JSP mappings from the classpath.
+     *
+     * @param classLoader the classloader to look up the {@link #WEB_FRAGMENT} with
+     * @return the mappings, or null if the build did not precompile any JSPs
+     * @throws IOException if the fragment exists but cannot be read
+     */
+    public static PrecompiledJsps load(ClassLoader classLoader) throws IOException
+    {
+        URL fragment = classLoader.getResource(WEB_FRAGMENT.substring(1));
+        if (fragment == null)
+            return null;
+
+        // The fragment has no root element of its own, so wrap it in one
+        try (InputStream in = new SequenceInputStream(Collections.enumeration(List.of(
+            new ByteArrayInputStream("<web-app>".getBytes(StandardCharsets.UTF_8)),
+            fragment.openStream(),
+            new ByteArrayInputStream("</web-app>".getBytes(StandardCharsets.UTF_8))))))
+        {
+            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            Document doc = builder.parse(in);
+
+            Map<String, String> classNamesByName = new LinkedHashMap<>();
+            NodeList servlets = doc.getElementsByTagName("servlet");
+            for (int i = 0; i < servlets.getLength(); i++)
+            {
+                Element servlet = (Element)servlets.item(i);
+                classNamesByName.put(text(servlet, "servlet-name"), text(servlet, "servlet-class"));
+            }
+
+            Map<String, String> classNamesByPath = new LinkedHashMap<>();
+            NodeList mappings = doc.getElementsByTagName("servlet-mapping");
+            for (int i = 0; i < mappings.getLength(); i++)
+            {
+                Element mapping = (Element)mappings.item(i);
+                String className = classNamesByName.get(text(mapping, "servlet-name"));
+                if (className != null)
+                    classNamesByPath.put(text(mapping, "url-pattern"), className);
+            }
+            return new PrecompiledJsps(classNamesByPath);
+        }
+        catch (ParserConfigurationException | SAXException e)
+        {
+            throw new IOException("Unable to parse " + fragment, e);
+        }
+    }
+
+    private static String text(Element element, String childName)
+    {
+        return element.getElementsByTagName(childName).item(0).getTextContent().trim();
+    }
+
+    /**
+     * @return the JSP paths (eg: {@code /test/jstl.jsp}) mapped to their generated servlet class names
+     */
+    public Map<String, String> getClassNamesByPath()
+    {
+        return Collections.unmodifiableMap(classNamesByPath);
+    }
+
+    /**
+     * Register every precompiled JSP against its own path.
+     *
+     * @param servletContextHandler the context to add the servlets to
+     * @return the registered holders, keyed by JSP path
+     */
+    public Map<String, ServletHolder> register(ServletContextHandler servletContextHandler)
+    {
+        Map<String, ServletHolder> holders = new LinkedHashMap<>();
+        classNamesByPath.forEach((path, className) ->
+        {
+            ServletHolder holder = new ServletHolder();
+            holder.setName(className);
+            holder.setClassName(className);
+            servletContextHandler.addServlet(holder, path);
+            holders.put(path, holder);
+        });
+        return holders;
+    }
+}
@@ -0,0 +1,93 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a gzip variant ({@code .gz}) next to every static resource it makes smaller.
+ * <p>
+ * Run during the build (see pom.xml), so that no request pays for compression. Variants
+ * for other encodings in {@link StaticContentCache#ENCODINGS} (eg: {@code .br} files from
+ * the {@code brotli} tool) are served in the same way when present.
+ * </p>
+ */
+public class Precompress
+{
+    /**
+     * @param args the directory of static resources
+     * @throws IOException if unable to write a variant
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Path directory = Path.of(args[0]);
+        if (!Files.isDirectory(directory))
+            return;
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory))
+        {
+            files = paths.filter(Files::isRegularFile)
+                .filter(p -> StaticContentCache.ENCODINGS.values().stream().noneMatch(p.toString()::endsWith))
+                .collect(Collectors.toList());
+        }
+
+        int written = 0;
+        for (Path file : files)
+        {
+            byte[] content = Files.readAllBytes(file);
+            byte[] gzipped = gzip(content);
+            Path variant = file.resolveSibling(file.getFileName() + ".gz");
+            if (gzipped.length < content.length)
+            {
+                Files.write(variant, gzipped);
+                written++;
+            }
+            else
+            {
+                Files.deleteIfExists(variant);
+            }
+        }
+        System.out.printf("Precompressed %d of %d resources in %s%n", written, files.size(), directory);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // The gzip header has no timestamp, so the build is reproducible
+        try (OutputStream out = new GZIPOutputStream(bytes)
+        {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        })
+        {
+            out.write(content);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,206 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+
+import org.eclipse.jetty.server.Request;
+
+/**
+ * Request counts, latencies and bytes written per servlet path (ie: per JSP), and JSP loads.
+ * <p>
+ * Added to a context as a listener, it records every request when it is destroyed, with
+ * the latency measured from when the request began to be parsed. Recording does not
+ * allocate once a path has been seen, and only updates striped counters.
+ * </p>
+ * <p>
+ * The number of paths is bounded by {@link #MAX_PATHS}, beyond which requests are
+ * recorded against the {@link #OTHER_PATH}.
+ * </p>
+ *
+ * @see MetricsServlet
+ */
+public class RequestMetrics implements ServletRequestListener
+{
+    // Context attribute the metrics are found with
+    public static final String ATTRIBUTE = RequestMetrics.class.getName();
+
+    public static final int MAX_PATHS = 256;
+    public static final String OTHER_PATH = "other";
+
+    private final Map<String, PathMetrics> paths = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> jspLoads = new ConcurrentHashMap<>();
+
+    @Override
+    public void requestInitialized(ServletRequestEvent sre)
+    {
+    }
+
+    @Override
+    public void requestDestroyed(ServletRequestEvent sre)
+    {
+        Request request = Request.getBaseRequest(sre.getServletRequest());
+        if (request == null)
+            return;
+        String path = request.getServletPath();
+        record(path == null || path.isEmpty() ? "/" : path,
+            System.nanoTime() - request.getBeginNanoTime(),
+            request.getResponse().getHttpOutput().getWritten());
+    }
+
+    /**
+     * @param path the servlet path of the request
+     * @param nanos the latency of the request
+     * @param bytes the bytes of content written
+     */
+    public void record(String path, long nanos, long bytes)
+    {
+        PathMetrics metrics = paths.get(path);
+        if (metrics == null)
+            metrics = paths.computeIfAbsent(paths.size() < MAX_PATHS ? path : OTHER_PATH, p -> new PathMetrics());
+        metrics.requests.increment();
+        metrics.bytes.add(bytes);
+        metrics.latency.record(nanos);
+    }
+
+    /**
+     * @param className the JSP servlet class, loaded after being (re)compiled
+     */
+    public void recordJspLoad(String className)
+    {
+        jspLoads.computeIfAbsent(className, c -> new LongAdder()).increment();
+    }
+
+    /**
+     * @param path the servlet path
+     * @return the requests recorded for the path
+     */
+    public long getRequests(String path)
+    {
+        PathMetrics metrics = paths.get(path);
+        return metrics == null ? 0 : metrics.requests.sum();
+    }
+
+    /**
+     * @param path the servlet path
+     * @return the bytes written for the path
+     */
+    public long getBytes(String path)
+    {
+        PathMetrics metrics = paths.get(path);
+        return metrics == null ? 0 : metrics.bytes.sum();
+    }
+
+    /**
+     * @param className the JSP servlet class
+     * @return the number of times the class was loaded
+     */
+    public long getJspLoads(String className)
+    {
+        LongAdder loads = jspLoads.get(className);
+        return loads == null ? 0 : loads.sum();
+    }
+
+    /**
+     * Write the metrics in the Prometheus text exposition format.
+     *
+     * @param out the writer to write to
+     * @throws IOException if unable to write
+     */
+    public void writeTo(Writer out) throws IOException
+    {
+        Map<String, PathMetrics> sorted = new TreeMap<>(paths);
+
+        out.write("# HELP servlet_requests_total Requests handled, by servlet path.\n");
+        out.write("# TYPE servlet_requests_total counter\n");
+        for (Map.Entry<String, PathMetrics> entry : sorted.entrySet())
+        {
+            writeSample(out, "servlet_requests_total", "path", entry.getKey(), null, Long.toString(entry.getValue().requests.sum()));
+        }
+
+        out.write("# HELP servlet_response_bytes_total Bytes of content written, by servlet path.\n");
+        out.write("# TYPE servlet_response_bytes_total counter\n");
+        for (Map.Entry<String, PathMetrics> entry : sorted.entrySet())
+        {
+            writeSample(out, "servlet_response_bytes_total", "path", entry.getKey(), null, Long.toString(entry.getValue().bytes.sum()));
+        }
+
+        out.write("# HELP servlet_request_duration_seconds Request latency, by servlet path.\n");
+        out.write("# TYPE servlet_request_duration_seconds histogram\n");
+        for (Map.Entry<String, PathMetrics> entry : sorted.entrySet())
+        {
+            LatencyHistogram latency = entry.getValue().latency;
+            long[] counts = latency.getCounts();
+            long count = 0;
+            for (int i = 0; i < LatencyHistogram.BUCKETS; i++)
+            {
+                count += counts[i];
+                writeSample(out, "servlet_request_duration_seconds_bucket", "path", entry.getKey(), LatencyHistogram.getUpperBound(i), Long.toString(count));
+            }
+            count += counts[LatencyHistogram.BUCKETS];
+            writeSample(out, "servlet_request_duration_seconds_bucket", "path", entry.getKey(), "+Inf", Long.toString(count));
+            writeSample(out, "servlet_request_duration_seconds_sum", "path", entry.getKey(), null, Double.toString(latency.getSumNanos() / 1e9));
+            writeSample(out, "servlet_request_duration_seconds_count", "path", entry.getKey(), null, Long.toString(count));
+        }
+
+        out.write("# HELP jsp_loads_total JSP servlet classes loaded by Jasper, after each (re)compile.\n");
+        out.write("# TYPE jsp_loads_total counter\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(jspLoads).entrySet())
+        {
+            writeSample(out, "jsp_loads_total", "class", entry.getKey(), null, Long.toString(entry.getValue().sum()));
+        }
+    }
+
+    static void writeSample(Writer out, String name, String label, String value, String le, String sample) throws IOException
+    {
+        out.write(name);
+        out.write('{');
+        out.write(label);
+        out.write("=\"");
+        out.write(escape(value));
+        out.write('"');
+        if (le != null)
+        {
+            out.write(",le=\"");
+            out.write(le);
+            out.write('"');
+        }
+        out.write("} ");
+        out.write(sample);
+        out.write('\n');
+    }
+
+    private static String escape(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class PathMetrics
+    {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
@@ -0,0 +1,75 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jetty.server.session.DefaultSessionCache;
+import org.eclipse.jetty.server.session.NullSessionDataStore;
+import org.eclipse.jetty.server.session.SessionCache;
+import org.eclipse.jetty.server.session.SessionHandler;
+
+/**
+ * Where the sessions of the context are kept.
+ */
+public enum SessionStore
+{
+    /**
+     * Every session stays on the heap until it expires (the default).
+     */
+    HEAP,
+
+    /**
+     * The recently used sessions stay on the heap, the others are serialized to direct memory.
+     *
+     * @see LruSessionCache
+     * @see OffHeapSessionDataStore
+     */
+    DIRECT,
+
+    /**
+     * The recently used sessions stay on the heap, the others are serialized to a memory mapped file.
+     *
+     * @see LruSessionCache
+     * @see OffHeapSessionDataStore
+     */
+    MAPPED;
+
+    /**
+     * @param handler the session handler of the context
+     * @param maxResidentSessions the maximum sessions to keep on the heap, if not {@link #HEAP}
+     * @param directory the directory to create the mapped file in, if {@link #MAPPED}
+     * @return a new session cache, with its session data store
+     * @throws IOException if unable to create the mapped file
+     */
+    public SessionCache newSessionCache(SessionHandler handler, int maxResidentSessions, Path directory) throws IOException
+    {
+        if (this == HEAP)
+        {
+            SessionCache cache = new DefaultSessionCache(handler);
+            cache.setSessionDataStore(new NullSessionDataStore());
+            return cache;
+        }
+
+        SessionCache cache = new LruSessionCache(handler, maxResidentSessions);
+        cache.setSessionDataStore(new OffHeapSessionDataStore(this == MAPPED ? Files.createTempFile(directory, "sessions", ".dat") : null));
+        return cache;
+    }
+}
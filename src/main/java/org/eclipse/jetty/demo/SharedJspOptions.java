@@ -0,0 +1,260 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.File;
+import java.util.Map;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.jsp.tagext.TagLibraryInfo;
+
+import org.apache.jasper.EmbeddedServletOptions;
+import org.apache.jasper.Options;
+import org.apache.jasper.TrimSpacesOption;
+import org.apache.jasper.compiler.JspConfig;
+import org.apache.jasper.compiler.TagPluginManager;
+import org.apache.jasper.compiler.TldCache;
+
+/**
+ * The options of a "jsp" servlet using the {@link SharedJspRuntime} of its context, if any,
+ * set as the {@code engineOptionsClass} init parameter of the servlet.
+ * <p>
+ * The options are read from the init parameters of the servlet as usual, by the
+ * {@link EmbeddedServletOptions} this delegates to (which cannot be extended),
+ * except for the tag plugin registry, which is shared with the contexts seeing the same tag plugins.
+ * </p>
+ */
+public class SharedJspOptions implements Options
+{
+    private final EmbeddedServletOptions options;
+    private final TagPluginManager tagPluginManager;
+
+    public SharedJspOptions(ServletConfig config, ServletContext context)
+    {
+        options = new EmbeddedServletOptions(config, context);
+        SharedJspRuntime runtime = (SharedJspRuntime)context.getAttribute(SharedJspRuntime.ATTRIBUTE);
+        tagPluginManager = runtime == null ? null : runtime.getTagPluginManager(context);
+    }
+
+    @Override
+    public boolean getErrorOnUseBeanInvalidClassAttribute()
+    {
+        return options.getErrorOnUseBeanInvalidClassAttribute();
+    }
+
+    @Override
+    public boolean getKeepGenerated()
+    {
+        return options.getKeepGenerated();
+    }
+
+    @Override
+    public boolean isPoolingEnabled()
+    {
+        return options.isPoolingEnabled();
+    }
+
+    @Override
+    public boolean getMappedFile()
+    {
+        return options.getMappedFile();
+    }
+
+    @Override
+    public boolean getClassDebugInfo()
+    {
+        return options.getClassDebugInfo();
+    }
+
+    @Override
+    public int getCheckInterval()
+    {
+        return options.getCheckInterval();
+    }
+
+    @Override
+    public boolean getDevelopment()
+    {
+        return options.getDevelopment();
+    }
+
+    @Override
+    public boolean getDisplaySourceFragment()
+    {
+        return options.getDisplaySourceFragment();
+    }
+
+    @Override
+    public boolean isSmapSuppressed()
+    {
+        return options.isSmapSuppressed();
+    }
+
+    @Override
+    public boolean isSmapDumped()
+    {
+        return options.isSmapDumped();
+    }
+
+    @Override
+    public TrimSpacesOption getTrimSpaces()
+    {
+        return options.getTrimSpaces();
+    }
+
+    @Override
+    @Deprecated
+    @SuppressWarnings("deprecation")
+    public String getIeClassId()
+    {
+        return options.getIeClassId();
+    }
+
+    @Override
+    public File getScratchDir()
+    {
+        return options.getScratchDir();
+    }
+
+    @Override
+    public String getClassPath()
+    {
+        return options.getClassPath();
+    }
+
+    @Override
+    public String getCompiler()
+    {
+        return options.getCompiler();
+    }
+
+    @Override
+    public String getCompilerTargetVM()
+    {
+        return options.getCompilerTargetVM();
+    }
+
+    @Override
+    public String getCompilerSourceVM()
+    {
+        return options.getCompilerSourceVM();
+    }
+
+    @Override
+    public String getCompilerClassName()
+    {
+        return options.getCompilerClassName();
+    }
+
+    @Override
+    public TldCache getTldCache()
+    {
+        return options.getTldCache();
+    }
+
+    @Override
+    public String getJavaEncoding()
+    {
+        return options.getJavaEncoding();
+    }
+
+    @Override
+    public boolean getFork()
+    {
+        return options.getFork();
+    }
+
+    @Override
+    public JspConfig getJspConfig()
+    {
+        return options.getJspConfig();
+    }
+
+    @Override
+    public boolean isXpoweredBy()
+    {
+        return options.isXpoweredBy();
+    }
+
+    @Override
+    public TagPluginManager getTagPluginManager()
+    {
+        return tagPluginManager == null ? options.getTagPluginManager() : tagPluginManager;
+    }
+
+    @Override
+    public boolean genStringAsCharArray()
+    {
+        return options.genStringAsCharArray();
+    }
+
+    @Override
+    public int getModificationTestInterval()
+    {
+        return options.getModificationTestInterval();
+    }
+
+    @Override
+    public boolean getRecompileOnFail()
+    {
+        return options.getRecompileOnFail();
+    }
+
+    @Override
+    public boolean isCaching()
+    {
+        return options.isCaching();
+    }
+
+    @Override
+    public Map<String, TagLibraryInfo> getCache()
+    {
+        return options.getCache();
+    }
+
+    @Override
+    public int getMaxLoadedJsps()
+    {
+        return options.getMaxLoadedJsps();
+    }
+
+    @Override
+    public int getJspIdleTimeout()
+    {
+        return options.getJspIdleTimeout();
+    }
+
+    @Override
+    public boolean getStrictQuoteEscaping()
+    {
+        return options.getStrictQuoteEscaping();
+    }
+
+    @Override
+    public boolean getQuoteAttributeEL()
+    {
+        return options.getQuoteAttributeEL();
+    }
+
+    @Override
+    public boolean getGeneratedJavaAddTimestamp()
+    {
+        return options.getGeneratedJavaAddTimestamp();
+    }
+}
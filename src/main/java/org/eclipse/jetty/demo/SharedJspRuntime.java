@@ -0,0 +1,173 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.ServletContext;
+
+import org.apache.jasper.compiler.TagPluginManager;
+import org.apache.jasper.servlet.TldScanner;
+import org.apache.tomcat.util.descriptor.tld.TaglibXml;
+import org.apache.tomcat.util.descriptor.tld.TldResourcePath;
+import org.xml.sax.SAXException;
+
+/**
+ * The parts of the JSP engine shared by all the contexts of a server, so that each extra context
+ * only pays for what is its own: its classloader, its JSPs and the TLDs of its webroot.
+ * <ul>
+ * <li>TLDs outside of the webroots (in jars, or elsewhere on the classpath) are parsed once,
+ * by the {@link TldScanner} of the first context to start, and reused by the others.</li>
+ * <li>The registry of tag plugins declared on the classpath is shared by the contexts that see the
+ * same {@value TagPlugins#JASPER_TAG_PLUGINS_XML} files, and have no {@code /WEB-INF/tagPlugins.xml}
+ * of their own (see {@link SharedJspOptions}).</li>
+ * </ul>
+ * <p>
+ * The rest of Jasper is already shared: its classes, and those of the JDT compiler it compiles
+ * with, are loaded once by the server's classloader, and its {@code JspFactory} is JVM wide.
+ * </p>
+ */
+public class SharedJspRuntime
+{
+    // Servlet context attribute for the runtime shared by the context
+    public static final String ATTRIBUTE = SharedJspRuntime.class.getName();
+
+    private static final String TAG_PLUGINS_XML = "/WEB-INF/tagPlugins.xml";
+
+    private final Map<TldResourcePath, TaglibXml> taglibs = new ConcurrentHashMap<>();
+    private final LongAdder tldParses = new LongAdder();
+    private final LongAdder tldHits = new LongAdder();
+    // Keyed by the tagPlugins.xml files visible to the classloaders of the contexts
+    private final Map<List<String>, TagPluginManager> tagPluginManagers = new ConcurrentHashMap<>();
+
+    /**
+     * @param context the context to scan the TLDs of
+     * @param namespaceAware true to parse TLDs namespace aware
+     * @param validate true to validate TLDs
+     * @param blockExternal true to block external entities in TLDs
+     * @param preScannedTlds the URLs of the TLDs on the classpath, if already known (see {@link TldIndex}), or null to scan the jars for them
+     * @return a TLD scanner that reuses the TLDs parsed by other contexts
+     */
+    public TldScanner newTldScanner(ServletContext context, boolean namespaceAware, boolean validate, boolean blockExternal, Collection<URL> preScannedTlds)
+    {
+        if (preScannedTlds == null || preScannedTlds.isEmpty())
+        {
+            return new TldScanner(context, namespaceAware, validate, blockExternal)
+            {
+                @Override
+                protected void parseTld(TldResourcePath path) throws IOException, SAXException
+                {
+                    SharedJspRuntime.this.parseTld(this, path, super::parseTld);
+                }
+            };
+        }
+        return new IndexedTldScanner(context, namespaceAware, validate, blockExternal, preScannedTlds)
+        {
+            @Override
+            protected void parseTld(TldResourcePath path) throws IOException, SAXException
+            {
+                SharedJspRuntime.this.parseTld(this, path, super::parseTld);
+            }
+        };
+    }
+
+    private interface TldParser
+    {
+        void parse(TldResourcePath path) throws IOException, SAXException;
+    }
+
+    private void parseTld(TldScanner scanner, TldResourcePath path, TldParser parser) throws IOException, SAXException
+    {
+        // The TLDs of a webroot are its own, and can change in development mode
+        if (path.getWebappPath() != null)
+        {
+            parser.parse(path);
+            return;
+        }
+
+        TaglibXml taglib = taglibs.get(path);
+        if (taglib == null)
+        {
+            parser.parse(path);
+            tldParses.increment();
+            taglib = scanner.getTldResourcePathTaglibXmlMap().get(path);
+            if (taglib != null)
+                taglibs.putIfAbsent(path, taglib);
+            return;
+        }
+
+        // Registered as TldScanner.parseTld(TldResourcePath) would have
+        tldHits.increment();
+        if (scanner.getTldResourcePathTaglibXmlMap().putIfAbsent(path, taglib) != null)
+            return;
+        if (taglib.getUri() != null)
+            scanner.getUriTldResourcePathMap().putIfAbsent(taglib.getUri(), path);
+        scanner.getListeners().addAll(taglib.getListeners());
+    }
+
+    /**
+     * The registry is loaded by Jasper as it compiles the first JSP of any of the contexts sharing it,
+     * as it would for a single context.
+     *
+     * @param context the context to compile JSPs for
+     * @return the tag plugin registry shared with the contexts seeing the same tag plugins on their
+     * classpath, or null if the context has tag plugins of its own in {@code /WEB-INF/tagPlugins.xml}
+     */
+    public TagPluginManager getTagPluginManager(ServletContext context)
+    {
+        List<String> registries = new ArrayList<>();
+        try
+        {
+            if (context.getResource(TAG_PLUGINS_XML) != null)
+                return null;
+            for (URL url : Collections.list(context.getClassLoader().getResources(TagPlugins.JASPER_TAG_PLUGINS_XML)))
+            {
+                registries.add(url.toExternalForm());
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        return tagPluginManagers.computeIfAbsent(registries, key -> new TagPluginManager(context));
+    }
+
+    /**
+     * @return the TLDs outside of the webroots parsed so far
+     */
+    public long getTldParses()
+    {
+        return tldParses.sum();
+    }
+
+    /**
+     * @return the TLDs outside of the webroots reused rather than parsed again
+     */
+    public long getTldHits()
+    {
+        return tldHits.sum();
+    }
+}
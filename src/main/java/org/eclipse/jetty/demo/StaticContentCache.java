@@ -0,0 +1,289 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.eclipse.jetty.http.QuotedQualityCSV;
+import org.eclipse.jetty.util.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded, in-memory cache of static resources, loaded once and never revalidated.
+ * <p>
+ * Resources that are files on disk are memory mapped, others (eg: in a jar) are read
+ * into direct buffers, so that serving them never touches the file system or jar again.
+ * The gzip and brotli variants precompressed at build time (see {@link Precompress})
+ * are loaded alongside, and every variant has a strong ETag of its own content.
+ * </p>
+ */
+public class StaticContentCache
+{
+    private static final Logger LOG = LoggerFactory.getLogger(StaticContentCache.class);
+
+    // Content encodings in order of preference, mapped to the extension of their precompressed variant
+    public static final Map<String, String> ENCODINGS;
+
+    static
+    {
+        Map<String, String> encodings = new LinkedHashMap<>();
+        encodings.put("br", ".br");
+        encodings.put("gzip", ".gz");
+        ENCODINGS = Collections.unmodifiableMap(encodings);
+    }
+
+    private final Map<String, Content> contents = new ConcurrentHashMap<>();
+    private final long maxSize;
+    private long size;
+
+    /**
+     * @param maxSize the maximum bytes of content (including variants) to cache
+     */
+    public StaticContentCache(long maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Load every resource in a directory, until the cache is full.
+     *
+     * @param directory the directory to load
+     * @param path the request path of the directory (eg: {@code /static/})
+     * @param mimeTypes the content type of a request path
+     * @throws IOException if unable to read a resource
+     */
+    public synchronized void load(Resource directory, String path, Function<String, String> mimeTypes) throws IOException
+    {
+        List<String> names = new ArrayList<>(List.of(directory.list()));
+        Collections.sort(names);
+        for (String name : names)
+        {
+            Resource resource = directory.addPath(name);
+            if (resource.isDirectory())
+            {
+                load(resource, path + name, mimeTypes);
+                continue;
+            }
+            if (isVariant(name))
+                continue;
+
+            Variant identity = new Variant(null, read(resource));
+            Map<String, Variant> encoded = new LinkedHashMap<>();
+            long contentSize = identity.getLength();
+            for (Map.Entry<String, String> encoding : ENCODINGS.entrySet())
+            {
+                Resource variant = directory.addPath(name + encoding.getValue());
+                if (variant.exists() && variant.length() < identity.getLength())
+                {
+                    Variant compressed = new Variant(encoding.getKey(), read(variant));
+                    encoded.put(encoding.getKey(), compressed);
+                    contentSize += compressed.getLength();
+                }
+            }
+
+            String contentPath = path + name;
+            if (size + contentSize > maxSize)
+            {
+                LOG.info("Not caching {} ({} bytes), cache is full", contentPath, contentSize);
+                continue;
+            }
+            size += contentSize;
+            contents.put(contentPath, new Content(mimeTypes.apply(contentPath), identity, encoded));
+        }
+    }
+
+    private static boolean isVariant(String name)
+    {
+        return ENCODINGS.values().stream().anyMatch(name::endsWith);
+    }
+
+    private static ByteBuffer read(Resource resource) throws IOException
+    {
+        File file = resource.getFile();
+        if (file != null)
+        {
+            // The mapping remains valid after the channel is closed
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+            {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asReadOnlyBuffer();
+            }
+        }
+        try (InputStream in = resource.getInputStream())
+        {
+            byte[] bytes = in.readAllBytes();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes).flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * @param path the request path
+     * @return the cached content, or null if not cached
+     */
+    public Content get(String path)
+    {
+        return contents.get(path);
+    }
+
+    /**
+     * @return the number of cached resources
+     */
+    public int getCount()
+    {
+        return contents.size();
+    }
+
+    /**
+     * @return the bytes of content cached
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * A cached resource and its precompressed variants.
+     */
+    public static class Content
+    {
+        private final String contentType;
+        private final Variant identity;
+        private final Map<String, Variant> encoded;
+
+        Content(String contentType, Variant identity, Map<String, Variant> encoded)
+        {
+            this.contentType = contentType;
+            this.identity = identity;
+            this.encoded = encoded;
+        }
+
+        public String getContentType()
+        {
+            return contentType;
+        }
+
+        /**
+         * @return true if the variant selected depends on the Accept-Encoding header
+         */
+        public boolean hasVariants()
+        {
+            return !encoded.isEmpty();
+        }
+
+        /**
+         * Select the variant to send.
+         *
+         * @param acceptEncoding the Accept-Encoding request header, or null
+         * @return the most preferred precompressed variant accepted, otherwise the identity variant
+         */
+        public Variant select(String acceptEncoding)
+        {
+            if (acceptEncoding == null || encoded.isEmpty())
+                return identity;
+
+            QuotedQualityCSV accepted = new QuotedQualityCSV();
+            accepted.addValue(acceptEncoding);
+            for (String encoding : accepted)
+            {
+                if ("*".equals(encoding))
+                    return encoded.values().iterator().next();
+                Variant variant = encoded.get(encoding.toLowerCase(Locale.ROOT));
+                if (variant != null)
+                    return variant;
+            }
+            return identity;
+        }
+    }
+
+    /**
+     * The bytes of one encoding of a resource.
+     */
+    public static class Variant
+    {
+        private final String encoding;
+        private final ByteBuffer buffer;
+        private final String etag;
+
+        Variant(String encoding, ByteBuffer buffer)
+        {
+            this.encoding = encoding;
+            this.buffer = buffer;
+            this.etag = etag(buffer.duplicate());
+        }
+
+        static String etag(ByteBuffer content)
+        {
+            try
+            {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(content);
+                // A strong validator, unique to the bytes of this variant
+                byte[] hash = digest.digest();
+                return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22) + "\"";
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * @return the Content-Encoding of the variant, or null for the identity variant
+         */
+        public String getEncoding()
+        {
+            return encoding;
+        }
+
+        /**
+         * @return a new read-only view of the content, safe to consume
+         */
+        public ByteBuffer getBuffer()
+        {
+            return buffer.duplicate();
+        }
+
+        public int getLength()
+        {
+            return buffer.remaining();
+        }
+
+        public String getETag()
+        {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.io.IOException;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.resource.Resource;
+
+/**
+ * Serves static resources from a {@link StaticContentCache}, loaded when the servlet is initialized.
+ * <p>
+ * Init parameters:
+ * </p>
+ * <dl>
+ * <dt>path</dt><dd>the directory of the webroot to cache, which the servlet must be mapped to (default {@code /static/})</dd>
+ * <dt>maxCacheSize</dt><dd>the maximum bytes to cache (default 32MB), resources that do not fit are served by the "default" servlet</dd>
+ * <dt>cacheControl</dt><dd>the Cache-Control response header (default {@code public, max-age=3600})</dd>
+ * </dl>
+ */
+@SuppressWarnings("serial")
+public class StaticContentServlet extends HttpServlet
+{
+    private StaticContentCache cache;
+    private String cacheControl;
+
+    @Override
+    public void init() throws ServletException
+    {
+        String path = getInitParameter("path", "/static/");
+        long maxCacheSize = Long.parseLong(getInitParameter("maxCacheSize", Long.toString(32 * 1024 * 1024)));
+        cacheControl = getInitParameter("cacheControl", "public, max-age=3600");
+
+        ServletContextHandler context = ServletContextHandler.getServletContextHandler(getServletContext());
+        cache = new StaticContentCache(maxCacheSize);
+        try
+        {
+            Resource directory = context.getBaseResource().addPath(path);
+            if (directory.isDirectory())
+                cache.load(directory, path, getServletContext()::getMimeType);
+        }
+        catch (IOException e)
+        {
+            throw new ServletException("Unable to cache " + path, e);
+        }
+        log("Cached " + cache.getCount() + " resources (" + cache.getSize() + " bytes) from " + path);
+    }
+
+    private String getInitParameter(String name, String defaultValue)
+    {
+        String value = getInitParameter(name);
+        return value == null ? defaultValue : value;
+    }
+
+    public StaticContentCache getCache()
+    {
+        return cache;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+    {
+        String pathInfo = req.getPathInfo();
+        StaticContentCache.Content content = cache.get(req.getServletPath() + (pathInfo == null ? "" : pathInfo));
+        if (content == null)
+        {
+            getServletContext().getNamedDispatcher("default").forward(req, resp);
+            return;
+        }
+
+        StaticContentCache.Variant variant = content.select(req.getHeader(HttpHeader.ACCEPT_ENCODING.asString()));
+        resp.setHeader(HttpHeader.ETAG.asString(), variant.getETag());
+        resp.setHeader(HttpHeader.CACHE_CONTROL.asString(), cacheControl);
+        if (content.hasVariants())
+            resp.setHeader(HttpHeader.VARY.asString(), HttpHeader.ACCEPT_ENCODING.asString());
+
+        if (isNotModified(req.getHeader(HttpHeader.IF_NONE_MATCH.asString()), variant.getETag()))
+        {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (content.getContentType() != null)
+            resp.setContentType(content.getContentType());
+        if (variant.getEncoding() != null)
+            resp.setHeader(HttpHeader.CONTENT_ENCODING.asString(), variant.getEncoding());
+        resp.setContentLength(variant.getLength());
+
+        ServletOutputStream out = resp.getOutputStream();
+        if (out instanceof HttpOutput)
+            ((HttpOutput)out).sendContent(variant.getBuffer());
+        else
+            BufferUtil.writeTo(variant.getBuffer(), out);
+    }
+
+    private static boolean isNotModified(String ifNoneMatch, String etag)
+    {
+        if (ifNoneMatch == null)
+            return false;
+        for (String tag : ifNoneMatch.split(","))
+        {
+            tag = tag.trim();
+            // If-None-Match uses the weak comparison
+            if (tag.startsWith("W/"))
+                tag = tag.substring(2);
+            if ("*".equals(tag) || etag.equals(tag))
+                return true;
+        }
+        return false;
+    }
+}
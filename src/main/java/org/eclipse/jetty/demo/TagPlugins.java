@@ -0,0 +1,307 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Enumeration;
+import javax.servlet.jsp.JspTagException;
+import javax.servlet.jsp.JspWriter;
+import javax.servlet.jsp.PageContext;
+
+import org.apache.jasper.compiler.tagplugin.TagPlugin;
+import org.apache.jasper.compiler.tagplugin.TagPluginContext;
+
+/**
+ * Tag plugins that have Jasper generate inline Java for the hottest tags of the demo, in place
+ * of a tag handler for each use: {@code c:forEach} over a range of integers, {@code c:out} and
+ * {@code acme:date2}.
+ * <p>
+ * Jasper only looks for tag plugins on the classpath of a context, in
+ * {@value #JASPER_TAG_PLUGINS_XML}, which would also apply them to the JSPs precompiled at build
+ * time. Instead they are registered in the {@code tagPlugins.xml} next to this class, which the
+ * classloader from {@link #newClassLoader(ClassLoader)} exposes to Jasper as its own (see
+ * {@link EmbeddedJspStarter#setTagPlugins(boolean)}).
+ * </p>
+ * <p>
+ * A plugin that cannot inline a use of its tag (eg: a {@code c:forEach} over {@code items}, or
+ * with a {@code varStatus}) leaves it to the tag handler. The static methods are called by the
+ * inlined code.
+ * </p>
+ */
+public class TagPlugins
+{
+    // Classpath location Jasper loads tag plugins from
+    public static final String JASPER_TAG_PLUGINS_XML = "META-INF/org.apache.jasper/tagPlugins.xml";
+
+    // Name of the registry of the plugins, next to this class
+    private static final String TAG_PLUGINS_XML = "tagPlugins.xml";
+
+    /**
+     * @param parent the classloader of the context
+     * @return a classloader that also has the tag plugins in its {@value #JASPER_TAG_PLUGINS_XML}
+     */
+    public static ClassLoader newClassLoader(ClassLoader parent)
+    {
+        return new Loader(parent);
+    }
+
+    /**
+     * Validate the range of an inlined {@code c:forEach}, as its tag handler does.
+     *
+     * @param begin the first index
+     * @param step the increment of the index
+     * @throws JspTagException if the range is invalid
+     */
+    public static void checkRange(int begin, int step) throws JspTagException
+    {
+        if (begin < 0)
+            throw new JspTagException("'begin' < 0");
+        if (step < 1)
+            throw new JspTagException("'step' <= 0");
+    }
+
+    /**
+     * Write the value of an inlined {@code c:out}, as its tag handler does.
+     *
+     * @param out the writer of the page
+     * @param value the value to write, which is read if it is a {@link Reader}
+     * @param escapeXml true to escape the XML special characters of the value
+     * @throws IOException if unable to write
+     */
+    public static void out(JspWriter out, Object value, boolean escapeXml) throws IOException
+    {
+        if (value == null)
+            return;
+        if (!(value instanceof Reader))
+        {
+            write(out, value.toString(), escapeXml);
+            return;
+        }
+        char[] buffer = new char[4096];
+        int len;
+        while ((len = ((Reader)value).read(buffer)) >= 0)
+        {
+            write(out, new String(buffer, 0, len), escapeXml);
+        }
+    }
+
+    private static void write(JspWriter out, String text, boolean escapeXml) throws IOException
+    {
+        if (!escapeXml)
+        {
+            out.write(text);
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            String entity = entity(text.charAt(i));
+            if (entity != null)
+            {
+                out.write(text, start, i - start);
+                out.write(entity);
+                start = i + 1;
+            }
+        }
+        out.write(text, start, text.length() - start);
+    }
+
+    // The entities of JSTL's escaping
+    private static String entity(char c)
+    {
+        switch (c)
+        {
+            case '&':
+                return "&amp;";
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '\'':
+                return "&#039;";
+            case '"':
+                return "&#034;";
+            default:
+                return null;
+        }
+    }
+
+    private static String quote(String value)
+    {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * {@code <c:forEach var="i" begin="1" end="10">}, as a {@code for} loop that sets the
+     * {@code var} in page scope for each index, and removes it when done.
+     */
+    public static class ForEach implements TagPlugin
+    {
+        @Override
+        public void doTag(TagPluginContext ctxt)
+        {
+            if (ctxt.isAttributeSpecified("items") || ctxt.isAttributeSpecified("varStatus") || !ctxt.isAttributeSpecified("end") ||
+                (ctxt.isAttributeSpecified("var") && !ctxt.isConstantAttribute("var")))
+            {
+                ctxt.dontUseTagPlugin();
+                return;
+            }
+
+            String begin = ctxt.getTemporaryVariableName();
+            String end = ctxt.getTemporaryVariableName();
+            String step = ctxt.getTemporaryVariableName();
+            String index = ctxt.getTemporaryVariableName();
+            generateInt(ctxt, begin, "begin", "0");
+            generateInt(ctxt, end, "end", null);
+            generateInt(ctxt, step, "step", "1");
+            ctxt.generateJavaSource(TagPlugins.class.getName() + ".checkRange(" + begin + ", " + step + ");");
+
+            String var = ctxt.isAttributeSpecified("var") ? quote(ctxt.getConstantAttribute("var")) : null;
+            if (var != null)
+                ctxt.generateJavaSource("try {");
+            // An index that overflows is below begin, which is never negative
+            ctxt.generateJavaSource("for (int " + index + " = " + begin + "; " + index + " <= " + end + " && " + index + " >= " + begin + "; " + index + " += " + step + ") {");
+            if (var != null)
+                ctxt.generateJavaSource("_jspx_page_context.setAttribute(" + var + ", java.lang.Integer.valueOf(" + index + "));");
+            ctxt.generateBody();
+            ctxt.generateJavaSource("}");
+            if (var != null)
+                ctxt.generateJavaSource("} finally { _jspx_page_context.removeAttribute(" + var + ", javax.servlet.jsp.PageContext.PAGE_SCOPE); }");
+        }
+
+        private static void generateInt(TagPluginContext ctxt, String variable, String attribute, String defaultValue)
+        {
+            ctxt.generateJavaSource("int " + variable + " = ");
+            if (ctxt.isAttributeSpecified(attribute))
+                ctxt.generateAttribute(attribute);
+            else
+                ctxt.generateJavaSource(defaultValue);
+            ctxt.generateJavaSource(";");
+        }
+    }
+
+    /**
+     * {@code <c:out value="${v}" default="d" escapeXml="true">}, written directly to the page, with
+     * the body only written (to a buffer, to be escaped) if there is neither a value nor a default.
+     */
+    public static class Out implements TagPlugin
+    {
+        @Override
+        public void doTag(TagPluginContext ctxt)
+        {
+            String value = ctxt.getTemporaryVariableName();
+            ctxt.generateJavaSource("java.lang.Object " + value + " = ");
+            ctxt.generateAttribute("value");
+            ctxt.generateJavaSource(";");
+            if (ctxt.isAttributeSpecified("default"))
+            {
+                ctxt.generateJavaSource("if (" + value + " == null) " + value + " = ");
+                ctxt.generateAttribute("default");
+                ctxt.generateJavaSource(";");
+            }
+            ctxt.generateJavaSource("if (" + value + " == null) {");
+            ctxt.generateJavaSource("out = _jspx_page_context.pushBody();");
+            ctxt.generateBody();
+            ctxt.generateJavaSource(value + " = ((javax.servlet.jsp.tagext.BodyContent)out).getString().trim();");
+            ctxt.generateJavaSource("out = _jspx_page_context.popBody();");
+            ctxt.generateJavaSource("}");
+
+            ctxt.generateJavaSource(TagPlugins.class.getName() + ".out(out, " + value + ", ");
+            if (ctxt.isAttributeSpecified("escapeXml"))
+                ctxt.generateAttribute("escapeXml");
+            else
+                ctxt.generateJavaSource("true");
+            ctxt.generateJavaSource(");");
+        }
+    }
+
+    /**
+     * Restore a page scope attribute to the value it had before a tag set it, as the
+     * {@code JspContextWrapper} of a tag handler does for its {@code NESTED} variables.
+     *
+     * @param context the context of the page
+     * @param name the name of the attribute
+     * @param value the value to restore, or null to remove the attribute
+     */
+    public static void restore(PageContext context, String name, Object value)
+    {
+        if (value == null)
+            context.removeAttribute(name, PageContext.PAGE_SCOPE);
+        else
+            context.setAttribute(name, value);
+    }
+
+    /**
+     * {@code <acme:date2 format="long">}, as a call to set the variables of the tag followed by its
+     * body, with no handler and no {@code JspFragment} for the body. The variables are
+     * {@code NESTED}, so their previous values are restored after the body.
+     */
+    public static class Date2 implements TagPlugin
+    {
+        private static final String[] VARIABLES = {"day", "month", "year"};
+
+        @Override
+        public void doTag(TagPluginContext ctxt)
+        {
+            String[] saved = new String[VARIABLES.length];
+            for (int i = 0; i < VARIABLES.length; i++)
+            {
+                saved[i] = ctxt.getTemporaryVariableName();
+                ctxt.generateJavaSource("java.lang.Object " + saved[i] + " = _jspx_page_context.getAttribute(" + quote(VARIABLES[i]) + ");");
+            }
+            ctxt.generateJavaSource("try {");
+            ctxt.generateJavaSource("com.acme.Date2Tag.setVariables(_jspx_page_context, ");
+            ctxt.generateAttribute("format");
+            ctxt.generateJavaSource(");");
+            ctxt.generateBody();
+            ctxt.generateJavaSource("} finally {");
+            for (int i = 0; i < VARIABLES.length; i++)
+            {
+                ctxt.generateJavaSource(TagPlugins.class.getName() + ".restore(_jspx_page_context, " + quote(VARIABLES[i]) + ", " + saved[i] + ");");
+            }
+            ctxt.generateJavaSource("}");
+        }
+    }
+
+    private static class Loader extends URLClassLoader
+    {
+        private final URL tagPlugins = TagPlugins.class.getResource(TAG_PLUGINS_XML);
+
+        private Loader(ClassLoader parent)
+        {
+            super(new URL[0], parent);
+        }
+
+        @Override
+        public URL findResource(String name)
+        {
+            return JASPER_TAG_PLUGINS_XML.equals(name) ? tagPlugins : super.findResource(name);
+        }
+
+        @Override
+        public Enumeration<URL> findResources(String name) throws IOException
+        {
+            return JASPER_TAG_PLUGINS_XML.equals(name) ? Collections.enumeration(Collections.singleton(tagPlugins)) : super.findResources(name);
+        }
+    }
+}
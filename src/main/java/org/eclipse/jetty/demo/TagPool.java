@@ -0,0 +1,193 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.servlet.ServletConfig;
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.BodyTag;
+import javax.servlet.jsp.tagext.Tag;
+
+import org.apache.jasper.Constants;
+import org.apache.jasper.runtime.InstanceManagerFactory;
+import org.apache.jasper.runtime.JspRuntimeLibrary;
+import org.apache.jasper.runtime.TagHandlerPool;
+
+/**
+ * A bounded pool of the handlers of a classic tag, used in place of Jasper's (see {@link TagPools}).
+ * <p>
+ * Jasper's pool is a stack guarded by the pool's monitor, so every request rendering the same
+ * tag of the same page contends on it. This pool claims its slots with a compare and set, with
+ * each thread starting in its own stripe of slots as in the {@link PageContextPool}, so no thread
+ * ever blocks on it. Its size is that of the handler class in the {@link TagPools} of the context.
+ * </p>
+ * <p>
+ * A handler returned to the pool is reset to no parent and no body content, so that the pool
+ * does not keep the objects of the last request that used it. A handler that cannot be reset is
+ * released rather than pooled.
+ * </p>
+ */
+public class TagPool extends TagHandlerPool
+{
+    // Used once the handler class is known, on the first checkout
+    private volatile AtomicReferenceArray<Tag> slots;
+    private int stripeSize;
+    private TagPools pools;
+    private TagPools.Stats stats;
+
+    /**
+     * Created by Jasper for each use of a tag, when the {@value #OPTION_TAGPOOL} option is this class.
+     */
+    public TagPool()
+    {
+    }
+
+    @Override
+    protected void init(ServletConfig config)
+    {
+        instanceManager = InstanceManagerFactory.getInstanceManager(config);
+        pools = (TagPools)config.getServletContext().getAttribute(TagPools.ATTRIBUTE);
+        if (pools == null)
+            pools = new TagPools(Map.of());
+    }
+
+    @Override
+    public Tag get(Class<? extends Tag> handlerClass) throws JspException
+    {
+        AtomicReferenceArray<Tag> slots = getSlots(handlerClass);
+        int capacity = slots.length();
+        int start = start(capacity);
+        for (int i = 0; i < capacity; i++)
+        {
+            int index = (start + i) % capacity;
+            Tag handler = slots.get(index);
+            if (handler != null && slots.compareAndSet(index, handler, null))
+            {
+                stats.hits.increment();
+                stats.size.decrement();
+                return handler;
+            }
+        }
+        stats.misses.increment();
+
+        try
+        {
+            if (Constants.USE_INSTANCE_MANAGER_FOR_TAGS)
+                return (Tag)instanceManager.newInstance(handlerClass.getName(), handlerClass.getClassLoader());
+            Tag handler = handlerClass.getConstructor().newInstance();
+            instanceManager.newInstance(handler);
+            return handler;
+        }
+        catch (Exception e)
+        {
+            throw new JspException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void reuse(Tag handler)
+    {
+        AtomicReferenceArray<Tag> slots = this.slots;
+        if (reset(handler))
+        {
+            int capacity = slots.length();
+            int start = start(capacity);
+            for (int i = 0; i < capacity; i++)
+            {
+                int index = (start + i) % capacity;
+                if (slots.get(index) == null && slots.compareAndSet(index, null, handler))
+                {
+                    stats.size.increment();
+                    return;
+                }
+            }
+        }
+        stats.discards.increment();
+        JspRuntimeLibrary.releaseTag(handler, instanceManager, false);
+    }
+
+    @Override
+    public void release()
+    {
+        AtomicReferenceArray<Tag> slots = this.slots;
+        if (slots == null)
+            return;
+        for (int i = 0; i < slots.length(); i++)
+        {
+            Tag handler = slots.getAndSet(i, null);
+            if (handler != null)
+            {
+                stats.size.decrement();
+                JspRuntimeLibrary.releaseTag(handler, instanceManager, false);
+            }
+        }
+    }
+
+    private AtomicReferenceArray<Tag> getSlots(Class<? extends Tag> handlerClass)
+    {
+        AtomicReferenceArray<Tag> slots = this.slots;
+        if (slots == null)
+        {
+            synchronized (this)
+            {
+                slots = this.slots;
+                if (slots == null)
+                {
+                    // A pool is only ever used for the handlers of one class, those of one use of a tag
+                    stats = pools.getStats(handlerClass);
+                    int capacity = pools.getMaxSize(handlerClass);
+                    stripeSize = Math.max(1, capacity / Math.max(1, Runtime.getRuntime().availableProcessors()));
+                    slots = new AtomicReferenceArray<>(capacity);
+                    this.slots = slots;
+                }
+            }
+        }
+        return slots;
+    }
+
+    private int start(int capacity)
+    {
+        if (capacity == 0)
+            return 0;
+        // Spread the thread ids, as sequential ones would otherwise share a stripe
+        long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        int stripe = (int)((id >>> 32) % ((capacity + stripeSize - 1) / stripeSize));
+        return stripe * stripeSize;
+    }
+
+    /**
+     * @param handler a handler done with
+     * @return true if it no longer refers to the request it was used for
+     */
+    private static boolean reset(Tag handler)
+    {
+        try
+        {
+            handler.setParent(null);
+            if (handler instanceof BodyTag)
+                ((BodyTag)handler).setBodyContent(null);
+            return true;
+        }
+        catch (RuntimeException e)
+        {
+            return false;
+        }
+    }
+}
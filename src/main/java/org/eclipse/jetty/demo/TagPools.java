@@ -0,0 +1,148 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.jsp.tagext.Tag;
+
+import org.apache.jasper.Constants;
+
+/**
+ * The sizes and statistics of the {@link TagPool}s of a context, by tag handler class.
+ * <p>
+ * Jasper creates a tag handler pool for each distinct use of a classic tag in each page (eg: each
+ * set of attributes an {@code acme:date} is used with), so the size applies to every pool of
+ * the tag class, and the statistics are those of all of them.
+ * </p>
+ */
+public class TagPools
+{
+    // Servlet context attribute for the tag pools of a context
+    public static final String ATTRIBUTE = TagPools.class.getName();
+
+    // Key of the size of the pools of the tag classes not otherwise listed
+    public static final String DEFAULT = "*";
+
+    private final Map<String, Integer> maxSizes;
+    private final int defaultMaxSize;
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxSizes the maximum handlers kept by each pool of a tag class, by class name, or by {@link #DEFAULT}
+     * for all other classes (by default, Jasper's 5); 0 for no pooling
+     */
+    public TagPools(Map<String, Integer> maxSizes)
+    {
+        maxSizes.forEach((className, maxSize) ->
+        {
+            if (maxSize < 0)
+                throw new IllegalArgumentException("Invalid tag pool size " + maxSize + " for " + className);
+        });
+        this.maxSizes = new TreeMap<>(maxSizes);
+        this.defaultMaxSize = maxSizes.getOrDefault(DEFAULT, Constants.MAX_POOL_SIZE);
+    }
+
+    /**
+     * @param handlerClass a tag handler class
+     * @return the maximum handlers kept by each of its pools
+     */
+    public int getMaxSize(Class<? extends Tag> handlerClass)
+    {
+        return maxSizes.getOrDefault(handlerClass.getName(), defaultMaxSize);
+    }
+
+    /**
+     * @return the maximum pool sizes, by class name or {@link #DEFAULT}
+     */
+    public Map<String, Integer> getMaxSizes()
+    {
+        return Collections.unmodifiableMap(maxSizes);
+    }
+
+    /**
+     * @param handlerClass a tag handler class
+     * @return the statistics of its pools
+     */
+    public Stats getStats(Class<? extends Tag> handlerClass)
+    {
+        return stats.computeIfAbsent(handlerClass.getName(), className -> new Stats());
+    }
+
+    /**
+     * @return the statistics of the pools of each tag class used so far, by class name
+     */
+    public Map<String, Stats> getStats()
+    {
+        return new TreeMap<>(stats);
+    }
+
+    /**
+     * The statistics of the pools of a tag class.
+     */
+    public static class Stats
+    {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder discards = new LongAdder();
+        final LongAdder size = new LongAdder();
+
+        /**
+         * @return the handlers checked out from a pool
+         */
+        public long getHits()
+        {
+            return hits.sum();
+        }
+
+        /**
+         * @return the handlers created as their pool was empty
+         */
+        public long getMisses()
+        {
+            return misses.sum();
+        }
+
+        /**
+         * @return the handlers released as their pool was full (or could not be reset)
+         */
+        public long getDiscards()
+        {
+            return discards.sum();
+        }
+
+        /**
+         * @return the handlers currently pooled
+         */
+        public long getSize()
+        {
+            return size.sum();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("hits=%d misses=%d discards=%d size=%d", getHits(), getMisses(), getDiscards(), getSize());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.util.concurrent.Executor;
+
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * The threads the server executes its work on.
+ * <p>
+ * The virtual thread modes require a JVM with virtual threads (Java 21, or 19+ with
+ * {@code --enable-preview}). Blocking request handling (slow JSPs, forwards, session
+ * access) then no longer ties up one of a bounded number of platform threads.
+ * </p>
+ */
+public enum ThreadMode
+{
+    /**
+     * Everything runs on a bounded {@link QueuedThreadPool} of platform threads (the default).
+     */
+    PLATFORM,
+
+    /**
+     * Everything, including the selectors and acceptors, runs on its own virtual thread.
+     *
+     * @see VirtualThreadPool
+     */
+    VIRTUAL,
+
+    /**
+     * Selectors, acceptors and non-blocking work run on a {@link QueuedThreadPool}
+     * of platform threads, while requests are handled on virtual threads.
+     */
+    HYBRID;
+
+    /**
+     * @return true if this JVM supports the mode
+     */
+    public boolean isSupported()
+    {
+        return this == PLATFORM || VirtualThreads.areSupported();
+    }
+
+    /**
+     * @return a new thread pool for the server
+     * @throws IllegalStateException if this JVM does not support the mode
+     */
+    public ThreadPool newThreadPool()
+    {
+        switch (this)
+        {
+            case VIRTUAL:
+                return new VirtualThreadPool(getVirtualThreadsExecutor());
+            case HYBRID:
+                QueuedThreadPool threadPool = new QueuedThreadPool();
+                threadPool.setVirtualThreadsExecutor(getVirtualThreadsExecutor());
+                return threadPool;
+            default:
+                return new QueuedThreadPool();
+        }
+    }
+
+    private Executor getVirtualThreadsExecutor()
+    {
+        if (!isSupported())
+            throw new IllegalStateException("Virtual threads are not supported by Java " + Runtime.version() + ", unable to use thread mode " + this);
+        return VirtualThreads.getDefaultVirtualThreadsExecutor();
+    }
+}
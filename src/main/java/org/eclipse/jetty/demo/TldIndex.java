@@ -0,0 +1,223 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.NodeList;
+
+/**
+ * An index of the taglibs available to the JSPs, generated at build time.
+ * <p>
+ * The index maps the location of every TLD to its URI. Locations starting with
+ * {@code /WEB-INF/} are in the webroot, and are found by Jasper without any jar
+ * scanning. All others are classpath resources (eg: {@code META-INF/c.tld})
+ * which are resolved against the context classloader and handed to the
+ * {@code JettyJasperInitializer} as the pre-scanned TLDs, so that it does not
+ * open and scan every jar on the classpath at startup.
+ * </p>
+ * <p>
+ * Generated by the {@link #main(String[])} method during the build (see pom.xml).
+ * </p>
+ */
+public class TldIndex
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TldIndex.class);
+
+    // Classpath location of the index
+    public static final String INDEX = "META-INF/tld-index.properties";
+
+    // Context attribute the JettyJasperInitializer reads pre-scanned TLD URLs from
+    public static final String TLDS_ATTRIBUTE = "org.eclipse.jetty.tlds";
+
+    private final Map<String, String> urisByLocation;
+
+    public TldIndex(Map<String, String> urisByLocation)
+    {
+        this.urisByLocation = new TreeMap<>(urisByLocation);
+    }
+
+    /**
+     * Load the index from the classpath.
+     *
+     * @param classLoader the classloader to look up the {@link #INDEX} with
+     * @return the index, or null if the build did not generate one
+     * @throws IOException if the index exists but cannot be read
+     */
+    public static TldIndex load(ClassLoader classLoader) throws IOException
+    {
+        URL url = classLoader.getResource(INDEX);
+        if (url == null)
+            return null;
+
+        Properties properties = new Properties();
+        try (InputStream in = url.openStream())
+        {
+            properties.load(in);
+        }
+        Map<String, String> urisByLocation = new TreeMap<>();
+        properties.forEach((location, uri) -> urisByLocation.put((String)location, (String)uri));
+        return new TldIndex(urisByLocation);
+    }
+
+    /**
+     * @return the TLD locations mapped to their taglib URIs
+     */
+    public Map<String, String> getUrisByLocation()
+    {
+        return Collections.unmodifiableMap(urisByLocation);
+    }
+
+    /**
+     * Resolve the TLDs outside of the webroot against a classloader.
+     *
+     * @param classLoader the classloader the JSPs are compiled with
+     * @return the TLD URLs, or null if any indexed TLD is no longer on the classpath
+     * @throws IOException if unable to look up a TLD
+     */
+    public Set<URL> getTldUrls(ClassLoader classLoader) throws IOException
+    {
+        Set<URL> urls = new LinkedHashSet<>();
+        for (String location : urisByLocation.keySet())
+        {
+            if (location.startsWith("/"))
+                continue;
+            List<URL> found = Collections.list(classLoader.getResources(location));
+            if (found.isEmpty())
+            {
+                LOG.warn("Indexed TLD {} not found on the classpath", location);
+                return null;
+            }
+            urls.addAll(found);
+        }
+        return urls;
+    }
+
+    /**
+     * Write the index of every TLD in the webroot and on the classpath.
+     *
+     * @param args the index file to write, and the webroot directory
+     * @throws Exception if unable to write the index
+     */
+    public static void main(String[] args) throws Exception
+    {
+        Path indexFile = Path.of(args[0]);
+        Path webRoot = Path.of(args[1]);
+
+        Map<String, String> urisByLocation = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(webRoot.resolve("WEB-INF")))
+        {
+            for (Path tld : (Iterable<Path>)paths.filter(p -> p.toString().endsWith(".tld"))::iterator)
+            {
+                String uri = readUri(Files.newInputStream(tld));
+                if (uri != null)
+                    urisByLocation.put("/" + webRoot.relativize(tld).toString().replace(File.separatorChar, '/'), uri);
+            }
+        }
+
+        for (File entry : getClassPath())
+        {
+            if (!entry.isFile() || !entry.getName().endsWith(".jar"))
+                continue;
+            try (JarFile jar = new JarFile(entry))
+            {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements())
+                {
+                    JarEntry jarEntry = entries.nextElement();
+                    if (jarEntry.getName().startsWith("META-INF/") && jarEntry.getName().endsWith(".tld"))
+                    {
+                        String uri = readUri(jar.getInputStream(jarEntry));
+                        if (uri != null)
+                            urisByLocation.put(jarEntry.getName(), uri);
+                    }
+                }
+            }
+        }
+
+        // Written sorted and without a timestamp, so that the build is reproducible
+        Files.createDirectories(indexFile.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(indexFile, StandardCharsets.ISO_8859_1))
+        {
+            writer.write("# TLD locations and their URIs");
+            writer.newLine();
+            for (Map.Entry<String, String> entry : urisByLocation.entrySet())
+            {
+                writer.write(entry.getKey() + "=" + entry.getValue());
+                writer.newLine();
+            }
+        }
+        System.out.printf("Indexed %d TLDs in %s%n", urisByLocation.size(), indexFile);
+    }
+
+    private static List<File> getClassPath() throws Exception
+    {
+        List<File> classPath = new ArrayList<>();
+        // When run from the exec-maven-plugin, the project classpath is only known to the context classloader
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader instanceof URLClassLoader)
+        {
+            for (URL url : ((URLClassLoader)loader).getURLs())
+            {
+                if ("file".equals(url.getProtocol()))
+                    classPath.add(new File(url.toURI()));
+            }
+        }
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator))
+        {
+            classPath.add(new File(entry));
+        }
+        return classPath;
+    }
+
+    private static String readUri(InputStream in) throws Exception
+    {
+        try (InputStream tld = in)
+        {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            // Do not fetch the DTDs referenced by older TLDs
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            NodeList uris = factory.newDocumentBuilder().parse(tld).getElementsByTagName("uri");
+            return uris.getLength() == 0 ? null : uris.item(0).getTextContent().trim();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+
+/**
+ * Starts Main, and requests every JSP of every context once.
+ * <p>
+ * Run by the {@code cds} profile of the build (see pom.xml), first to record the classes loaded
+ * to serve the JSPs in an AppCDS archive, then again with that archive to report the time from
+ * the start of the JVM to the first successful response. Main is configured by the usual system
+ * properties (eg: {@code -Djsp.warmUp=true}) and listens on an ephemeral port.
+ * </p>
+ */
+public class TrainingRun
+{
+    public static void main(String[] args) throws Exception
+    {
+        Main main = Main.fromSystemProperties(0);
+        main.start();
+        try
+        {
+            int port = ((ServerConnector)main.getServer().getConnectors()[0]).getLocalPort();
+
+            List<String> uris = new ArrayList<>();
+            uris.add("/");
+            for (Handler handler : main.getServer().getChildHandlersByClass(ServletContextHandler.class))
+            {
+                ServletContextHandler context = (ServletContextHandler)handler;
+                String contextPath = context.getContextPath().equals("/") ? "" : context.getContextPath();
+                for (String jspPath : JspWarmUp.getJspPaths(context))
+                {
+                    uris.add(contextPath + jspPath);
+                }
+            }
+
+            long firstResponse = -1;
+            int failures = 0;
+            for (String uri : uris)
+            {
+                int status = get(new URL("http", "localhost", port, uri));
+                if (status == 200)
+                {
+                    if (firstResponse < 0)
+                        firstResponse = ManagementFactory.getRuntimeMXBean().getUptime();
+                }
+                else
+                {
+                    failures++;
+                    System.out.printf("%s responded %d%n", uri, status);
+                }
+            }
+            System.out.printf("Requested %d pages (%d not successful)%n", uris.size(), failures);
+            System.out.printf("First successful response %dms after the JVM started%n", firstResponse);
+        }
+        finally
+        {
+            main.stop();
+        }
+    }
+
+    private static int get(URL url) throws Exception
+    {
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        int status = connection.getResponseCode();
+        // Read the whole response, so the connection is reused
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream())
+        {
+            if (in != null)
+                in.readAllBytes();
+        }
+        return status;
+    }
+}
@@ -0,0 +1,125 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * A {@link ThreadPool} that runs every task on a new virtual thread.
+ * <p>
+ * There is no bound on the number of threads, so the pool is never low on threads,
+ * and the server relies on the connectors' limits (eg: idle timeouts) instead.
+ * </p>
+ */
+@ManagedObject("A thread pool of virtual threads")
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool, VirtualThreads.Configurable
+{
+    private final Executor executor;
+    private final AtomicInteger threads = new AtomicInteger();
+    private final Object joinLock = new Object();
+
+    /**
+     * @param executor an executor that starts a new virtual thread per task
+     * @see VirtualThreads#getDefaultVirtualThreadsExecutor()
+     */
+    public VirtualThreadPool(Executor executor)
+    {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task)
+    {
+        threads.incrementAndGet();
+        try
+        {
+            executor.execute(() ->
+            {
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    threads.decrementAndGet();
+                }
+            });
+        }
+        catch (RuntimeException e)
+        {
+            threads.decrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public Executor getVirtualThreadsExecutor()
+    {
+        return executor;
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        synchronized (joinLock)
+        {
+            joinLock.notifyAll();
+        }
+    }
+
+    @Override
+    public void join() throws InterruptedException
+    {
+        synchronized (joinLock)
+        {
+            while (isRunning())
+            {
+                joinLock.wait();
+            }
+        }
+    }
+
+    @Override
+    @ManagedAttribute("number of running threads")
+    public int getThreads()
+    {
+        return threads.get();
+    }
+
+    @Override
+    @ManagedAttribute("number of idle threads")
+    public int getIdleThreads()
+    {
+        return 0;
+    }
+
+    @Override
+    @ManagedAttribute("whether this thread pool is low on threads")
+    public boolean isLowOnThreads()
+    {
+        return false;
+    }
+}
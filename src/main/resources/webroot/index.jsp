@@ -14,10 +14,15 @@
     <li><a href="test/tag.jsp">JSP 1.2 BodyTag demo</a></li>
     <li><a href="test/tag2.jsp">JSP 2.0 SimpleTag demo</a></li>
     <li><a href="test/tagfile.jsp">JSP 2.0 Tag File demo</a></li>
+    <li><a href="test/cache.jsp">JSP 2.0 Tag File demo, cached</a></li>
     <li><a href="test/expr.jsp?A=1">JSP 2.0 Tag Expression</a></li>
     <li><a href="test/jstl.jsp">JSTL Expression</a></li>
+    <li><a href="test/large.jsp">Large (1MB) page</a></li>
+    <li><a href="test/assets.jsp">Page with many assets</a></li>
+    <li><a href="test/loop.jsp?n=1000">JSTL loop</a></li>
     <li><a href="test/foo/">Mapping to &lt;jsp-file&gt;</a></li>
     <li><a href="date/">Servlet Forwarding to JSP demo</a></li>
+    <li><a href="date/async/?delay=500">Async Servlet Dispatching to JSP demo</a></li>
   </ul>
 </body>
 </html>
\ No newline at end of file
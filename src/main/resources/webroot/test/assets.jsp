@@ -0,0 +1,15 @@
+<%@ page session="false" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<html>
+<head>
+  <title>Page with many assets</title>
+  <link rel="stylesheet" href="../static/main.css">
+</head>
+<body>
+  <h1>Page with many assets</h1>
+  <p>Each icon is a separate request, as a page with many small images would make.</p>
+  <c:forEach var="i" begin="1" end="32">
+    <img src="../static/icon.svg?${i}" width="32" height="32" alt="Icon ${i}">
+  </c:forEach>
+</body>
+</html>
@@ -0,0 +1,40 @@
+<%@ taglib prefix="acme" tagdir="/WEB-INF/tags" %>
+<%@ taglib prefix="acme2" uri="http://www.acme.com/taglib2" %>
+<html>
+  <head>
+  </head>
+  <body>
+    <h1>JSP 2.0 Tag File Example, Cached</h1>
+    <hr>
+    <p>The panels are rendered once a minute, and otherwise served from the fragment cache
+    <hr>
+    <acme2:cache key="panels" ttl="60">
+    <table border="0">
+      <tr valign="top">
+        <td>
+          <acme:panel color="#ff8080" bgcolor="#ffc0c0" title="Panel 1">
+            First panel.<br/>
+          </acme:panel>
+        </td>
+        <td>
+          <acme:panel color="#80ff80" bgcolor="#c0ffc0" title="Panel 2">
+            Second panel.<br/>
+            Second panel.<br/>
+            Second panel.<br/>
+            Second panel.<br/>
+          </acme:panel>
+        </td>
+        <td>
+          <acme:panel color="#8080ff" bgcolor="#c0c0ff" title="Panel 3">
+            Third panel.<br/>
+            <acme:panel color="#ff80ff" bgcolor="#ffc0ff" title="Inner">
+              A panel in a panel.
+            </acme:panel>
+            Third panel.<br/>
+          </acme:panel>
+        </td>
+      </tr>
+    </table>
+    </acme2:cache>
+  </body>
+</html>
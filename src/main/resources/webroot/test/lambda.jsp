@@ -3,6 +3,7 @@
 <%@ page import="java.util.Objects" %>
 <%@ page import="java.io.IOException" %>
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core"%>
+<%@ taglib prefix="acme2" uri="http://www.acme.com/taglib2" %>
 <html>
 <head>
     <title>JSP with Lambda</title>
@@ -11,6 +12,7 @@
 
 <h1>JSP with Lambda</h1>
 
+<acme2:cache key="system-properties">
 <dl>
 <%
     // JspWriter needs to be final to satisfy lambda requirements.
@@ -30,6 +32,7 @@
             }
         }); %>
 </dl>
+</acme2:cache>
 </body>
 </html>
 
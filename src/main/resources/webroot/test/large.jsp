@@ -0,0 +1,17 @@
+<%@ page session="false" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib uri="http://www.acme.com/taglib" prefix="acme" %>
+<html>
+<head>
+  <title>Large Page</title>
+  <link rel="stylesheet" href="../static/main.css">
+</head>
+<body>
+<h1>Large Page</h1>
+<table>
+<c:forEach var="i" begin="1" end="${empty param.rows ? 8500 : param.rows}">
+  <tr><td>${i}</td><td><acme:date tz="GMT">EEE, dd MMM yyyy HH:mm:ss</acme:date></td><td>Lorem ipsum dolor sit amet, consectetur adipiscing elit</td></tr>
+</c:forEach>
+</table>
+</body>
+</html>
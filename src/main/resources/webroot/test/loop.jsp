@@ -0,0 +1,14 @@
+<%@ page session="false" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<html>
+<head>
+  <title>Loop</title>
+  <link rel="stylesheet" href="../static/main.css">
+</head>
+<body>
+<h1><c:out value="${param.title}" default="Indexes & more" /></h1>
+<p>
+<c:forEach var="i" begin="1" end="${empty param.n ? 100 : param.n}"><c:out value="${i}" /> </c:forEach>
+</p>
+</body>
+</html>
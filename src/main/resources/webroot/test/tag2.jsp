@@ -15,5 +15,7 @@
 
 <br/>
 
+Outside of the tags, the day is "${day}"
+
 </body>
 </html>
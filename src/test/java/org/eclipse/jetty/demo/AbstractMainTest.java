@@ -21,7 +21,9 @@ package org.eclipse.jetty.demo;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
+import org.eclipse.jetty.server.ServerConnector;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 
@@ -32,10 +34,50 @@ public abstract class AbstractMainTest
     @BeforeEach
     public void aJettyServer() throws Exception
     {
-        main = new Main(8080);
+        // An ephemeral port, so that test classes (and builds) can run in parallel
+        main = newMain(0);
         main.start();
     }
 
+    protected Main newMain(int port)
+    {
+        return new Main(port);
+    }
+
+    protected Main getMain()
+    {
+        return main;
+    }
+
+    /**
+     * @param main a started Main
+     * @return the port it listens on
+     */
+    protected static int getPort(Main main)
+    {
+        return ((ServerConnector)main.getServer().getConnectors()[0]).getLocalPort();
+    }
+
+    protected int getPort()
+    {
+        return getPort(main);
+    }
+
+    /**
+     * @param main a started Main
+     * @param path the path, and query if any, of a resource (eg: {@code /test/jstl.jsp})
+     * @return the URI of the resource
+     */
+    protected static String uri(Main main, String path)
+    {
+        return "http://localhost:" + getPort(main) + path;
+    }
+
+    protected String uri(String path)
+    {
+        return uri(main, path);
+    }
+
     @AfterEach
     public void stopServer() throws Exception
     {
@@ -46,10 +88,9 @@ public abstract class AbstractMainTest
     {
         URL url = new URL(uri);
         HttpURLConnection connection = (HttpURLConnection)url.openConnection();
-        InputStream inputStream = connection.getInputStream();
-        byte[] response = new byte[inputStream.available()];
-        inputStream.read(response);
-
-        return new String(response);
+        try (InputStream inputStream = connection.getInputStream())
+        {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
     }
 }
@@ -0,0 +1,136 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.acme.AsyncDateServlet;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+public class AsyncDateTest extends AbstractMainTest
+{
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private CompletableFuture<HttpResponse<String>> get(String path)
+    {
+        return client.sendAsync(HttpRequest.newBuilder(URI.create(uri(path))).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void addAsyncDateServlet(String path, String... initParameters)
+    {
+        ServletHolder holder = new ServletHolder(AsyncDateServlet.class);
+        holder.setAsyncSupported(true);
+        for (int i = 0; i < initParameters.length; i += 2)
+        {
+            holder.setInitParameter(initParameters[i], initParameters[i + 1]);
+        }
+        getMain().getServer().getChildHandlerByClass(ServletContextHandler.class).addServlet(holder, path);
+    }
+
+    @Test
+    public void canDispatchToJsp() throws Exception
+    {
+        HttpResponse<String> response = get("/date/async/?delay=10").get();
+        assertThat(response.statusCode(), is(200));
+        assertThat(response.body(), containsString("in the year"));
+    }
+
+    @Test
+    public void canReleaseThreadsWhileWaiting() throws Exception
+    {
+        QueuedThreadPool threadPool = (QueuedThreadPool)getMain().getServer().getThreadPool();
+        int idleBusyThreads = threadPool.getBusyThreads();
+
+        // More slow requests than the date threads, so most of them wait in the queue
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 64; i++)
+        {
+            responses.add(get("/date/async/?delay=500"));
+        }
+
+        int maxBusyThreads = 0;
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (System.nanoTime() < end)
+        {
+            maxBusyThreads = Math.max(maxBusyThreads, threadPool.getBusyThreads());
+            Thread.sleep(10);
+        }
+
+        // Other requests are still served promptly
+        long start = System.nanoTime();
+        assertThat(get("/test/tag.jsp").get().statusCode(), is(200));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(500L));
+
+        for (CompletableFuture<HttpResponse<String>> response : responses)
+        {
+            assertThat(response.get().statusCode(), is(200));
+            assertThat(response.get().body(), containsString("in the year"));
+        }
+        // A blocking servlet would have held a thread for each of the 64 requests, while
+        // here threads are only busy accepting them, and rendering the JSP once dispatched
+        assertThat(maxBusyThreads, lessThan(idleBusyThreads + responses.size() / 2));
+    }
+
+    @Test
+    public void canTimeOut() throws Exception
+    {
+        addAsyncDateServlet("/date/async/short/", "timeout", "100");
+        assertThat(get("/date/async/short/?delay=1000").get().statusCode(), is(504));
+    }
+
+    @Test
+    public void canRejectWhenQueueFull() throws Exception
+    {
+        addAsyncDateServlet("/date/async/small/", "threads", "1", "queue", "1");
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+        {
+            responses.add(get("/date/async/small/?delay=300"));
+        }
+        List<Integer> statuses = new ArrayList<>();
+        for (CompletableFuture<HttpResponse<String>> response : responses)
+        {
+            statuses.add(response.get().statusCode());
+        }
+        assertThat(statuses, hasItem(200));
+        assertThat(statuses, hasItem(503));
+    }
+
+    @Test
+    public void canRejectInvalidDelay() throws Exception
+    {
+        assertThat(get("/date/async/?delay=soon").get().statusCode(), is(400));
+    }
+}
@@ -0,0 +1,126 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.servlet.jsp.JspFactory;
+import javax.servlet.jsp.PageContext;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class BufferPoolTest extends AbstractMainTest
+{
+    private static final int CAPACITY = 4;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port);
+        main.setJspBufferPool(CAPACITY);
+        return main;
+    }
+
+    private PageContextPool getPool()
+    {
+        ServletContextHandler context = getMain().getServer().getChildHandlerByClass(ServletContextHandler.class);
+        return (PageContextPool)context.getServletContext().getAttribute(PageContextPool.ATTRIBUTE);
+    }
+
+    private CompletableFuture<HttpResponse<String>> get(String path)
+    {
+        return client.sendAsync(HttpRequest.newBuilder(URI.create(uri(path))).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void canReusePageContexts() throws Exception
+    {
+        assertThat(JspFactory.getDefaultFactory(), instanceOf(EmbeddedJspFactory.class));
+
+        for (int i = 0; i < 5; i++)
+        {
+            HttpResponse<String> response = get("/test/tagfile.jsp").get();
+            assertThat(response.statusCode(), is(200));
+            assertThat(response.body(), containsString("A panel in a panel."));
+        }
+
+        // The page context of each request is released before the next one
+        PageContextPool pool = getPool();
+        assertThat(pool.getMisses(), is(1L));
+        assertThat(pool.getHits(), is(4L));
+        assertThat(pool.getSize(), is(1));
+    }
+
+    @Test
+    public void canRenderConcurrently() throws Exception
+    {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 32; i++)
+        {
+            responses.add(get(i % 2 == 0 ? "/test/tagfile.jsp" : "/test/tag.jsp"));
+        }
+        for (int i = 0; i < responses.size(); i++)
+        {
+            HttpResponse<String> response = responses.get(i).get();
+            assertThat(response.statusCode(), is(200));
+            assertThat(response.body(), containsString(i % 2 == 0 ? "A panel in a panel." : " +0000"));
+        }
+
+        PageContextPool pool = getPool();
+        assertThat(pool.getHits() + pool.getMisses(), is(32L));
+        assertThat(pool.getSize(), lessThanOrEqualTo(CAPACITY));
+    }
+
+    @Test
+    public void canBoundPool() throws Exception
+    {
+        assertThat(get("/test/tagfile.jsp").get().statusCode(), is(200));
+        PageContext pageContext = getPool().lease();
+        assertThat(pageContext, notNullValue());
+
+        PageContextPool pool = new PageContextPool(2, 2);
+        assertThat(pool.offer(pageContext), is(true));
+        assertThat(pool.offer(pageContext), is(true));
+        assertThat(pool.offer(pageContext), is(false));
+        assertThat(pool.getDiscards(), is(1L));
+        assertThat(pool.getSize(), is(2));
+
+        assertThat(pool.lease(), is(pageContext));
+        assertThat(pool.lease(), is(pageContext));
+        assertThat(pool.lease(), nullValue());
+        assertThat(pool.getHits(), is(2L));
+        assertThat(pool.getMisses(), is(1L));
+    }
+}
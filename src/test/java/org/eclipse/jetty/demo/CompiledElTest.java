@@ -0,0 +1,103 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.util.regex.Pattern;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
+
+public class CompiledElTest extends AbstractMainTest
+{
+    private static final Pattern ANYTHING = Pattern.compile("(?s).*");
+
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port);
+        main.setJspCompiledEl(true);
+        return main;
+    }
+
+    private CompiledExpressionFactory getFactory()
+    {
+        ServletContextHandler context = getMain().getServer().getChildHandlerByClass(ServletContextHandler.class);
+        return (CompiledExpressionFactory)context.getServletContext().getAttribute(CompiledExpressionFactory.ATTRIBUTE);
+    }
+
+    @Test
+    public void canEvaluateRequestExpressions() throws Exception
+    {
+        String response = resourceWithUrl(uri("/test/expr.jsp?A=21"));
+        assertThat(response, containsString("<td>21&nbsp;</td>"));
+        assertThat(response, containsString("<td>localhost:" + getPort() + "</td>"));
+        assertThat(response, containsString("<td>2</td>"));
+        assertThat(response, containsString("<td>42&nbsp;</td>"));
+
+        // A missing parameter is coerced the same way as by Jasper
+        response = resourceWithUrl(uri("/test/expr.jsp"));
+        assertThat(response, containsString("<td>&nbsp;</td>"));
+        assertThat(response, containsString("<td>0&nbsp;</td>"));
+
+        assertThat(getFactory().getFastEvaluations(), greaterThan(0L));
+    }
+
+    @Test
+    public void canEvaluateScopedAttributes() throws Exception
+    {
+        String response = resourceWithUrl(uri("/test/tag2.jsp"));
+        assertThat(response, matchesPattern(ANYTHING + "On \\w{3} the \\d{1,2} of \\w{3} in the year \\d{4}" + ANYTHING));
+        assertThat(resourceWithUrl(uri("/test/tagfile.jsp")), containsString("panel"));
+    }
+
+    @Test
+    public void canEvaluateLoopVariables() throws Exception
+    {
+        String response = resourceWithUrl(uri("/test/jstl.jsp"));
+        for (int i = 1; i <= 10; i++)
+        {
+            assertThat(response, containsString(i + "\n      <br />"));
+        }
+    }
+
+    @Test
+    public void canFallBackToResolvers() throws Exception
+    {
+        // Operators other than arithmetic are left to Jasper
+        String response = resourceWithUrl(uri("/test/large.jsp?rows=3"));
+        assertThat(response, containsString("<tr><td>3</td>"));
+        assertThat(response.contains("<tr><td>4</td>"), is(false));
+        assertThat(getFactory().getGenericEvaluations(), greaterThan(0L));
+    }
+
+    @Test
+    public void canCacheCompiledExpressions() throws Exception
+    {
+        resourceWithUrl(uri("/test/expr.jsp?A=1"));
+        int size = getFactory().getCacheSize();
+        resourceWithUrl(uri("/test/expr.jsp?A=2"));
+        assertThat(getFactory().getCacheSize(), is(size));
+    }
+}
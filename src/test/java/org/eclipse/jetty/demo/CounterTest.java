@@ -0,0 +1,147 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.acme.Counter;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CounterTest extends AbstractMainTest
+{
+    // A Counter accessed 3 times, last by /test/bean1.jsp, as serialized by the original synchronization-free version
+    private static final String ORIGINAL_COUNTER = "rO0ABXNyABBjb20uYWNtZS5Db3VudGVyC+FxNIaGevUCAAJJAAdjb3VudGVyTAAEbGFzdHQAEkxqYXZhL2xhbmcvU3RyaW5nO3hwAAAAA3QADy90ZXN0L2JlYW4xLmpzcA==";
+
+    @Test
+    public void concurrentRequestsInOneSessionCountEveryAccess() throws Exception
+    {
+        int threads = 8;
+        int requestsPerThread = 50;
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpResponse<String> first = client.send(HttpRequest.newBuilder(URI.create(uri("/test/bean1.jsp"))).build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertThat(first.body(), containsString("Counter accessed 1 times"));
+        String cookie = first.headers().firstValue("Set-Cookie").orElseThrow().split(";")[0];
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri("/test/bean1.jsp"))).header("Cookie", cookie).build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+            {
+                futures.add(executor.submit(() ->
+                {
+                    for (int i = 0; i < requestsPerThread; i++)
+                    {
+                        assertThat(client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode(), is(200));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        int expected = 1 + threads * requestsPerThread + 1;
+        assertThat(client.send(request, HttpResponse.BodyHandlers.ofString()).body(), containsString("Counter accessed " + expected + " times"));
+    }
+
+    @Test
+    public void concurrentAccessesCountEveryAccess() throws Exception
+    {
+        int threads = 8;
+        int accessesPerThread = 1_000_000;
+
+        Counter counter = new Counter();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+            {
+                futures.add(executor.submit(() ->
+                {
+                    for (int i = 0; i < accessesPerThread; i++)
+                    {
+                        counter.getCount();
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        assertThat(counter.getCount(), is(threads * accessesPerThread + 1));
+    }
+
+    @Test
+    public void canSerializeCounter() throws Exception
+    {
+        Counter counter = new Counter();
+        counter.getCount();
+        counter.setLast("/test/bean2.jsp");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(counter);
+        }
+        Counter copy = (Counter)new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertThat(copy.getLast(), is("/test/bean2.jsp"));
+        assertThat(copy.getCount(), is(2));
+    }
+
+    @Test
+    public void canDeserializeOriginalCounter() throws Exception
+    {
+        Counter counter = (Counter)new ObjectInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(ORIGINAL_COUNTER))).readObject();
+        assertThat(counter.getLast(), is("/test/bean1.jsp"));
+        assertThat(counter.getCount(), is(4));
+    }
+}
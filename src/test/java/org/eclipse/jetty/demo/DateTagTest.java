@@ -0,0 +1,62 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.util.regex.Pattern;
+
+import com.acme.DateFormatterCache;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class DateTagTest extends AbstractMainTest
+{
+    private static final Pattern ANYTHING = Pattern.compile("(?s).*");
+
+    @Test
+    public void canServeBodyTag() throws Exception
+    {
+        String response = resourceWithUrl(uri("/test/tag.jsp"));
+        assertThat(response, matchesPattern(ANYTHING + "==&gt;</small>\\s+\\w{3}, \\d{2}/\\w{3}/\\d{4} \\d{2}:\\d{2}:\\d{2} \\+0000\\s+<br/>" + ANYTHING));
+        assertThat(response, matchesPattern(ANYTHING + "==&gt;</small>\\s+\\w{3}, \\d{2}-\\w{3}-\\d{4} \\d{2}:\\d{2}:\\d{2} -0500\\s+<br/>" + ANYTHING));
+    }
+
+    @Test
+    public void canServeSimpleTag() throws Exception
+    {
+        String response = resourceWithUrl(uri("/test/tag2.jsp"));
+        assertThat(response, matchesPattern(ANYTHING + "On \\w{3} the \\d{1,2} of \\w{3} in the year \\d{4}" + ANYTHING));
+        assertThat(response, matchesPattern(ANYTHING + "\\d{1,2} - \\d{2} - \\d{2}" + ANYTHING));
+    }
+
+    @Test
+    public void canBoundFormatterCache()
+    {
+        for (int i = 0; i <= DateFormatterCache.MAX_SIZE; i++)
+        {
+            DateFormatterCache.getFormatter("'" + i + "' d", "GMT");
+            assertThat(DateFormatterCache.size(), lessThanOrEqualTo(DateFormatterCache.MAX_SIZE));
+        }
+        assertThat(DateFormatterCache.getFormatter("'" + DateFormatterCache.MAX_SIZE + "' d", "GMT"),
+            sameInstance(DateFormatterCache.getFormatter("'" + DateFormatterCache.MAX_SIZE + "' d", "GMT")));
+    }
+}
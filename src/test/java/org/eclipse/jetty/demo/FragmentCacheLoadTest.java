@@ -0,0 +1,73 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+
+import com.acme.FragmentCache;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ * Throughput of the panels page, rendered on every request (tagfile.jsp)
+ * and served from the fragment cache (cache.jsp). Run with: {@code mvn -Pload test}
+ */
+@Tag("load")
+public class FragmentCacheLoadTest
+{
+    private static final int CONCURRENCY = 16;
+    private static final int REQUESTS = 20_000;
+
+    @Test
+    public void cachedPanels() throws Exception
+    {
+        Main main = new Main(0, true);
+        main.start();
+        try
+        {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            LoadGenerator load = new LoadGenerator(client, CONCURRENCY);
+            for (String page : new String[]{"/test/tagfile.jsp", "/test/cache.jsp"})
+            {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(AbstractMainTest.uri(main, page))).build();
+                // Warm up, compiling the JSP
+                load.run(request, REQUESTS / 10);
+                LoadGenerator.Result result = load.run(request, REQUESTS);
+                System.err.printf("%-18s %s%n", page, result);
+                assertThat(result.getFailures(), is(0));
+            }
+
+            ServletContextHandler context = main.getServer().getChildHandlerByClass(ServletContextHandler.class);
+            FragmentCache cache = FragmentCache.getCache(context.getServletContext());
+            System.err.printf("fragment cache: hit ratio=%.4f entries=%d size=%d bytes coalesced=%d%n",
+                cache.getHitRatio(), cache.getEntries(), cache.getSize(), cache.getCoalesced());
+            assertThat(cache.getHitRatio(), greaterThan(0.99));
+        }
+        finally
+        {
+            main.stop();
+        }
+    }
+}
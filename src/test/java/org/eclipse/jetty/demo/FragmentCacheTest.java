@@ -0,0 +1,166 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.acme.FragmentCache;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class FragmentCacheTest extends AbstractMainTest
+{
+    @Test
+    public void canServeCachedFragment() throws Exception
+    {
+        String first = resourceWithUrl(uri("/test/cache.jsp"));
+        String second = resourceWithUrl(uri("/test/cache.jsp"));
+        assertThat(first, containsString("A panel in a panel."));
+        assertThat(second, is(first));
+
+        ServletContextHandler context = getMain().getServer().getChildHandlerByClass(ServletContextHandler.class);
+        FragmentCache cache = FragmentCache.getCache(context.getServletContext());
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getHitRatio(), is(0.5));
+        assertThat(cache.getEntries(), is(1));
+        assertThat(cache.getSize(), greaterThan((long)first.length()));
+    }
+
+    @Test
+    public void canExpireEntries() throws Exception
+    {
+        FragmentCache cache = new FragmentCache(FragmentCache.DEFAULT_MAX_SIZE);
+        cache.populate("key").complete("content", 1);
+        assertThat(cache.getIfPresent("key"), nullValue());
+        assertThat(cache.getExpirations(), is(1L));
+        assertThat(cache.getEntries(), is(0));
+        assertThat(cache.getSize(), is(0L));
+    }
+
+    @Test
+    public void canEvictLeastRecentlyUsed() throws Exception
+    {
+        // Room for three entries of 100 characters
+        FragmentCache cache = new FragmentCache(1000);
+        String content = "x".repeat(100);
+        for (String key : List.of("a", "b", "c"))
+        {
+            cache.populate(key).complete(content, TimeUnit.MINUTES.toNanos(1));
+            Thread.sleep(1);
+        }
+        assertThat(cache.getIfPresent("a"), notNullValue());
+        cache.populate("d").complete(content, TimeUnit.MINUTES.toNanos(1));
+
+        assertThat(cache.getEvictions(), is(1L));
+        assertThat(cache.getIfPresent("b"), nullValue());
+        assertThat(cache.getIfPresent("a"), notNullValue());
+        assertThat(cache.getIfPresent("c"), notNullValue());
+        assertThat(cache.getIfPresent("d"), notNullValue());
+    }
+
+    @Test
+    public void canRenderAfterWaitingTooLong() throws Exception
+    {
+        FragmentCache cache = new FragmentCache(FragmentCache.DEFAULT_MAX_SIZE, 100);
+        CountDownLatch populating = new CountDownLatch(1);
+        CountDownLatch hung = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            // A render that hangs until the end of the test
+            Future<?> owner = executor.submit(() ->
+            {
+                FragmentCache.Flight flight = cache.populate("key");
+                populating.countDown();
+                hung.await();
+                flight.abandon();
+                return null;
+            });
+            populating.await();
+
+            FragmentCache.Flight flight = cache.populate("key");
+            assertThat(flight.isOwner(), is(false));
+            assertThat(flight.getContent(), nullValue());
+            assertThat(cache.getWaitTimeouts(), is(1L));
+
+            hung.countDown();
+            owner.get();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void canPopulateOnceForConcurrentMisses() throws Exception
+    {
+        int threads = 8;
+        FragmentCache cache = new FragmentCache(FragmentCache.DEFAULT_MAX_SIZE);
+        AtomicInteger renders = new AtomicInteger();
+        CountDownLatch missed = new CountDownLatch(threads);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<String>> contents = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+            {
+                contents.add(executor.submit(() ->
+                {
+                    assertThat(cache.getIfPresent("key"), nullValue());
+                    missed.countDown();
+                    missed.await();
+                    FragmentCache.Flight flight = cache.populate("key");
+                    if (!flight.isOwner())
+                        return flight.getContent();
+                    renders.incrementAndGet();
+                    // A slow render, which the other threads wait for
+                    Thread.sleep(200);
+                    flight.complete("content", TimeUnit.MINUTES.toNanos(1));
+                    return "content";
+                }));
+            }
+            for (Future<String> content : contents)
+            {
+                assertThat(content.get(), is("content"));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertThat(renders.get(), is(1));
+        assertThat(cache.getCoalesced(), is((long)threads - 1));
+    }
+}
@@ -0,0 +1,147 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class GracefulStopTest extends AbstractMainTest
+{
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port);
+        main.setDrainTimeout(5000);
+        main.setReusePort(true);
+        return main;
+    }
+
+    private CompletableFuture<HttpResponse<String>> get(Main main, String path)
+    {
+        return client.sendAsync(HttpRequest.newBuilder(URI.create(uri(main, path))).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static StatisticsHandler getStatistics(Main main)
+    {
+        return main.getServer().getChildHandlerByClass(StatisticsHandler.class);
+    }
+
+    private static void awaitRequestsActive(Main main, int requests) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (getStatistics(main).getRequestsActive() < requests && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertThat(getStatistics(main).getRequestsActive(), is(requests));
+    }
+
+    @Test
+    public void canDrainRequestsInFlight() throws Exception
+    {
+        CompletableFuture<HttpResponse<String>> response = get(getMain(), "/date/async/?delay=500");
+        awaitRequestsActive(getMain(), 1);
+
+        getMain().stop();
+
+        assertThat(response.get(5, TimeUnit.SECONDS).statusCode(), is(200));
+        assertThat(response.get().body(), containsString("in the year"));
+        assertThat(getMain().getRequestsCutOff(), is(0));
+    }
+
+    @Test
+    public void canCutOffRequestsAfterTimeout() throws Exception
+    {
+        Main main = new Main(0);
+        main.setDrainTimeout(200);
+        main.start();
+        try
+        {
+            CompletableFuture<HttpResponse<String>> response = get(main, "/date/async/?delay=3000");
+            awaitRequestsActive(main, 1);
+            main.stop();
+
+            assertThat(main.getRequestsCutOff(), is(1));
+            assertThrows(Exception.class, () -> response.get(5, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            main.stop();
+        }
+    }
+
+    @Test
+    public void canRestartUnderLoad() throws Exception
+    {
+        int port = getPort();
+        // A connection that was writing a response as the drain started is closed after it, without a "Connection: close",
+        // and the connections still waiting to be accepted by this instance are reset as it closes its listening socket
+        PageLoad load = new PageLoad("localhost", port)
+            .concurrency(8)
+            .retryClosed(true)
+            .addPage("/test/jstl.jsp", "10\n      <br />")
+            .addPage("/test/tag2.jsp", "in the year")
+            .addPage("/date/async/?delay=20", "in the year");
+        CompletableFuture<PageLoad.Report> report = CompletableFuture.supplyAsync(() ->
+        {
+            try
+            {
+                return load.run(Duration.ofSeconds(4));
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // The next instance listens on the same port before this one stops
+        Thread.sleep(1000);
+        Main next = newMain(port);
+        next.start();
+        try
+        {
+            getMain().stop();
+            assertThat(getMain().getRequestsCutOff(), is(0));
+
+            PageLoad.Report result = report.get(30, TimeUnit.SECONDS);
+            assertThat(result.toString(), result.getTotal().getFailures(), is(0));
+            assertThat(getStatistics(next).getRequests(), greaterThan(0));
+        }
+        finally
+        {
+            next.stop();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class H2cTest extends AbstractMainTest
+{
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port);
+        main.setH2c(true);
+        main.setAcceptors(1);
+        main.setSelectors(2);
+        main.setIdleTimeout(10_000);
+        main.setOutputBufferSize(16 * 1024);
+        main.setMaxConcurrentStreams(64);
+        return main;
+    }
+
+    private HttpResponse<String> get(HttpClient client, String path) throws Exception
+    {
+        return client.send(HttpRequest.newBuilder(URI.create(uri(path))).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void canUpgradeToH2c() throws Exception
+    {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+        // The first request upgrades the connection, and the others are multiplexed on it
+        for (String path : new String[]{"/test/assets.jsp", "/static/main.css", "/static/icon.svg?1", "/date/"})
+        {
+            HttpResponse<String> response = get(client, path);
+            assertThat(path, response.statusCode(), is(200));
+            assertThat(path, response.version(), is(HttpClient.Version.HTTP_2));
+        }
+        assertThat(get(client, "/test/assets.jsp").body(), containsString("icon.svg?32"));
+    }
+
+    @Test
+    public void canServeHttp11() throws Exception
+    {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpResponse<String> response = get(client, "/test/assets.jsp");
+        assertThat(response.statusCode(), is(200));
+        assertThat(response.version(), is(HttpClient.Version.HTTP_1_1));
+    }
+
+    @Test
+    public void canTuneConnector() throws Exception
+    {
+        ServerConnector connector = (ServerConnector)getMain().getServer().getConnectors()[0];
+        assertThat(connector.getAcceptors(), is(1));
+        assertThat(connector.getSelectorManager().getSelectorCount(), is(2));
+        assertThat(connector.getIdleTimeout(), is(10_000L));
+        assertThat(connector.getConnectionFactory(HttpConnectionFactory.class).getHttpConfiguration().getOutputBufferSize(), is(16 * 1024));
+        assertThat(connector.getConnectionFactory(HTTP2CServerConnectionFactory.class).getMaxConcurrentStreams(), is(64));
+    }
+}
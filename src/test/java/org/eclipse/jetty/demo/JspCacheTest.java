@@ -0,0 +1,92 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class JspCacheTest extends AbstractMainTest
+{
+    @TempDir
+    public Path cacheDir;
+
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = super.newMain(port);
+        main.setJspCacheDir(cacheDir);
+        return main;
+    }
+
+    private static JspCache getJspCache(Main main)
+    {
+        return main.getServer().getChildHandlerByClass(ServletContextHandler.class).getBean(JspCache.class);
+    }
+
+    @Test
+    public void canServeFromCache() throws Exception
+    {
+        JspCache jspCache = getJspCache(getMain());
+        assertThat(jspCache.isCompiled(), is(true));
+        assertThat(Files.isRegularFile(jspCache.getEntryDir().resolve(JspCache.MANIFEST)), is(true));
+        assertThat(resourceWithUrl(uri("/test/tagfile.jsp")), containsString("A panel in a panel."));
+    }
+
+    @Test
+    public void canMissAfterApplicationChanges(@TempDir Path classes) throws Exception
+    {
+        ServletContextHandler context = getMain().getServer().getChildHandlerByClass(ServletContextHandler.class);
+        Path tag = Files.createDirectories(classes.resolve("com/acme")).resolve("DateTag.class");
+        Files.write(tag, new byte[]{1});
+        Path entryDir = new JspCache(context, cacheDir, classes).getEntryDir();
+        assertThat(new JspCache(context, cacheDir, classes).getEntryDir(), is(entryDir));
+
+        // A new build of a tag handler
+        Files.write(tag, new byte[]{2});
+        assertThat(new JspCache(context, cacheDir, classes).getEntryDir(), not(entryDir));
+    }
+
+    @Test
+    public void restartSkipsCompilation() throws Exception
+    {
+        Main restarted = newMain(0);
+        restarted.start();
+        try
+        {
+            JspCache jspCache = getJspCache(restarted);
+            assertThat(jspCache.isCompiled(), is(false));
+            assertThat(jspCache.getEntryDir(), is(getJspCache(getMain()).getEntryDir()));
+            assertThat(resourceWithUrl(uri(restarted, "/test/jstl.jsp")), containsString("10"));
+            assertThat(resourceWithUrl(uri(restarted, "/test/foo/")), containsString("FOO Example"));
+        }
+        finally
+        {
+            restarted.stop();
+        }
+    }
+}
@@ -28,6 +28,6 @@ public class JstlTest extends AbstractMainTest
     @Test
     public void canServeJspWithTaglib() throws Exception
     {
-        assertThat(resourceWithUrl("http://localhost:8080/test/jstl.jsp"), containsString("10"));
+        assertThat(resourceWithUrl(uri("/test/jstl.jsp")), containsString("10"));
     }
 }
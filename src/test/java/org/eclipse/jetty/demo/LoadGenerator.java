@@ -0,0 +1,142 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends a number of requests, keeping a level of concurrency, and measures their throughput and latency.
+ */
+public class LoadGenerator
+{
+    private final HttpClient client;
+    private final int concurrency;
+
+    public LoadGenerator(HttpClient client, int concurrency)
+    {
+        this.client = client;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @param request the request to send
+     * @param requests the number of times to send it
+     * @return the results
+     * @throws InterruptedException if interrupted while sending
+     */
+    public Result run(HttpRequest request, int requests) throws InterruptedException
+    {
+        long[] latencies = new long[requests];
+        AtomicInteger failures = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++)
+        {
+            int index = i;
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) ->
+            {
+                latencies[index] = System.nanoTime() - sent;
+                if (failure != null || response.statusCode() != 200)
+                    failures.incrementAndGet();
+                inFlight.release();
+            });
+        }
+        inFlight.acquire(concurrency);
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new Result(latencies, elapsed, failures.get());
+    }
+
+    public static class Result
+    {
+        private final long[] latencies;
+        private final long elapsedNanos;
+        private final int failures;
+
+        /**
+         * @param latencies the latency of each request, in nanoseconds, sorted
+         * @param elapsedNanos the time taken to send all the requests
+         * @param failures the requests that failed
+         */
+        Result(long[] latencies, long elapsedNanos, int failures)
+        {
+            this.latencies = latencies;
+            this.elapsedNanos = elapsedNanos;
+            this.failures = failures;
+        }
+
+        public int getRequests()
+        {
+            return latencies.length;
+        }
+
+        public int getFailures()
+        {
+            return failures;
+        }
+
+        /**
+         * @return the requests per second
+         */
+        public double getThroughput()
+        {
+            return latencies.length / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * @param percentile the percentile, eg: 99
+         * @return the latency of the percentile, in milliseconds
+         */
+        public long getLatencyMillis(double percentile)
+        {
+            return TimeUnit.NANOSECONDS.toMillis(getLatencyNanos(percentile));
+        }
+
+        /**
+         * @param percentile the percentile, eg: 99.9
+         * @return the latency of the percentile, in microseconds
+         */
+        public long getLatencyMicros(double percentile)
+        {
+            return TimeUnit.NANOSECONDS.toMicros(getLatencyNanos(percentile));
+        }
+
+        private long getLatencyNanos(double percentile)
+        {
+            if (latencies.length == 0)
+                return 0;
+            int index = (int)Math.ceil(latencies.length * percentile / 100) - 1;
+            return latencies[Math.max(0, index)];
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("requests=%-6d throughput=%8.1f req/s p50=%8.2f ms p99=%8.2f ms p999=%8.2f ms failures=%d",
+                getRequests(), getThroughput(), getLatencyMicros(50) / 1000.0, getLatencyMicros(99) / 1000.0, getLatencyMicros(99.9) / 1000.0, failures);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class MetricsTest extends AbstractMainTest
+{
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port);
+        main.setMetrics(true);
+        return main;
+    }
+
+    @Test
+    public void canExposeRequestMetrics() throws Exception
+    {
+        resourceWithUrl(uri("/test/tag.jsp"));
+        resourceWithUrl(uri("/test/tag.jsp"));
+        resourceWithUrl(uri("/date/"));
+
+        RequestMetrics metrics = (RequestMetrics)getMain().getServer().getChildHandlerByClass(ServletContextHandler.class)
+            .getAttribute(RequestMetrics.ATTRIBUTE);
+        // Requests are recorded when destroyed, which may be just after the client has the response
+        awaitRequests(metrics, "/date/", 1);
+        assertThat(metrics.getRequests("/test/tag.jsp"), is(2L));
+        assertThat(metrics.getBytes("/test/tag.jsp"), greaterThan(0L));
+        // The forward to tag2.jsp is recorded against the servlet the request was for
+        assertThat(metrics.getRequests("/date/"), is(1L));
+        assertThat(metrics.getRequests("/test/tag2.jsp"), is(0L));
+        assertThat(metrics.getJspLoads("org.apache.jsp.test.tag_jsp"), is(1L));
+
+        String exposition = resourceWithUrl(uri("/metrics"));
+        assertThat(exposition, containsString("# TYPE servlet_requests_total counter\n"));
+        assertThat(exposition, containsString("servlet_requests_total{path=\"/test/tag.jsp\"} 2\n"));
+        assertThat(exposition, containsString("servlet_request_duration_seconds_bucket{path=\"/test/tag.jsp\",le=\"+Inf\"} 2\n"));
+        assertThat(exposition, containsString("servlet_request_duration_seconds_count{path=\"/test/tag.jsp\"} 2\n"));
+        assertThat(exposition, containsString("jsp_loads_total{class=\"org.apache.jsp.test.tag_jsp\"} 1\n"));
+        assertThat(exposition, containsString("jsp_loaded 2\n"));
+    }
+
+    private static void awaitRequests(RequestMetrics metrics, String path, long requests) throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (metrics.getRequests(path) < requests && System.nanoTime() < end)
+        {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void canCountLatenciesOnBoundsInTheirBucket()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(1_000);
+        histogram.record(1_001);
+        histogram.record(2_000);
+        histogram.record(1_024_000);
+        histogram.record(TimeUnit.HOURS.toNanos(1));
+
+        long[] counts = histogram.getCounts();
+        // le="0.000001", le="0.000002" and le="0.001024"
+        assertThat(counts[0], is(2L));
+        assertThat(counts[1], is(2L));
+        assertThat(counts[10], is(1L));
+        assertThat(counts[LatencyHistogram.BUCKETS], is(1L));
+    }
+
+    @Test
+    public void canBoundNumberOfPaths()
+    {
+        RequestMetrics metrics = new RequestMetrics();
+        for (int i = 0; i < RequestMetrics.MAX_PATHS + 10; i++)
+        {
+            metrics.record("/path" + i, 1000, 10);
+        }
+        assertThat(metrics.getRequests("/path0"), is(1L));
+        assertThat(metrics.getRequests(RequestMetrics.OTHER_PATH), is(10L));
+    }
+}
@@ -0,0 +1,203 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MultiContextTest extends AbstractMainTest
+{
+    @TempDir
+    Path webRoots;
+
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port);
+        main.addContext("/app1", newWebRoot("app1"));
+        main.addContext("/app2", withTaglibJar(newWebRoot("app2")));
+        return main;
+    }
+
+    /**
+     * A webroot with a JSP at the same path as in the other webroots, compiled to the same class name.
+     */
+    private Path newWebRoot(String name)
+    {
+        try
+        {
+            Path webRoot = Files.createDirectories(webRoots.resolve(name));
+            Files.writeString(webRoot.resolve("index.jsp"),
+                "<%@ page session=\"false\" %>\n" +
+                "<%@ taglib prefix=\"c\" uri=\"http://java.sun.com/jsp/jstl/core\" %>\n" +
+                "<p>Hello from <c:out value=\"" + name + "\"/> at ${pageContext.request.contextPath}</p>\n");
+            Files.writeString(webRoot.resolve("static.txt"), "Static " + name);
+            return webRoot;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds a taglib jar to WEB-INF/lib, which is not on the classpath the TLD index was built from,
+     * with a registry of tag plugins for the JSTL tags.
+     */
+    private Path withTaglibJar(Path webRoot)
+    {
+        try
+        {
+            Path lib = Files.createDirectories(webRoot.resolve("WEB-INF/lib"));
+            try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(lib.resolve("hex-taglib.jar"))))
+            {
+                jar.putNextEntry(new JarEntry("META-INF/hex.tld"));
+                jar.write((
+                    "<taglib xmlns=\"http://java.sun.com/xml/ns/javaee\" version=\"2.1\">\n" +
+                    "  <tlib-version>1.0</tlib-version>\n" +
+                    "  <short-name>hex</short-name>\n" +
+                    "  <uri>urn:hex</uri>\n" +
+                    "  <function>\n" +
+                    "    <name>hex</name>\n" +
+                    "    <function-class>java.lang.Integer</function-class>\n" +
+                    "    <function-signature>java.lang.String toHexString(int)</function-signature>\n" +
+                    "  </function>\n" +
+                    "</taglib>\n").getBytes(StandardCharsets.UTF_8));
+                jar.closeEntry();
+                jar.putNextEntry(new JarEntry(TagPlugins.JASPER_TAG_PLUGINS_XML));
+                jar.write((
+                    "<tag-plugins>\n" +
+                    "  <tag-plugin>\n" +
+                    "    <tag-class>org.apache.taglibs.standard.tag.rt.core.OutTag</tag-class>\n" +
+                    "    <plugin-class>" + TagPlugins.Out.class.getName() + "</plugin-class>\n" +
+                    "  </tag-plugin>\n" +
+                    "</tag-plugins>\n").getBytes(StandardCharsets.UTF_8));
+                jar.closeEntry();
+            }
+            Files.writeString(webRoot.resolve("hex.jsp"),
+                "<%@ page session=\"false\" %>\n" +
+                "<%@ taglib prefix=\"hex\" uri=\"urn:hex\" %>\n" +
+                "<p>255 is ${hex:hex(255)}</p>\n");
+            return webRoot;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<ServletContextHandler> getContexts()
+    {
+        return Arrays.stream(getMain().getServer().getChildHandlersByClass(ServletContextHandler.class))
+            .map(ServletContextHandler.class::cast)
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void canServeEachContext() throws Exception
+    {
+        assertThat(resourceWithUrl(uri("/app1/index.jsp")), containsString("Hello from app1 at /app1"));
+        assertThat(resourceWithUrl(uri("/app2/index.jsp")), containsString("Hello from app2 at /app2"));
+        assertThat(resourceWithUrl(uri("/app2/static.txt")), is("Static app2"));
+        // The root context is unchanged
+        assertThat(resourceWithUrl(uri("/test/jstl.jsp")), containsString("JSTL Example"));
+        assertThat(resourceWithUrl(uri("/date/")), containsString("in the year"));
+    }
+
+    @Test
+    public void canScanTaglibJarsOfWebRoot() throws Exception
+    {
+        assertThat(getMain().isTldIndex(), is(true));
+        assertThat(resourceWithUrl(uri("/app2/hex.jsp")), containsString("255 is ff"));
+    }
+
+    @Test
+    public void canIsolateClassLoaders() throws Exception
+    {
+        List<ServletContextHandler> contexts = getContexts();
+        assertThat(contexts.size(), is(3));
+        assertThat(contexts.get(1).getClassLoader(), not(sameInstance(contexts.get(2).getClassLoader())));
+        assertThat(contexts.get(0).getClassLoader(), not(sameInstance(contexts.get(1).getClassLoader())));
+    }
+
+    @Test
+    public void canShareJspRuntime() throws Exception
+    {
+        SharedJspRuntime runtime = getMain().getJspRuntime();
+        assertThat(runtime, notNullValue());
+
+        // Each TLD outside of the webroots is parsed by the first context, and reused by the other two
+        assertThat(runtime.getTldParses(), greaterThan(0L));
+        assertThat(runtime.getTldHits(), is(2 * runtime.getTldParses()));
+
+        // Unless a context has tag plugins of its own in WEB-INF/lib
+        List<ServletContextHandler> contexts = getContexts();
+        assertThat(runtime.getTagPluginManager(contexts.get(0).getServletContext()),
+            sameInstance(runtime.getTagPluginManager(contexts.get(1).getServletContext())));
+        assertThat(runtime.getTagPluginManager(contexts.get(1).getServletContext()),
+            not(sameInstance(runtime.getTagPluginManager(contexts.get(2).getServletContext()))));
+    }
+
+    @Test
+    public void canApplyTagPluginsOfWebRoot() throws Exception
+    {
+        assertThat(resourceWithUrl(uri("/app1/index.jsp")), containsString("Hello from app1"));
+        assertThat(resourceWithUrl(uri("/app2/index.jsp")), containsString("Hello from app2"));
+
+        List<ServletContextHandler> contexts = getContexts();
+        assertThat(getGeneratedSource(contexts.get(1)), not(containsString("TagPlugins.out(")));
+        assertThat(getGeneratedSource(contexts.get(2)), containsString("TagPlugins.out("));
+    }
+
+    private static String getGeneratedSource(ServletContextHandler context) throws IOException
+    {
+        File scratchDir = (File)context.getServletContext().getAttribute("javax.servlet.context.tempdir");
+        return Files.readString(scratchDir.toPath().resolve("org/apache/jsp/index_jsp.java"));
+    }
+
+    @Test
+    public void cannotAddInvalidContextPath()
+    {
+        Main main = new Main(0);
+        assertThrows(IllegalArgumentException.class, () -> main.addContext("/", webRoots));
+        assertThrows(IllegalArgumentException.class, () -> main.addContext("app", webRoots));
+    }
+}
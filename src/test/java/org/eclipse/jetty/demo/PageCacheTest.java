@@ -0,0 +1,115 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PageCacheTest extends AbstractMainTest
+{
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port);
+        main.setPageCacheTtls(Map.of("/test/jstl.jsp", 60, "/test/bean1.jsp", 60));
+        return main;
+    }
+
+    private PageCacheFilter getFilter()
+    {
+        ServletContextHandler context = getMain().getServer().getChildHandlerByClass(ServletContextHandler.class);
+        return (PageCacheFilter)context.getServletHandler().getFilter("pageCache").getFilter();
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws Exception
+    {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(uri(path)));
+        if (ifNoneMatch != null)
+            request.header("If-None-Match", ifNoneMatch);
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void canServeCachedPage() throws Exception
+    {
+        HttpResponse<String> first = get("/test/jstl.jsp", null);
+        HttpResponse<String> second = get("/test/jstl.jsp", null);
+        assertThat(first.statusCode(), is(200));
+        assertThat(first.body(), containsString("JSTL Example"));
+        assertThat(second.statusCode(), is(200));
+        assertThat(second.body(), is(first.body()));
+        assertThat(second.headers().firstValue("Content-Type").orElse(null), startsWith("text/html"));
+        assertThat(second.headers().firstValue("Content-Length").orElse(null), is(Integer.toString(first.body().length())));
+        assertThat(second.headers().firstValue("ETag"), is(first.headers().firstValue("ETag")));
+        // The session the JSP created, and did not use, is dropped
+        assertThat(first.headers().firstValue("Set-Cookie").isPresent(), is(false));
+
+        PageCacheFilter filter = getFilter();
+        assertThat(filter.getMisses(), is(1L));
+        assertThat(filter.getHits(), is(1L));
+        assertThat(filter.getEntries(), is(1));
+    }
+
+    @Test
+    public void canAnswerConditionalRequests() throws Exception
+    {
+        // Not cached, but still sent with an ETag
+        HttpResponse<String> response = get("/test/expr.jsp", null);
+        assertThat(response.statusCode(), is(200));
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<String> notModified = get("/test/expr.jsp", etag);
+        assertThat(notModified.statusCode(), is(304));
+        assertThat(notModified.body(), is(""));
+        assertThat(notModified.headers().firstValue("ETag").orElse(null), is(etag));
+
+        assertThat(get("/test/expr.jsp", "\"other\"").statusCode(), is(200));
+
+        PageCacheFilter filter = getFilter();
+        assertThat(filter.getNotModified(), is(1L));
+        assertThat(filter.getEntries(), is(0));
+    }
+
+    @Test
+    public void canBypassCacheForUncacheableRequests() throws Exception
+    {
+        // A query parameter that is not part of the key
+        assertThat(get("/test/jstl.jsp?foo=bar", null).statusCode(), is(200));
+        // A new session sets a cookie
+        HttpResponse<String> bean = get("/test/bean1.jsp", null);
+        assertThat(bean.headers().firstValue("Set-Cookie").isPresent(), is(true));
+        assertThat(get("/test/bean1.jsp", null).headers().firstValue("Set-Cookie").isPresent(), is(true));
+
+        PageCacheFilter filter = getFilter();
+        assertThat(filter.getHits(), is(0L));
+        assertThat(filter.getEntries(), is(0));
+    }
+}
@@ -0,0 +1,423 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.http.HttpTester;
+
+/**
+ * Drives a set of pages for a duration, from a number of connections each sending its next request
+ * as soon as it has the response to the previous one, and checks every response body.
+ * <p>
+ * Each connection requests the pages in turn, keeping the session cookie it is given (if any), over
+ * a persistent connection or, without keep-alive, a new connection per request. Requests are written
+ * on plain sockets, so the measured latency is that of the server and not of a client's connection pool.
+ * </p>
+ */
+public class PageLoad
+{
+    // Failures kept, with their reason, for reporting
+    private static final int MAX_ERRORS = 10;
+
+    private final String host;
+    private final int port;
+    private final List<Page> pages = new ArrayList<>();
+    private int concurrency = 16;
+    private boolean keepAlive = true;
+    private boolean retryClosed;
+    private Duration timeout = Duration.ofSeconds(30);
+
+    /**
+     * @param host the host of the server
+     * @param port the port of the server
+     */
+    public PageLoad(String host, int port)
+    {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * @param path the path, and query if any, of the page (eg: {@code /test/expr.jsp?A=21})
+     * @param expected text the body of every response for the page must contain
+     * @return this load
+     */
+    public PageLoad addPage(String path, String expected)
+    {
+        pages.add(new Page(path, expected));
+        return this;
+    }
+
+    /**
+     * @param concurrency the connections sending requests at once
+     * @return this load
+     */
+    public PageLoad concurrency(int concurrency)
+    {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * @param keepAlive true (the default) to send every request of a connection on the same socket, false for a socket per request
+     * @return this load
+     */
+    public PageLoad keepAlive(boolean keepAlive)
+    {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    /**
+     * As an HTTP/1.1 client may for an idempotent request, resend a request once on a new connection if the
+     * persistent connection it was sent on is closed before the response (eg: by a server shutting down,
+     * which closes each connection after the response it is writing), or if a new connection is reset
+     * before the response (eg: one still waiting to be accepted when the server closes its listening socket).
+     *
+     * @param retryClosed true to resend the requests of connections closed before the response, false (the default) to fail them
+     * @return this load
+     */
+    public PageLoad retryClosed(boolean retryClosed)
+    {
+        this.retryClosed = retryClosed;
+        return this;
+    }
+
+    /**
+     * @param timeout the time to wait for each response
+     * @return this load
+     */
+    public PageLoad timeout(Duration timeout)
+    {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * @param duration the time to send requests for
+     * @return the results of the whole load and of each page
+     * @throws Exception if a connection could not be driven
+     */
+    public Report run(Duration duration) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try
+        {
+            long start = System.nanoTime();
+            long deadline = start + duration.toNanos();
+            List<Future<Connection>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++)
+            {
+                // Each connection starts on a different page, so they are all loaded from the start
+                Connection connection = new Connection(i % pages.size());
+                futures.add(executor.submit(() -> connection.run(deadline)));
+            }
+            List<Connection> connections = new ArrayList<>();
+            for (Future<Connection> future : futures)
+            {
+                try
+                {
+                    connections.add(future.get());
+                }
+                catch (ExecutionException e)
+                {
+                    throw (e.getCause() instanceof Exception) ? (Exception)e.getCause() : e;
+                }
+            }
+            return new Report(connections, System.nanoTime() - start);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class Page
+    {
+        private final String path;
+        private final String expected;
+
+        private Page(String path, String expected)
+        {
+            this.path = path;
+            this.expected = expected;
+        }
+    }
+
+    /**
+     * The latencies of a page, in nanoseconds, as recorded by a single connection.
+     */
+    private static class Latencies
+    {
+        private long[] values = new long[1024];
+        private int size;
+        private int failures;
+
+        private void add(long latency)
+        {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = latency;
+        }
+    }
+
+    /**
+     * A client connection, sending requests one after the other.
+     */
+    private class Connection
+    {
+        private final Latencies[] latencies = new Latencies[pages.size()];
+        private final List<String> errors = new ArrayList<>();
+        private int next;
+        private Socket socket;
+        private HttpTester.Input input;
+        private String cookie;
+
+        private Connection(int first)
+        {
+            next = first;
+            for (int i = 0; i < latencies.length; i++)
+            {
+                latencies[i] = new Latencies();
+            }
+        }
+
+        private Connection run(long deadline) throws IOException
+        {
+            try
+            {
+                while (System.nanoTime() < deadline)
+                {
+                    int index = next;
+                    next = (next + 1) % pages.size();
+                    Page page = pages.get(index);
+
+                    long sent = System.nanoTime();
+                    String error = send(page);
+                    latencies[index].add(System.nanoTime() - sent);
+                    if (error != null)
+                    {
+                        latencies[index].failures++;
+                        if (errors.size() < MAX_ERRORS)
+                            errors.add(page.path + ": " + error);
+                    }
+                }
+                return this;
+            }
+            finally
+            {
+                close();
+            }
+        }
+
+        /**
+         * @param page the page to request
+         * @return null if the response is as expected, otherwise why not
+         */
+        private String send(Page page)
+        {
+            try
+            {
+                HttpTester.Response response = exchange(page, retryClosed);
+                if (response == null)
+                    return "connection closed before the whole response";
+
+                String setCookie = response.get(HttpHeader.SET_COOKIE);
+                if (setCookie != null)
+                    cookie = setCookie.split(";", 2)[0];
+                if (response.getStatus() != 200)
+                    return "status " + response.getStatus();
+                if (!response.getContent().contains(page.expected))
+                    return "body without \"" + page.expected + "\"";
+                return null;
+            }
+            catch (IOException e)
+            {
+                return e.toString();
+            }
+        }
+
+        /**
+         * @param page the page to request
+         * @param retry true to resend the request on a new connection if the connection is closed before the response
+         * @return the response, or null if the connection was closed before the whole response
+         * @throws IOException if unable to send the request or read the response
+         */
+        private HttpTester.Response exchange(Page page, boolean retry) throws IOException
+        {
+            boolean persistent = socket != null;
+            try
+            {
+                if (!persistent)
+                {
+                    socket = new Socket(host, port);
+                    socket.setSoTimeout((int)timeout.toMillis());
+                    input = HttpTester.from(socket.getInputStream());
+                }
+
+                StringBuilder request = new StringBuilder()
+                    .append("GET ").append(page.path).append(" HTTP/1.1\r\n")
+                    .append("Host: ").append(host).append(':').append(port).append("\r\n");
+                if (cookie != null)
+                    request.append("Cookie: ").append(cookie).append("\r\n");
+                if (!keepAlive)
+                    request.append("Connection: close\r\n");
+                request.append("\r\n");
+                OutputStream out = socket.getOutputStream();
+                out.write(request.toString().getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+
+                HttpTester.Response response = HttpTester.parseResponse(input);
+                if (response == null)
+                {
+                    close();
+                    return (retry && persistent) ? exchange(page, false) : null;
+                }
+                if (!keepAlive || response.contains(HttpHeader.CONNECTION, HttpHeaderValue.CLOSE.asString()))
+                    close();
+                return response;
+            }
+            catch (IOException e)
+            {
+                close();
+                // Not resent if the server is just slow, nor if it refuses new connections
+                if (retry && (persistent ? !(e instanceof SocketTimeoutException) : isReset(e)))
+                    return exchange(page, false);
+                throw e;
+            }
+        }
+
+        /**
+         * @param e the failure of a new connection
+         * @return true if the connection was reset, after it was established
+         */
+        private boolean isReset(IOException e)
+        {
+            return e instanceof SocketException && !(e instanceof ConnectException);
+        }
+
+        private void close()
+        {
+            if (socket != null)
+            {
+                try
+                {
+                    socket.close();
+                }
+                catch (IOException e)
+                {
+                    // Already failed
+                }
+                socket = null;
+                input = null;
+            }
+        }
+    }
+
+    /**
+     * The results of a load, and of each of its pages.
+     */
+    public class Report
+    {
+        private final LoadGenerator.Result total;
+        private final Map<String, LoadGenerator.Result> byPath = new LinkedHashMap<>();
+        private final List<String> errors = new ArrayList<>();
+
+        private Report(List<Connection> connections, long elapsedNanos)
+        {
+            List<long[]> all = new ArrayList<>();
+            int allFailures = 0;
+            for (int i = 0; i < pages.size(); i++)
+            {
+                int size = 0;
+                int failures = 0;
+                for (Connection connection : connections)
+                {
+                    size += connection.latencies[i].size;
+                    failures += connection.latencies[i].failures;
+                }
+                long[] latencies = new long[size];
+                int offset = 0;
+                for (Connection connection : connections)
+                {
+                    System.arraycopy(connection.latencies[i].values, 0, latencies, offset, connection.latencies[i].size);
+                    offset += connection.latencies[i].size;
+                }
+                Arrays.sort(latencies);
+                byPath.put(pages.get(i).path, new LoadGenerator.Result(latencies, elapsedNanos, failures));
+                all.add(latencies);
+                allFailures += failures;
+            }
+            long[] latencies = all.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            total = new LoadGenerator.Result(latencies, elapsedNanos, allFailures);
+            connections.forEach(connection -> errors.addAll(connection.errors));
+        }
+
+        public LoadGenerator.Result getTotal()
+        {
+            return total;
+        }
+
+        /**
+         * @return the results of each page, by path
+         */
+        public Map<String, LoadGenerator.Result> getResults()
+        {
+            return Collections.unmodifiableMap(byPath);
+        }
+
+        /**
+         * @return why some of the failed requests failed
+         */
+        public List<String> getErrors()
+        {
+            return errors.subList(0, Math.min(MAX_ERRORS, errors.size()));
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder report = new StringBuilder();
+            byPath.forEach((path, result) -> report.append(String.format("%-22s %s%n", path, result)));
+            report.append(String.format("%-22s %s%n", "total", total));
+            errors.stream().limit(MAX_ERRORS).forEach(error -> report.append("  ").append(error).append(System.lineSeparator()));
+            return report.toString();
+        }
+    }
+}
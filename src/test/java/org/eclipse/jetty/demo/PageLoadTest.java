@@ -0,0 +1,133 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Every page under {@code webroot/test}, requested at once from a number of connections for a while,
+ * checking each response, with the throughput and latency of each page. Run with: {@code mvn -Pload test}
+ * <p>
+ * The server is configured with the same system properties as {@link Main#main(String[])}, and the load with:
+ * </p>
+ * <ul>
+ * <li>{@code load.concurrency}: the connections sending requests at once (16)</li>
+ * <li>{@code load.duration}: the seconds to measure for (10), after {@code load.warmUp} seconds (5)</li>
+ * <li>{@code load.keepAlive}: false for a new connection per request (true)</li>
+ * <li>{@code load.minThroughput}: the requests per second below which the test fails (0, none)</li>
+ * <li>{@code load.maxP99}: the p99 latency in milliseconds above which the test fails (0, none)</li>
+ * </ul>
+ */
+@Tag("load")
+public class PageLoadTest
+{
+    // Text each page (with its query, if any) must respond with, ideally from the end of the page so a truncated body fails
+    private static final Map<String, String> PAGES = new LinkedHashMap<>();
+
+    static
+    {
+        PAGES.put("/test/assets.jsp", "alt=\"Icon 32\">");
+        PAGES.put("/test/bean1.jsp", "<a href=\"bean2.jsp\">Goto bean2.jsp</a>");
+        PAGES.put("/test/bean2.jsp", "<a href=\"bean1.jsp\">Goto bean1.jsp</a>");
+        PAGES.put("/test/cache.jsp", "A panel in a panel.");
+        PAGES.put("/test/dump.jsp?A=21", "<td>21</td></tr>");
+        PAGES.put("/test/expr.jsp?A=21", "<td>42&nbsp;</td>");
+        PAGES.put("/test/jstl.jsp", "10\n      <br />");
+        PAGES.put("/test/lambda.jsp", "<dt>user.name</dt>");
+        PAGES.put("/test/large.jsp", "<tr><td>8500</td>");
+        PAGES.put("/test/loop.jsp", " 99 100 ");
+        PAGES.put("/test/tag.jsp", "-0500");
+        PAGES.put("/test/tag2.jsp", "in the year");
+        PAGES.put("/test/tagfile.jsp", "A panel in a panel.");
+        PAGES.put("/test/foo/foo.jsp", "10\n      <br />");
+    }
+
+    @Test
+    public void allPages() throws Exception
+    {
+        assertThat("Pages without an expected response", getUncheckedPages(), empty());
+
+        Main main = Main.fromSystemProperties(0);
+        main.start();
+        try
+        {
+            PageLoad load = new PageLoad("localhost", AbstractMainTest.getPort(main))
+                .concurrency(Integer.getInteger("load.concurrency", 16))
+                .keepAlive(Boolean.parseBoolean(System.getProperty("load.keepAlive", "true")));
+            PAGES.forEach(load::addPage);
+
+            // Compiles the JSPs, and lets the JIT compile the hot paths
+            PageLoad.Report warmUp = load.run(Duration.ofSeconds(Long.getLong("load.warmUp", 5)));
+            assertThat(warmUp.toString(), warmUp.getTotal().getFailures(), is(0));
+
+            PageLoad.Report report = load.run(Duration.ofSeconds(Long.getLong("load.duration", 10)));
+            System.err.print(report);
+            assertThat(report.toString(), report.getTotal().getFailures(), is(0));
+
+            double minThroughput = Double.parseDouble(System.getProperty("load.minThroughput", "0"));
+            if (minThroughput > 0)
+                assertThat("Requests per second", report.getTotal().getThroughput(), greaterThanOrEqualTo(minThroughput));
+            long maxP99 = Long.getLong("load.maxP99", 0);
+            if (maxP99 > 0)
+                assertThat("p99 latency in ms", report.getTotal().getLatencyMillis(99), lessThanOrEqualTo(maxP99));
+        }
+        finally
+        {
+            main.stop();
+        }
+    }
+
+    /**
+     * @return the paths of the files under webroot/test that are not in {@link #PAGES}
+     */
+    private static Set<String> getUncheckedPages() throws Exception
+    {
+        URL webRoot = PageLoadTest.class.getClassLoader().getResource("webroot");
+        Path root = Path.of(webRoot.toURI());
+        Set<String> checked = PAGES.keySet().stream().map(page -> page.split("\\?", 2)[0]).collect(Collectors.toSet());
+        try (Stream<Path> files = Files.walk(root.resolve("test")))
+        {
+            List<String> paths = files.filter(Files::isRegularFile)
+                .map(file -> "/" + root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"))
+                .collect(Collectors.toList());
+            Set<String> unchecked = new TreeSet<>(paths);
+            unchecked.removeAll(checked);
+            return unchecked;
+        }
+    }
+}
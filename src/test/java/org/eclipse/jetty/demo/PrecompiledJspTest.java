@@ -0,0 +1,60 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import org.eclipse.jetty.http.pathmap.MatchedResource;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PrecompiledJspTest extends AbstractMainTest
+{
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = super.newMain(port);
+        main.setPrecompiled(true);
+        return main;
+    }
+
+    private String servletClassFor(String path)
+    {
+        ServletContextHandler context = getMain().getServer().getChildHandlerByClass(ServletContextHandler.class);
+        MatchedResource<ServletHandler.MappedServlet> matched = context.getServletHandler().getMatchedServlet(path);
+        return matched.getResource().getServletHolder().getClassName();
+    }
+
+    @Test
+    public void canServePrecompiledTagFile() throws Exception
+    {
+        assertThat(servletClassFor("/test/tagfile.jsp"), is("org.apache.jsp.test.tagfile_jsp"));
+        assertThat(resourceWithUrl(uri("/test/tagfile.jsp")), containsString("A panel in a panel."));
+    }
+
+    @Test
+    public void canServePrecompiledAltMapping() throws Exception
+    {
+        assertThat(servletClassFor("/test/foo/"), is("org.apache.jsp.test.foo.foo_jsp"));
+        assertThat(resourceWithUrl(uri("/test/foo/")), containsString("FOO Example"));
+    }
+}
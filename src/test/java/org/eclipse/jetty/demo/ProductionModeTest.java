@@ -0,0 +1,129 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.File;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProductionModeTest extends AbstractMainTest
+{
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port, true);
+        // Directory listings are only disabled along with the static cache
+        main.setStaticCache(true);
+        return main;
+    }
+
+    @Test
+    public void canServeJspInProductionMode() throws Exception
+    {
+        ServletContextHandler context = getMain().getServer().getChildHandlerByClass(ServletContextHandler.class);
+        ServletHolder holderJsp = context.getServletHandler().getServlet("jsp");
+        assertThat(holderJsp.getInitParameter("development"), is("false"));
+        assertThat(holderJsp.getInitParameter("keepgenerated"), is("false"));
+        assertThat(LoggerFactory.getLogger("org.apache.jasper.servlet.JspServlet").isDebugEnabled(), is(false));
+
+        assertThat(resourceWithUrl(uri("/test/tag.jsp")), containsString("GMT"));
+    }
+
+    @Test
+    public void cannotListDirectoriesInProductionMode() throws Exception
+    {
+        HttpURLConnection connection = (HttpURLConnection)new URL(uri("/test/")).openConnection();
+        assertThat(connection.getResponseCode(), is(HttpURLConnection.HTTP_FORBIDDEN));
+    }
+
+    @Test
+    public void canLowerJasperLoggersCreatedAfterStartUp() throws Exception
+    {
+        // As main(String[]) would
+        assertThat(jasperLevel("-D" + Main.PRODUCTION_PROPERTY + "=true", "properties"), containsString("info=false"));
+    }
+
+    @Test
+    public void canLowerJasperLoggersCreatedAfterStartUpWhenEmbedded() throws Exception
+    {
+        // As new Main(port, true) would
+        assertThat(jasperLevel("-D" + Main.PRODUCTION_PROPERTY + "=false", "constructor"), containsString("info=false"));
+    }
+
+    @Test
+    public void canRaiseJasperLoggersInDevelopmentMode() throws Exception
+    {
+        assertThat(jasperLevel("-D" + Main.PRODUCTION_PROPERTY + "=false", "properties"), containsString("org.apache.jasper.compiler.Compiler debug=true"));
+    }
+
+    /**
+     * Logging is already initialized in this JVM, so start Main in a new one.
+     *
+     * @param property the system property of the new JVM
+     * @param start "properties" to start with {@link Main#fromSystemProperties(int)}, or "constructor" in production mode
+     * @return the output of {@link JasperLevel}
+     */
+    private static String jasperLevel(String property, String start) throws Exception
+    {
+        Process process = new ProcessBuilder(
+            System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+            "-cp", System.getProperty("java.class.path"),
+            property,
+            JasperLevel.class.getName(), start)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(process.exitValue(), is(0));
+        return output;
+    }
+
+    public static class JasperLevel
+    {
+        public static void main(String[] args) throws Exception
+        {
+            Main main = "constructor".equals(args[0]) ? new Main(0, true) : Main.fromSystemProperties(0);
+            main.start();
+            try
+            {
+                // Created by Jasper for each compilation, so only after start-up
+                String name = "org.apache.jasper.compiler.Compiler";
+                Logger logger = LoggerFactory.getLogger(name);
+                System.out.println(name + " debug=" + logger.isDebugEnabled() + " info=" + logger.isInfoEnabled());
+            }
+            finally
+            {
+                main.stop();
+            }
+        }
+    }
+}
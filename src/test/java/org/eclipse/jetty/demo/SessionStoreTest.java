@@ -0,0 +1,194 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpSessionActivationListener;
+import javax.servlet.http.HttpSessionEvent;
+
+import org.eclipse.jetty.server.session.Session;
+import org.eclipse.jetty.server.session.SessionCache;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+public class SessionStoreTest
+{
+    @ParameterizedTest
+    @EnumSource(value = SessionStore.class, names = {"DIRECT", "MAPPED"})
+    public void canPassivateAndActivateSessions(SessionStore sessionStore) throws Exception
+    {
+        Main main = new Main(0);
+        main.setSessionStore(sessionStore);
+        main.setMaxResidentSessions(2);
+        main.start();
+        try
+        {
+            ServletContextHandler context = main.getServer().getChildHandlerByClass(ServletContextHandler.class);
+            assertThat(context.getSessionHandler().getSessionCache(), instanceOf(LruSessionCache.class));
+            LruSessionCache cache = (LruSessionCache)context.getSessionHandler().getSessionCache();
+            OffHeapSessionDataStore store = (OffHeapSessionDataStore)cache.getSessionDataStore();
+            assertThat(store.getFile() != null, is(sessionStore == SessionStore.MAPPED));
+            if (store.getFile() != null)
+                assertThat(Files.exists(store.getFile()), is(true));
+
+            ActivationCounter counter = new ActivationCounter();
+            context.addEventListener(counter);
+            CacheLookup lookup = new CacheLookup(cache);
+            context.addEventListener(lookup);
+
+            HttpClient client = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+            assertThat(get(main, client, "/test/bean1.jsp"), containsString("Counter accessed 1 times"));
+            assertThat(get(main, client, "/test/bean1.jsp"), containsString("Counter accessed 2 times"));
+
+            // The third session evicts the first two, down to 90% of the maximum, and the fourth fits.
+            // Sessions are evicted as their requests complete, which may be after the response is received
+            for (int i = 0; i < 3; i++)
+            {
+                get(main, HttpClient.newBuilder().cookieHandler(new CookieManager()).build(), "/test/bean1.jsp");
+            }
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while ((cache.getEvictions() < 2 || store.getSessions() < 2) && System.nanoTime() < end)
+            {
+                Thread.sleep(10);
+            }
+            assertThat(cache.getEvictions(), is(2L));
+            assertThat(cache.getSessionsCurrent(), is(2L));
+            // Only the passivated sessions are stored
+            assertThat(store.getSessions(), is(2));
+            assertThat(store.getCapacity(), greaterThan(0L));
+
+            // Activated from the store, with the counter as it was
+            String page = get(main, client, "/test/bean1.jsp");
+            assertThat(page, containsString("Counter accessed 3 times"));
+            assertThat(page, containsString("Counter last accessed by /test/bean1.jsp"));
+            assertThat(counter.passivated.get(), greaterThanOrEqualTo(2));
+            assertThat(counter.activated.get(), greaterThan(0));
+            // A listener can use the cache as the session activates
+            assertThat(lookup.found.get(), is(counter.activated.get()));
+        }
+        finally
+        {
+            main.stop();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = SessionStore.class, names = {"DIRECT", "MAPPED"})
+    public void canKeepResidentSessionsActive(SessionStore sessionStore) throws Exception
+    {
+        Main main = new Main(0);
+        main.setSessionStore(sessionStore);
+        main.setMaxResidentSessions(10);
+        main.start();
+        try
+        {
+            ServletContextHandler context = main.getServer().getChildHandlerByClass(ServletContextHandler.class);
+            LruSessionCache cache = (LruSessionCache)context.getSessionHandler().getSessionCache();
+            OffHeapSessionDataStore store = (OffHeapSessionDataStore)cache.getSessionDataStore();
+            ActivationCounter counter = new ActivationCounter();
+            context.addEventListener(counter);
+
+            HttpClient client = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+            for (int i = 1; i <= 5; i++)
+            {
+                assertThat(get(main, client, "/test/bean1.jsp"), containsString("Counter accessed " + i + " times"));
+            }
+
+            // Neither stored nor passivated as each request completes
+            assertThat(cache.getEvictions(), is(0L));
+            assertThat(store.getSessions(), is(0));
+            assertThat(counter.passivated.get(), is(0));
+            assertThat(counter.activated.get(), is(0));
+        }
+        finally
+        {
+            main.stop();
+        }
+    }
+
+    private static class ActivationCounter implements HttpSessionActivationListener
+    {
+        private final AtomicInteger passivated = new AtomicInteger();
+        private final AtomicInteger activated = new AtomicInteger();
+
+        @Override
+        public void sessionWillPassivate(HttpSessionEvent se)
+        {
+            passivated.incrementAndGet();
+        }
+
+        @Override
+        public void sessionDidActivate(HttpSessionEvent se)
+        {
+            activated.incrementAndGet();
+        }
+    }
+
+    private static class CacheLookup implements HttpSessionActivationListener
+    {
+        private final SessionCache cache;
+        private final AtomicInteger found = new AtomicInteger();
+
+        private CacheLookup(SessionCache cache)
+        {
+            this.cache = cache;
+        }
+
+        @Override
+        public void sessionWillPassivate(HttpSessionEvent se)
+        {
+        }
+
+        @Override
+        public void sessionDidActivate(HttpSessionEvent se)
+        {
+            try
+            {
+                Session session = cache.get(se.getSession().getId());
+                if (session == se.getSession())
+                    found.incrementAndGet();
+                cache.release(session.getId(), session);
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static String get(Main main, HttpClient client, String path) throws Exception
+    {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(AbstractMainTest.uri(main, path))).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
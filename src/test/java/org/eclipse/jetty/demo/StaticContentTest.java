@@ -0,0 +1,103 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.jetty.util.resource.Resource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StaticContentTest extends AbstractMainTest
+{
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port);
+        main.setStaticCache(true);
+        return main;
+    }
+
+    @Test
+    public void canServeCachedStaticContent() throws Exception
+    {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(uri("/static/main.css"))).build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode(), is(200));
+        assertThat(response.body(), is(Files.readString(Path.of("src/main/resources/webroot/static/main.css"))));
+        assertThat(response.headers().firstValue("Content-Type").orElse(null), is("text/css"));
+        assertThat(response.headers().firstValue("Cache-Control").orElse(null), is("public, max-age=3600"));
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<String> notModified = client.send(HttpRequest.newBuilder(URI.create(uri("/static/main.css")))
+            .header("If-None-Match", etag).build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(notModified.statusCode(), is(304));
+        assertThat(notModified.headers().firstValue("ETag").orElse(null), is(etag));
+    }
+
+    @Test
+    public void canSelectPrecompressedVariant(@TempDir Path webRoot) throws Exception
+    {
+        Path css = webRoot.resolve("large.css");
+        Files.writeString(css, "body { color: black; }\n".repeat(200));
+        Precompress.main(new String[]{webRoot.toString()});
+        assertThat(Files.exists(webRoot.resolve("large.css.gz")), is(true));
+
+        StaticContentCache cache = new StaticContentCache(1024 * 1024);
+        cache.load(Resource.newResource(webRoot), "/static/", path -> "text/css");
+        // The variant itself is not cached as a resource
+        assertThat(cache.getCount(), is(1));
+        StaticContentCache.Content content = cache.get("/static/large.css");
+        assertThat(content.hasVariants(), is(true));
+
+        StaticContentCache.Variant identity = content.select(null);
+        assertThat(identity.getEncoding(), nullValue());
+        assertThat(content.select("gzip;q=0, deflate").getEncoding(), nullValue());
+        assertThat(content.select("br, identity").getEncoding(), nullValue());
+
+        StaticContentCache.Variant gzip = content.select("deflate, gzip");
+        assertThat(gzip.getEncoding(), is("gzip"));
+        assertThat(gzip.getETag(), notNullValue());
+        assertThat(gzip.getETag(), not(identity.getETag()));
+        assertThat(new String(new GZIPInputStream(new ByteArrayInputStream(toBytes(gzip.getBuffer()))).readAllBytes(), StandardCharsets.UTF_8),
+            is(Files.readString(css)));
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,64 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import javax.servlet.jsp.JspFactory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class StreamingTest extends AbstractMainTest
+{
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port);
+        main.setJspStreaming(true);
+        return main;
+    }
+
+    @Test
+    public void canStreamLargePage() throws Exception
+    {
+        assertThat(JspFactory.getDefaultFactory(), instanceOf(EmbeddedJspFactory.class));
+
+        HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(uri("/test/large.jsp"))).build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode(), is(200));
+        // Committed before the page was complete, so without a Content-Length
+        assertThat(response.headers().firstValue("Content-Length").isPresent(), is(false));
+        assertThat(response.body().length(), greaterThan(1024 * 1024));
+        assertThat(response.body(), containsString("<tr><td>8500</td><td>"));
+        assertThat(response.body(), containsString("</html>"));
+    }
+
+    @Test
+    public void canForwardToStreamedPage() throws Exception
+    {
+        assertThat(resourceWithUrl(uri("/date/")), containsString("in the year"));
+    }
+}
@@ -0,0 +1,115 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.regex.Pattern;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
+
+public class TagPluginTest extends AbstractMainTest
+{
+    private static final Pattern ANYTHING = Pattern.compile("(?s).*");
+
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port);
+        main.setJspTagPlugins(true);
+        return main;
+    }
+
+    /**
+     * @param className the class of a JSP compiled by the server (eg: {@code org/apache/jsp/test/jstl_jsp})
+     * @return the source generated for the JSP, kept as not in production mode
+     */
+    private String getGeneratedSource(String className) throws Exception
+    {
+        ServletContextHandler context = getMain().getServer().getChildHandlerByClass(ServletContextHandler.class);
+        File scratchDir = (File)context.getServletContext().getAttribute("javax.servlet.context.tempdir");
+        return Files.readString(scratchDir.toPath().resolve(className + ".java"));
+    }
+
+    @Test
+    public void canInlineJstlTags() throws Exception
+    {
+        String response = resourceWithUrl(uri("/test/jstl.jsp"));
+        for (int i = 1; i <= 10; i++)
+        {
+            assertThat(response, containsString(i + "\n      <br />"));
+        }
+
+        String source = getGeneratedSource("org/apache/jsp/test/jstl_jsp");
+        assertThat(source, not(containsString("ForEachTag")));
+        assertThat(source, not(containsString("OutTag")));
+        assertThat(source, containsString("TagPlugins.out("));
+    }
+
+    @Test
+    public void canInlineSimpleTag() throws Exception
+    {
+        String response = resourceWithUrl(uri("/test/tag2.jsp"));
+        assertThat(response, matchesPattern(ANYTHING + "On \\w{3} the \\d{1,2} of \\w{3} in the year \\d{4}" + ANYTHING));
+        assertThat(response, matchesPattern(ANYTHING + "\\d{1,2} - \\d{2} - \\d{2}" + ANYTHING));
+        // The variables of the tag are NESTED, so not set after it
+        assertThat(response, containsString("the day is \"\""));
+
+        String source = getGeneratedSource("org/apache/jsp/test/tag2_jsp");
+        assertThat(source, not(containsString("new com.acme.Date2Tag")));
+        assertThat(source, not(containsString("JspFragment")));
+    }
+
+    @Test
+    public void canNestTagHandlers() throws Exception
+    {
+        // The acme:date in each row still has a handler, within the inlined loop
+        String response = resourceWithUrl(uri("/test/large.jsp?rows=3"));
+        assertThat(response, containsString("<tr><td>3</td><td>"));
+        assertThat(response, not(containsString("<tr><td>4</td>")));
+        assertThat(response, matchesPattern(ANYTHING + "<tr><td>3</td><td>\\w{3}, \\d{2} \\w{3} \\d{4} \\d{2}:\\d{2}:\\d{2}</td>" + ANYTHING));
+    }
+
+    @Test
+    public void canRenderAsTagHandlers() throws Exception
+    {
+        Main main = new Main(0);
+        main.start();
+        try
+        {
+            for (String path : new String[]{"/test/jstl.jsp", "/test/loop.jsp", "/test/loop.jsp?n=0&title=%3Cb%3E%27%22", "/test/assets.jsp"})
+            {
+                assertThat(path, resourceWithUrl(uri(path)), is(resourceWithUrl(uri(main, path))));
+            }
+        }
+        finally
+        {
+            main.stop();
+        }
+        assertThat(resourceWithUrl(uri("/test/loop.jsp")), containsString("<h1>Indexes &amp; more</h1>"));
+        assertThat(resourceWithUrl(uri("/test/loop.jsp?title=%3Cb%3E")), containsString("<h1>&lt;b&gt;</h1>"));
+    }
+}
@@ -0,0 +1,109 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.Map;
+
+import com.acme.DateTag;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class TagPoolTest extends AbstractMainTest
+{
+    // The two acme:date tags of tag.jsp have the same attributes, so Jasper gives them a single pool
+    private static final int TAGS = 2;
+    private static final int MAX_SIZE = 2;
+
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port);
+        main.setJspTagPoolSizes(Map.of(DateTag.class.getName(), MAX_SIZE, TagPools.DEFAULT, 4));
+        main.setMetrics(true);
+        return main;
+    }
+
+    private TagPools.Stats getStats()
+    {
+        ServletContextHandler context = getMain().getServer().getChildHandlerByClass(ServletContextHandler.class);
+        TagPools tagPools = (TagPools)context.getServletContext().getAttribute(TagPools.ATTRIBUTE);
+        return tagPools.getStats(DateTag.class);
+    }
+
+    @Test
+    public void canReuseTagHandlers() throws Exception
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            assertThat(resourceWithUrl(uri("/test/tag.jsp")), containsString("GMT"));
+        }
+
+        // Created for the first tag of the first request, then reused for every other
+        TagPools.Stats stats = getStats();
+        assertThat(stats.getMisses(), is(1L));
+        assertThat(stats.getHits(), is(3L * TAGS - 1));
+        assertThat(stats.getDiscards(), is(0L));
+        assertThat(stats.getSize(), is(1L));
+
+        String metrics = resourceWithUrl(uri("/metrics"));
+        assertThat(metrics, containsString("jsp_tag_pool_hits_total{class=\"com.acme.DateTag\"} " + (3 * TAGS - 1)));
+        assertThat(metrics, containsString("jsp_tag_pool_size{class=\"com.acme.DateTag\"} 1"));
+    }
+
+    @Test
+    public void canBoundPoolsUnderLoad() throws Exception
+    {
+        int requests = 200;
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri("/test/tag.jsp"))).build();
+        LoadGenerator.Result result = new LoadGenerator(client, 8).run(request, requests);
+        assertThat(result.getFailures(), is(0));
+
+        // Every handler checked out was either pooled or released on its return
+        TagPools.Stats stats = getStats();
+        assertThat(stats.getHits() + stats.getMisses(), is((long)TAGS * requests));
+        assertThat(stats.getMisses(), is(stats.getDiscards() + stats.getSize()));
+        assertThat(stats.getSize(), lessThanOrEqualTo((long)MAX_SIZE));
+    }
+
+    @Test
+    public void canServeWithoutPooling() throws Exception
+    {
+        Main main = new Main(0);
+        main.setJspTagPooling(false);
+        main.start();
+        try
+        {
+            assertThat(resourceWithUrl(uri(main, "/test/tag.jsp")), containsString("GMT"));
+            assertThat(resourceWithUrl(uri(main, "/test/jstl.jsp")), containsString("10"));
+        }
+        finally
+        {
+            main.stop();
+        }
+    }
+}
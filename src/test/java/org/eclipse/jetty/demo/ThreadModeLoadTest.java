@@ -0,0 +1,125 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Throughput and p99 latency of slow requests, at increasing concurrency, in each {@link ThreadMode}.
+ * <p>
+ * Each request blocks for {@value #SLOW_MILLIS}ms (as if on a downstream call) before being
+ * forwarded to a JSP that uses the session. Run with: {@code mvn -Pload test}
+ * </p>
+ */
+@Tag("load")
+public class ThreadModeLoadTest
+{
+    private static final long SLOW_MILLIS = 100;
+    // Requests sent per unit of concurrency
+    private static final int ROUNDS = 3;
+
+    public static Stream<Arguments> loads()
+    {
+        return Stream.of(1_000, 10_000)
+            .flatMap(concurrency -> Arrays.stream(ThreadMode.values()).map(threadMode -> Arguments.of(threadMode, concurrency)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("loads")
+    public void slowRequests(ThreadMode threadMode, int concurrency) throws Exception
+    {
+        assumeTrue(threadMode.isSupported(), "Virtual threads not supported");
+        // Both ends of every connection are in this process
+        assumeTrue(getMaxFileDescriptors() > 2L * concurrency + 1000, "Too few file descriptors for " + concurrency + " connections");
+
+        Main main = new Main(0);
+        main.setThreadMode(threadMode);
+        main.start();
+        try
+        {
+            ServletContextHandler context = main.getServer().getChildHandlerByClass(ServletContextHandler.class);
+            context.addServlet(new ServletHolder(new SlowServlet()), "/slow");
+
+            HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+            HttpRequest request = HttpRequest.newBuilder(URI.create(AbstractMainTest.uri(main, "/slow")))
+                .timeout(Duration.ofSeconds(120))
+                .build();
+
+            LoadGenerator.Result result = new LoadGenerator(client, concurrency).run(request, concurrency * ROUNDS);
+            System.err.printf("%-8s concurrency=%-6d %s%n", threadMode, concurrency, result);
+            assertThat(result.getFailures(), is(0));
+        }
+        finally
+        {
+            main.stop();
+        }
+    }
+
+    private static long getMaxFileDescriptors()
+    {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof UnixOperatingSystemMXBean)
+            return ((UnixOperatingSystemMXBean)os).getMaxFileDescriptorCount();
+        return Long.MAX_VALUE;
+    }
+
+    @SuppressWarnings("serial")
+    public static class SlowServlet extends HttpServlet
+    {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException
+        {
+            try
+            {
+                Thread.sleep(SLOW_MILLIS);
+            }
+            catch (InterruptedException e)
+            {
+                throw new ServletException(e);
+            }
+            req.getRequestDispatcher("/test/bean1.jsp").forward(req, resp);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+package org.eclipse.jetty.demo;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ThreadModeTest extends AbstractMainTest
+{
+    @ParameterizedTest
+    @EnumSource(ThreadMode.class)
+    public void canServeInThreadMode(ThreadMode threadMode) throws Exception
+    {
+        assumeTrue(threadMode.isSupported(), "Virtual threads not supported");
+
+        Main main = new Main(0);
+        main.setThreadMode(threadMode);
+        main.start();
+        try
+        {
+            assertThat(main.getServer().getThreadPool(), instanceOf(threadMode == ThreadMode.VIRTUAL ? VirtualThreadPool.class : QueuedThreadPool.class));
+
+            HttpClient client = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+            assertThat(get(main, client, "/test/tag.jsp"), containsString("GMT"));
+            // Forwarded by the DateServlet
+            assertThat(get(main, client, "/date/"), containsString("in the year"));
+            // The second request finds the counter in the session
+            assertThat(get(main, client, "/test/bean1.jsp"), containsString("Counter accessed 1 times"));
+            assertThat(get(main, client, "/test/bean1.jsp"), containsString("Counter accessed 2 times"));
+        }
+        finally
+        {
+            main.stop();
+        }
+    }
+
+    @Test
+    public void cannotUseVirtualThreadsWithoutJvmSupport()
+    {
+        assumeFalse(ThreadMode.VIRTUAL.isSupported(), "Virtual threads supported");
+
+        assertThrows(IllegalStateException.class, ThreadMode.VIRTUAL::newThreadPool);
+        assertThrows(IllegalStateException.class, ThreadMode.HYBRID::newThreadPool);
+    }
+
+    private static String get(Main main, HttpClient client, String path) throws Exception
+    {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri(main, path))).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
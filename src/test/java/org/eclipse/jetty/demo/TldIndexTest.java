@@ -0,0 +1,46 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.net.URL;
+import java.util.Collection;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TldIndexTest extends AbstractMainTest
+{
+    @Test
+    public void canServeJstlWithIndexedTlds() throws Exception
+    {
+        ServletContextHandler context = getMain().getServer().getChildHandlerByClass(ServletContextHandler.class);
+        @SuppressWarnings("unchecked")
+        Collection<URL> tldUrls = (Collection<URL>)context.getAttribute(TldIndex.TLDS_ATTRIBUTE);
+        assertThat(tldUrls, notNullValue());
+        assertThat(TldIndex.load(context.getClassLoader()).getUrisByLocation().keySet(), hasItem("/WEB-INF/acme-taglib2.tld"));
+
+        assertThat(resourceWithUrl(uri("/test/jstl.jsp")), containsString("10"));
+        assertThat(resourceWithUrl(uri("/test/tag2.jsp")), containsString("in the year"));
+    }
+}
@@ -0,0 +1,79 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2016 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.demo;
+
+import java.util.LinkedHashSet;
+
+import org.apache.jasper.servlet.JspServlet;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItems;
+
+public class WarmUpTest extends AbstractMainTest
+{
+    @Override
+    protected Main newMain(int port)
+    {
+        Main main = new Main(port);
+        main.setJspWarmUp(true);
+        main.setJspWarmUpThreads(4);
+        return main;
+    }
+
+    @Test
+    public void canWarmUpEveryJsp() throws Exception
+    {
+        JspWarmUp warmUp = getMain().getWarmUp();
+        ServletContextHandler context = getMain().getServer().getChildHandlerByClass(ServletContextHandler.class);
+        int jsps = JspWarmUp.getJspPaths(context).size();
+        assertThat(jsps, greaterThan(10));
+        assertThat(warmUp.getFailures(), is(0));
+        assertThat(warmUp.getWarmedUp(), is(jsps));
+        assertThat(warmUp.getThreads(), is(4));
+        assertThat(warmUp.getCompileTimes().keySet(), hasItems("/index.jsp", "/test/tagfile.jsp", "/test/cache.jsp"));
+
+        // Each was compiled and loaded before the connector was opened
+        ServletHolder holderJsp = context.getServletHandler().getServlet("jsp");
+        assertThat(((JspServlet)holderJsp.getServlet()).getJspCount(), is(jsps));
+    }
+
+    @Test
+    public void canFindTagFiles() throws Exception
+    {
+        ServletContextHandler context = getMain().getServer().getChildHandlerByClass(ServletContextHandler.class);
+        assertThat(JspWarmUp.getTagFiles(context, "/test/tagfile.jsp", new LinkedHashSet<>()), contains("/WEB-INF/tags/panel.tag"));
+        assertThat(JspWarmUp.getTagFiles(context, "/test/cache.jsp", new LinkedHashSet<>()), contains("/WEB-INF/tags/panel.tag"));
+        assertThat(JspWarmUp.getTagFiles(context, "/test/jstl.jsp", new LinkedHashSet<>()), empty());
+    }
+
+    @Test
+    public void canServeWarmedUpJsp() throws Exception
+    {
+        assertThat(resourceWithUrl(uri("/test/jstl.jsp")), containsString("JSTL Example"));
+        assertThat(resourceWithUrl(uri("/test/tagfile.jsp")), containsString("panel"));
+    }
+}